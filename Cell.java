@@ -5,16 +5,26 @@ import java.io.*;	// for serialization
 
 public class Cell implements Serializable{	// a Cell organism
 
+	static final long serialVersionUID = -4962069540095622253L;	// the one Cells were first saved with, so old pattern files can still be read
+
 	protected int width;	// the pixel width
 	protected int height;	// the pixel height
 	public boolean isAlive = false;	// indicates whether the Cell is alive
 	public Color color = Color.black;	// the color of the cell
+	private transient int row = -1;	// where the Cell is in the City that handed it out (-1 if it wasn't handed out by one)
+	private transient int column = -1;
 
 	public Cell(int width, int height) {	// constructs a Cell with certain dimensions
 		this.width = width;
 		this.height = height;
 	}
 
+	Cell(int width, int height, int row, int column) {	// constructs a Cell that knows where it is in a City
+		this(width, height);
+		this.row = row;
+		this.column = column;
+	}
+
 	/* Getter Methods */
 
 	public int getWidth() {
@@ -25,7 +35,19 @@ public class Cell implements Serializable{	// a Cell organism
 		return height;
 	}
 
-	public void colourCell(int numberOfNeighbours, boolean isMonochrome) {
+	public int getRow() {	// the row of the City the Cell is in (-1 if it isn't in one)
+		return row;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	public void colourCell(int numberOfNeighbours, boolean isMonochrome) {	// colours the Cell by Conway's rule
+		colourCell(Rule.CONWAY, numberOfNeighbours, isMonochrome);
+	}
+
+	public void colourCell(Rule rule, int numberOfNeighbours, boolean isMonochrome) {	// colours the Cell by what the rule does to it next generation
 		if (isMonochrome) {	// if B&W
 			if (isAlive)	color = Color.black;
 			else	color = Color.white;
@@ -33,18 +55,18 @@ public class Cell implements Serializable{	// a Cell organism
 		
 		else {
 			if (isAlive) {	// shade RGB
-				if (numberOfNeighbours > 3)	color = Color.red;
-				else if (numberOfNeighbours < 2)	color = Color.blue;
-				else	color = Color.green;
+				if (rule.survives(numberOfNeighbours))	color = Color.green;
+				else if (rule.isLonely(numberOfNeighbours))	color = Color.blue;
+				else	color = Color.red;
 			}
 			else {
-				if (numberOfNeighbours == 3)	color = new Color(250, 250, 250);
+				if (rule.isBorn(numberOfNeighbours))	color = new Color(250, 250, 250);
 				else	color = Color.white;
 			}
 		}
 	}
 
-	public void render(City city, Graphics g, boolean isCurvy, int i, int j) {	// renders the whole thing at row i, column j of a city with this cell (If isCurvy, draws an oval instead of a rectangle)
+	public void render(Universe city, Graphics g, boolean isCurvy, int i, int j) {	// renders the whole thing at row i, column j of a city with this cell (If isCurvy, draws an oval instead of a rectangle)
 		g.setColor(color);
 		if (isCurvy)	g.fillOval(j*(int) city.cellWidth(), i*(int) city.cellHeight(), (int) getWidth(), (int) getHeight());
 		else	g.fillRect(j*(int) city.cellWidth(), i*(int) city.cellHeight(), (int) getWidth(), (int) getHeight());
@@ -2,20 +2,43 @@ package com.convai;
 
 import java.io.*;	// for serialization
 import java.util.*;	// for the Arrays utility class
-import java.awt.*;	// for coloring
+import java.util.concurrent.ThreadLocalRandom;	// for randomizing
 
-public class City implements Serializable {	// a City canvas/grid in which the Cells reside (really a collection of Cells)
+public class City implements Universe, Serializable {	// a City canvas/grid in which the Cells reside (really a collection of Cells, packed 64 to a word)
 
 	static final long serialVersionUID = 7861917293099169103L;
+	public static final int TILE_ROWS = 32;	// the City is split into tiles of this many rows of one word (TILE_COLUMNS Cells) each, and only tiles near ones that are still changing are stepped
+	public static final int TILE_COLUMNS = 64;
 	public boolean isPeriodic = false;	// wraps the City to itself to form a periodic space with no edges
-	public Cell[][] cells;	// the Cell array
+	private long[] words;	// the live cells, one bit per Cell, row after row (bit j % 64 of word j / 64 of a row holds column j)
+	private int numberOfRows;
+	private int numberOfColumns;
+	private int wordsPerRow;	// the number of words holding a single row (the spare bits of the last one are always zero)
 	private int cellWidth;
 	private int cellHeight;
+	private Rule rule = Rule.CONWAY;	// the rule the city evolves by
+	private long[][] ages = new long[0][];	// under a Generations rule, the generations each dying Cell has been dying for, as bit planes laid out like words (none under a Life-like rule)
+	private transient long[] nextWords;	// the back buffer the next generation is written into before the two are swapped
+	private transient long[][] nextAges;	// the back buffer for the ages
+	private transient boolean[] changedTiles;	// the tiles that aren't the same as two generations ago (or were changed by hand) (null if they all need stepping)
+	private transient boolean[] nextChangedTiles;	// gathers the tiles that change in the generation being stepped
+	private transient boolean[] activeTiles;	// the tiles being stepped: the changed ones and the ones around them. The rest are still or blinking with period 2, and the back buffer already holds their next generation
+	private transient boolean[] editedTiles;	// the tiles changed by hand since the last step. They count as changed for two generations, until the back buffer is their previous generation again
+	private transient boolean[] flippingTiles;	// the tiles that aren't the same as the last generation
+	private transient boolean[] nextFlippingTiles;
+	private transient long[] tileHashChanges;	// the change each tile made to the hash in the last generation
+	private transient long hash;	// the Zobrist hash of the live cells
+	private transient boolean isHashKnown;	// false if the hash needs working out again
+	private transient PopulationPyramid population;	// the live cells in each tile and each square of tiles (null if it needs working out again)
+	private transient Cell[][] view;	// the Cell objects handed out by cells(), only made if someone asks for them
 
 	City(int width, int height, int numberOfRows, int numberOfColumns) {	// constructs a city with a certain number of avenues and streets and puts in Cells with given dimensions
-		cells = newCells(width, height, numberOfRows, numberOfColumns);
 		cellWidth = width;
 		cellHeight = height;
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		wordsPerRow = wordsPerRow(numberOfColumns);
+		words = new long[numberOfRows * wordsPerRow];
 	}
 
 	public int cellWidth() {
@@ -27,11 +50,39 @@ public class City implements Serializable {	// a City canvas/grid in which the C
 	}
 
 	public int numberOfRows() {
-		return cells.length;
+		return numberOfRows;
 	}
 
 	public int numberOfColumns() {
-		return cells[0].length;
+		return numberOfColumns;
+	}
+
+	public boolean isPeriodic() {
+		return isPeriodic;
+	}
+
+	public void setPeriodic(boolean isPeriodic) {
+		this.isPeriodic = isPeriodic;
+		changedTiles = null;	// the edges behave differently now
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public void setRule(Rule rule) {
+		if (rule.getNumberOfStates() != this.rule.getNumberOfStates())	ages = new long[numberOfPlanes(rule)][words.length];	// the dying Cells mean something else now
+		this.rule = rule;
+		changedTiles = null;	// every tile needs stepping by the new rule
+		isHashKnown = false;
+	}
+
+	public int numberOfTileRows() {
+		return (numberOfRows + TILE_ROWS - 1) / TILE_ROWS;
+	}
+
+	public int numberOfTileColumns() {
+		return wordsPerRow;
 	}
 
 	public int getWidth() {
@@ -42,17 +93,77 @@ public class City implements Serializable {	// a City canvas/grid in which the C
 		return cellHeight() * numberOfRows();
 	}
 
-	public int getRow(Cell cell) {	// returns the row of the cell within this city
-		int index = -1;
-		for (int i = 0; i < numberOfRows(); i++) {
-			index = Arrays.asList(cells[i]).indexOf(cell);
-			if (index != -1)	return i;
+	public boolean isAlive(int row, int column) {	// returns true if the Cell in a particular row and column is alive
+		return (words[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	public void setAlive(int row, int column, boolean isAlive) {	// gives life to (or kills) the Cell in a particular row and column
+		if (row < 0 || row >= numberOfRows || column < 0 || column >= numberOfColumns)	throw new IndexOutOfBoundsException("no cell at " + row + ", " + column);
+		if (isAlive(row, column) != isAlive) {
+			hash ^= Zobrist.key(row, column);
+			if (population != null)	population.add(row / TILE_ROWS, column >>> 6, isAlive ? 1 : -1);
 		}
-		return -1;
+		for (int b = 0; b < ages.length; b++)	// an edited Cell isn't dying any more
+			if ((ages[b][row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0) {
+				ages[b][row * wordsPerRow + (column >>> 6)] &= ~(1L << column);
+				hash ^= Zobrist.key(row, column, b + 1);
+			}
+		if (isAlive)	words[row * wordsPerRow + (column >>> 6)] |= 1L << column;
+		else	words[row * wordsPerRow + (column >>> 6)] &= ~(1L << column);
+
+		ensureTiles();
+		int tile = (row / TILE_ROWS) * wordsPerRow + (column >>> 6);
+		changedTiles[tile] = true;
+		editedTiles[tile] = true;
+	}
+
+	public void readRow(int row, long[] words) {
+		System.arraycopy(this.words, row * wordsPerRow, words, 0, wordsPerRow);
 	}
 
-	public int getColumn(Cell cell) {	// returns the column of the cell within this city
-		return Arrays.asList(cells[getRow(cell)]).indexOf(cell);
+	public void readRow(int row, int fromColumn, long[] words) {	// a word at a time
+		readRow(this.words, row, fromColumn, words);
+	}
+
+	public void readDyingRow(int row, int fromColumn, long[] words) {	// the cells with any age
+		java.util.Arrays.fill(words, 0L);
+		if (ages.length == 0)	return;
+		long[] part = new long[words.length];
+		for (long[] plane : ages) {
+			readRow(plane, row, fromColumn, part);
+			for (int w = 0; w < words.length; w++)	words[w] |= part[w];
+		}
+	}
+
+	public void writeRow(int row, long[] words) {
+		System.arraycopy(words, 0, this.words, row * wordsPerRow, wordsPerRow);
+		if (wordsPerRow > 0)	this.words[row * wordsPerRow + wordsPerRow - 1] &= LifeKernel.lastWordMask(numberOfColumns);	// drop anything past the last column
+		for (long[] plane : ages)
+			for (int w = 0; w < wordsPerRow; w++)	plane[row * wordsPerRow + w] &= ~this.words[row * wordsPerRow + w];	// live Cells aren't dying
+		changedTiles = null;
+		isHashKnown = false;
+		population = null;
+	}
+
+	public Cell[][] cells() {	// returns the Cells of this city as objects, brought up to date. It's only a view: changing them doesn't change the city (use setAlive for that)
+		if (view == null || view.length != numberOfRows || (numberOfRows > 0 && view[0].length != numberOfColumns)) {	// (re)make the view only when the shape changed
+			view = new Cell[numberOfRows][numberOfColumns];
+			for (int i = 0; i < numberOfRows; i++)
+				for (int j = 0; j < numberOfColumns; j++)	view[i][j] = new Cell(cellWidth, cellHeight, i, j);
+		}
+
+		for (int i = 0; i < numberOfRows; i++)
+			for (int j = 0; j < numberOfColumns; j++)	view[i][j].isAlive = isAlive(i, j);
+
+		return view;
+	}
+
+	public int getRow(Cell cell) {	// returns the row of the cell within this city (cell must come from cells()), which the Cell knows itself
+		return isInView(cell) ? cell.getRow() : -1;
+	}
+
+	public int getColumn(Cell cell) {	// returns the column of the cell within this city (cell must come from cells())
+		return isInView(cell) ? cell.getColumn() : -1;
 	}
 
 	public int getNumberOfCells() {	// returns the number of cells
@@ -61,77 +172,353 @@ public class City implements Serializable {	// a City canvas/grid in which the C
 	}
 
 	public int getNumberOfLiveCells() {	// returns the number of cells that are alive
-		int result = 0;
-		for (int i = 0; i < numberOfRows(); i++)
-			for (int j = 0; j < numberOfColumns(); j++)	
-				if (cells[i][j].isAlive)	result++;
+		return population().total();
+	}
 
-		return result;
+	public int countLiveCells(int fromRow, int fromColumn, int toRow, int toColumn) {	// counts the cells alive in rows fromRow to toRow and columns fromColumn to toColumn (not including the last ones), adding up whole squares of tiles from the population pyramid and counting only the words along the edges
+		fromRow = Math.max(fromRow, 0);
+		fromColumn = Math.max(fromColumn, 0);
+		toRow = Math.min(toRow, numberOfRows);
+		toColumn = Math.min(toColumn, numberOfColumns);
+		if (fromRow >= toRow || fromColumn >= toColumn)	return 0;
+
+		PopulationPyramid pyramid = population();
+		return countLiveCells(pyramid, pyramid.numberOfLevels() - 1, 0, 0, fromRow, fromColumn, toRow, toColumn);
+	}
+
+	public long getHash() {
+		if (!isHashKnown) {	// work it out from scratch
+			hash = 0;
+			for (int i = 0; i < numberOfRows; i++)
+				for (int w = 0; w < wordsPerRow; w++) {
+					hash ^= Zobrist.ofWord(words[i * wordsPerRow + w], i, w << 6);
+					for (int b = 0; b < ages.length; b++)	hash ^= Zobrist.ofWord(ages[b][i * wordsPerRow + w], i, w << 6, b + 1);
+				}
+			isHashKnown = true;
+		}
+		return hash;
 	}
 
 	public int getNumberOfDeadCells() {	// returns the number of cells that are dead
 		return getNumberOfCells() - getNumberOfLiveCells();
 	}
 
-	private Cell[][] newCells(int width, int height, int numberOfRows, int numberOfColumns) {	// makes new cells
-		Cell[][] result = new Cell[numberOfRows][numberOfColumns];
-		for (int i = 0; i < numberOfRows; i++)
-			for (int j = 0; j < numberOfColumns; j++)
-				result[i][j] = new Cell(width, height);
+	private static int wordsPerRow(int numberOfColumns) {	// the number of words needed for a row of that many columns
+		return (numberOfColumns + 63) >>> 6;
+	}
 
+	private static int numberOfPlanes(Rule rule) {	// the bit planes needed for the ages of the dying Cells, from 1 up to the number of dying states
+		return rule.isGenerations() ? 32 - Integer.numberOfLeadingZeros(rule.getNumberOfStates() - 2) : 0;
+	}
+
+	private long[] resized(long[] words, int numberOfRows, int numberOfColumns) {	// copies rows of words laid out for this city's size into a new size
+		int newWordsPerRow = wordsPerRow(numberOfColumns);
+		long[] result = new long[numberOfRows * newWordsPerRow];
+		int rowsToCopy = Math.min(numberOfRows, numberOfRows());
+		int wordsToCopy = Math.min(newWordsPerRow, wordsPerRow);
+		for (int i = 0; i < rowsToCopy; i++) {
+			System.arraycopy(words, i * wordsPerRow, result, i * newWordsPerRow, wordsToCopy);
+			if (numberOfColumns < numberOfColumns() && wordsToCopy > 0)	result[i * newWordsPerRow + wordsToCopy - 1] &= LifeKernel.lastWordMask(numberOfColumns);	// drop the columns that were cut off
+		}
 		return result;
 	}
 
-	public void resize(int width, int height, int numberOfRows, int numberOfColumns) {	// resizes the cells
+	private void readRow(long[] words, int row, int fromColumn, long[] part) {	// copies part of a row of words laid out like the live cells, shifting the words along if it doesn't start at the start of one
+		int from = fromColumn >> 6;
+		int shift = fromColumn & 63;
+		for (int w = 0; w < part.length; w++) {
+			part[w] = wordOf(words, row, from + w) >>> shift;
+			if (shift != 0)	part[w] |= wordOf(words, row, from + w + 1) << (64 - shift);
+		}
+	}
+
+	private long wordOf(long[] words, int row, int w) {	// word w of a row, or nothing past the ends
+		return w >= 0 && w < wordsPerRow ? words[row * wordsPerRow + w] : 0L;
+	}
+
+	public void resize(int width, int height, int numberOfRows, int numberOfColumns) {	// resizes the cells and the rows and columns on show (not every Universe can, eg. a MappedCity's size is fixed by its file)
 		this.cellWidth = width;
 		this.cellHeight = height;
-		Cell[][] result = newCells(width, height, numberOfRows, numberOfColumns);
-		for (int i = 0; i < Math.min(numberOfRows, numberOfRows()); i++)
-			for (int j = 0; j < Math.min(numberOfColumns, numberOfColumns()); j++)
-				result[i][j].isAlive = this.cells[i][j].isAlive;
-
-		this.cells = result; 
+		this.words = resized(words, numberOfRows, numberOfColumns);
+		for (int b = 0; b < ages.length; b++)	ages[b] = resized(ages[b], numberOfRows, numberOfColumns);
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		this.wordsPerRow = wordsPerRow(numberOfColumns);
+		changedTiles = null;
+		isHashKnown = false;
+		population = null;
 	}
 
 	public void kill() {	// kills all residents
-		for (int i = 0; i < numberOfRows(); i++)
-			for (int j = 0; j < numberOfColumns(); j++)	cells[i][j].isAlive = false;
+		Arrays.fill(words, 0L);
+		for (long[] plane : ages)	Arrays.fill(plane, 0L);
+		changedTiles = null;
+		hash = 0;
+		isHashKnown = true;
+		population = null;
 	}
 
 	public void randomize(double percentChanceOfLife) {	// randomly gives life to cells based on the percent chance parameter (eg. if it is 10, then 10% of all cells are likely to be alive)
 		kill();
+		ThreadLocalRandom random = ThreadLocalRandom.current();	// (not Math.random, which every thread shares)
 		for (int i = 0; i < numberOfRows(); i++)
 			for (int j = 0; j < numberOfColumns(); j++)	
-				if (Math.random() < percentChanceOfLife * Math.random() / 100.0)	cells[i][j].isAlive = true;
+				if (random.nextDouble() < percentChanceOfLife * random.nextDouble() / 100.0)	words[i * wordsPerRow + (j >>> 6)] |= 1L << j;
+		changedTiles = null;
+		isHashKnown = false;
+		population = null;
 	}
 
 	public City nextGeneration() {	// returns the next generation based on Convay's rules for the Game of Life
 		City result = new City(this.cellWidth(), this.cellHeight(), this.numberOfRows(), this.numberOfColumns());	// make the new city
 		result.isPeriodic = this.isPeriodic;
+		result.rule = this.rule;
+		System.arraycopy(this.words, 0, result.words, 0, this.words.length);
+		result.ages = new long[ages.length][];
+		for (int b = 0; b < ages.length; b++)	result.ages[b] = ages[b].clone();
+		result.isHashKnown = false;
+		result.step();
+
+		return result;
+	}
 
-		int numberOfNeighbours;
-		for (int i = 0; i <  this.numberOfRows(); i++) 
-			for (int j = 0; j <  this.numberOfColumns(); j++) {
-				numberOfNeighbours = this.countAliveNeighbours(i, j);
-				if (numberOfNeighbours == 3)	result.cells[i][j].isAlive = true;
-				else if (numberOfNeighbours < 2 || numberOfNeighbours > 3)	result.cells[i][j].isAlive = false;
-				else result.cells[i][j].isAlive = this.cells[i][j].isAlive;
+	public boolean step() {	// moves this city on to its next generation in place. Returns false if nothing changed (the pattern is static)
+		prepareStep();
+		stepRows(0, numberOfRows());
+		return swapBuffers();
+	}
+
+	void prepareStep() {	// makes sure there's a back buffer to step into, and works out which tiles need stepping
+		if (nextWords == null || nextWords.length != words.length) {
+			nextWords = new long[words.length];
+			changedTiles = null;	// the back buffer doesn't hold anything yet
+		}
+		if (nextAges == null || nextAges.length != ages.length || (ages.length > 0 && nextAges[0].length != words.length)) {
+			nextAges = new long[ages.length][words.length];
+			changedTiles = null;
+		}
+		ensureTiles();
+
+		for (int tileRow = 0; tileRow < numberOfTileRows(); tileRow++)
+			for (int tileColumn = 0; tileColumn < numberOfTileColumns(); tileColumn++) {
+				int tile = tileRow * wordsPerRow + tileColumn;
+				activeTiles[tile] = isChangedAround(tileRow, tileColumn);
+				nextChangedTiles[tile] = editedTiles[tile];
+				editedTiles[tile] = false;
+				nextFlippingTiles[tile] = activeTiles[tile] ? false : flippingTiles[tile];	// a skipped tile flips back the way it flipped last time, changing the hash the same way
+				if (activeTiles[tile])	tileHashChanges[tile] = 0;
 			}
+	}
 
-		return result;
+	void stepRows(int fromRow, int toRow) {	// writes the next generation of rows fromRow (inclusive) to toRow (exclusive) into the back buffer, skipping settled tiles. Only reads the front buffer, so bands of rows can be stepped independently, as long as they start and end on a tile
+		if (rule.isExtended()) {
+			stepExtendedRows(fromRow, toRow);
+			return;
+		}
+
+		for (int i = fromRow; i < toRow; i++) {
+			int up = LifeKernel.rowStart(i - 1, numberOfRows, wordsPerRow, isPeriodic);
+			int middle = i * wordsPerRow;
+			int down = LifeKernel.rowStart(i + 1, numberOfRows, wordsPerRow, isPeriodic);
+			int tileRowStart = (i / TILE_ROWS) * wordsPerRow;
+
+			for (int w = 0; w < wordsPerRow; w++) {
+				if (!activeTiles[tileRowStart + w])	continue;
+
+				storeWord(i, w, tileRowStart + w, LifeKernel.nextWord(words, up, middle, down, w, numberOfColumns, wordsPerRow, isPeriodic, rule));
+			}
+		}
+	}
+
+	void abandonStep() {	// forgets a step given up on after prepareStep, which may have left the back buffer and the tile flags half done, so that the next one steps every tile (the current generation and its hash were never touched)
+		changedTiles = null;
+	}
+
+	SummedAreaTable neighbourSums(int fromRow, int toRow, int fromColumn, int toColumn) {	// sums for counting the neighbours of rows fromRow to toRow and columns fromColumn to toColumn (not including the last ones) in the rule's neighbourhood
+		return new SummedAreaTable(words, wordsPerRow, numberOfRows, numberOfColumns, isPeriodic, fromRow, toRow, fromColumn, toColumn, rule.getRange(), rule.isVonNeumann());
+	}
+
+	boolean swapBuffers() {	// makes the back buffer the current generation. Returns true if it's different from the last one
+		long[] swap = words;
+		words = nextWords;
+		nextWords = swap;
+		long[][] swapAges = ages;
+		ages = nextAges;
+		nextAges = swapAges;
+
+		boolean[] swapTiles = changedTiles;
+		changedTiles = nextChangedTiles;
+		nextChangedTiles = swapTiles;
+		swapTiles = flippingTiles;
+		flippingTiles = nextFlippingTiles;
+		nextFlippingTiles = swapTiles;
+
+		boolean changed = false;
+		for (int tileRow = 0; tileRow < numberOfTileRows(); tileRow++)
+			for (int tileColumn = 0; tileColumn < numberOfTileColumns(); tileColumn++)
+				if (flippingTiles[tileRow * wordsPerRow + tileColumn]) {
+					hash ^= tileHashChanges[tileRow * wordsPerRow + tileColumn];
+					if (population != null)	population.set(tileRow, tileColumn, countTile(tileRow, tileColumn));
+					changed = true;
+				}
+
+		return changed;
+	}
+
+	private void stepExtendedRows(int fromRow, int toRow) {	// the same for a rule with a bigger neighbourhood, counting the neighbours of each Cell in the active tiles from a summed-area table of the rows and the ones within range of them
+		SummedAreaTable sums = null;	// (made once a row needs it)
+		int[] counts = new int[numberOfColumns];
+		for (int i = fromRow; i < toRow; i++) {
+			int tileRowStart = (i / TILE_ROWS) * wordsPerRow;
+			boolean isCounted = false;
+			for (int w = 0; w < wordsPerRow; w++) {
+				if (!activeTiles[tileRowStart + w])	continue;
+
+				if (!isCounted) {
+					if (sums == null)	sums = neighbourSums(fromRow, toRow, 0, numberOfColumns);
+					sums.countRow(i, counts);
+					isCounted = true;
+				}
+				long alive = words[i * wordsPerRow + w];
+				long next = 0;
+				for (int b = 0, j = w << 6; b < 64 && j < numberOfColumns; b++, j++)
+					if (((alive >>> b) & 1) != 0 ? rule.survives(counts[j]) : rule.isBorn(counts[j]))	next |= 1L << b;
+				storeWord(i, w, tileRowStart + w, next);
+			}
+		}
+	}
+
+	private void storeWord(int row, int w, int tile, long next) {	// puts the next generation of word w of a row into the back buffer, ageing the dying Cells, and notes whether its tile is changing
+		int k = row * wordsPerRow + w;
+		if (ages.length > 0)	next = stepAges(k, next, tile, row, w);
+		if (next != nextWords[k])	nextChangedTiles[tile] = true;	// not the same as two generations ago (bands sharing a tile only ever set these, so it's safe)
+		if (next != words[k]) {
+			nextFlippingTiles[tile] = true;
+			tileHashChanges[tile] ^= Zobrist.ofWord(next ^ words[k], row, w << 6);
+		}
+		nextWords[k] = next;
+	}
+
+	private long stepAges(int k, long next, int tile, int row, int w) {	// ages the dying Cells of word k, which can't be born, and starts the ones that have just died dying. Compares the ages with the last two generations the way stepRows does the live cells
+		int lastAge = rule.getNumberOfStates() - 2;	// the age a dying Cell is dead after
+		long dying = 0;
+		long isLast = -1L;
+		for (int b = 0; b < ages.length; b++) {
+			long plane = ages[b][k];
+			dying |= plane;
+			isLast &= ((lastAge >>> b) & 1) != 0 ? plane : ~plane;
+		}
+		next &= ~dying;
+
+		long carry = dying;	// add one to the age of every dying Cell, a bit plane at a time
+		for (int b = 0; b < ages.length; b++) {
+			long plane = ages[b][k];
+			long age = (plane ^ carry) & ~isLast;
+			carry &= plane;
+			if (b == 0)	age |= words[k] & ~next;	// just died, so dying for a generation
+			if (age != nextAges[b][k])	nextChangedTiles[tile] = true;
+			if (age != plane) {
+				nextFlippingTiles[tile] = true;
+				tileHashChanges[tile] ^= Zobrist.ofWord(age ^ plane, row, w << 6, b + 1);
+			}
+			nextAges[b][k] = age;
+		}
+		return next;
+	}
+
+	PopulationPyramid population() {	// the population pyramid, worked out from scratch if need be
+		if (population == null) {
+			population = new PopulationPyramid(numberOfTileRows(), numberOfTileColumns());
+			for (int tileRow = 0; tileRow < numberOfTileRows(); tileRow++)
+				for (int tileColumn = 0; tileColumn < numberOfTileColumns(); tileColumn++)	population.set(tileRow, tileColumn, countTile(tileRow, tileColumn));
+		}
+		return population;
+	}
+
+	private int countTile(int tileRow, int tileColumn) {	// counts the live cells of a tile
+		int count = 0;
+		for (int i = tileRow * TILE_ROWS; i < Math.min((tileRow + 1) * TILE_ROWS, numberOfRows); i++)	count += Long.bitCount(words[i * wordsPerRow + tileColumn]);
+		return count;
+	}
+
+	private int countLiveCells(PopulationPyramid pyramid, int level, int nodeRow, int nodeColumn, int fromRow, int fromColumn, int toRow, int toColumn) {	// the live cells of a rectangle under a node of the pyramid
+		long top = ((long) nodeRow << level) * TILE_ROWS;	// the rows and columns under the node
+		long bottom = Math.min(top + ((long) TILE_ROWS << level), numberOfRows);
+		long left = ((long) nodeColumn << level) * TILE_COLUMNS;
+		long right = Math.min(left + ((long) TILE_COLUMNS << level), numberOfColumns);
+		if (bottom <= fromRow || top >= toRow || right <= fromColumn || left >= toColumn)	return 0;	// none of it
+		if (top >= fromRow && bottom <= toRow && left >= fromColumn && right <= toColumn)	return pyramid.count(level, nodeRow, nodeColumn);	// all of it
+
+		if (level == 0) {	// part of a tile, so count the words
+			long mask = -1L;
+			if (fromColumn > left)	mask &= -1L << (fromColumn & 63);
+			if (toColumn < right)	mask &= LifeKernel.lastWordMask(toColumn);
+			int count = 0;
+			for (int i = (int) Math.max(top, fromRow); i < Math.min(bottom, toRow); i++)	count += Long.bitCount(words[i * wordsPerRow + nodeColumn] & mask);
+			return count;
+		}
+
+		int count = 0;
+		for (int i = 0; i < 2; i++)
+			for (int j = 0; j < 2; j++)	count += countLiveCells(pyramid, level - 1, nodeRow * 2 + i, nodeColumn * 2 + j, fromRow, fromColumn, toRow, toColumn);
+		return count;
+	}
+
+	private void ensureTiles() {	// (re)makes the tile flags if they were thrown away, with every tile needing stepping
+		int numberOfTiles = numberOfTileRows() * numberOfTileColumns();
+		if (changedTiles != null && changedTiles.length == numberOfTiles)	return;
+
+		changedTiles = new boolean[numberOfTiles];
+		if (nextChangedTiles == null || nextChangedTiles.length != numberOfTiles) {
+			nextChangedTiles = new boolean[numberOfTiles];
+			activeTiles = new boolean[numberOfTiles];
+			editedTiles = new boolean[numberOfTiles];
+			flippingTiles = new boolean[numberOfTiles];
+			nextFlippingTiles = new boolean[numberOfTiles];
+			tileHashChanges = new long[numberOfTiles];
+		}
+		Arrays.fill(changedTiles, true);
+		Arrays.fill(editedTiles, true);
+		Arrays.fill(flippingTiles, true);
+	}
+
+	private boolean isInView(Cell cell) {	// true if a Cell was handed out by cells() and is still in use
+		int row = cell.getRow();
+		int column = cell.getColumn();
+		return view != null && row >= 0 && row < view.length && column >= 0 && column < view[row].length && view[row][column] == cell;
+	}
+
+	private boolean isChangedAround(int tileRow, int tileColumn) {	// true if a tile or any of the eight around it changed
+		for (int i = tileRow - 1; i <= tileRow + 1; i++)
+			for (int j = tileColumn - 1; j <= tileColumn + 1; j++) {
+				int tile = tileIndex(i, j);
+				if (tile != -1 && changedTiles[tile])	return true;
+			}
+
+		return false;
+	}
+
+	private int tileIndex(int tileRow, int tileColumn) {	// where a tile's flags are, wrapped round if periodic, or -1 if it's off the edge
+		if (isPeriodic) {	// modify according to periodicity
+			if (tileRow == -1)	tileRow = numberOfTileRows() - 1;
+			else if (tileRow == numberOfTileRows())	tileRow = 0;
+			if (tileColumn == -1)	tileColumn = numberOfTileColumns() - 1;
+			else if (tileColumn == numberOfTileColumns())	tileColumn = 0;
+		}
+		else if (tileRow == -1 || tileRow == numberOfTileRows() || tileColumn == -1 || tileColumn == numberOfTileColumns())	return -1;
+
+		return tileRow * wordsPerRow + tileColumn;
 	}
 
 	public boolean equals(City city) {	// returns true if the city is identical to this (doesn't count periodicity)
 		if (city.numberOfRows() != this.numberOfRows() || city.numberOfColumns() != this.numberOfColumns())	return false;
 
-		for (int i = 0; i <  this.numberOfRows(); i++) 
-			for (int j = 0; j <  this.numberOfColumns(); j++)
-				if (this.cells[i][j].isAlive != city.cells[i][j].isAlive)	return false;
-
-		return true;
+		return Arrays.equals(this.words, city.words) && Arrays.deepEquals(this.ages, city.ages);
 	}
 
-	public Cell[] neighbours(int row, int column) {	// returns all the neighbours of a Cell in a particular row and column. First, the three to the left, then the three to the right, then top and finally bottom.
+	public Cell[] neighbours(int row, int column) {	// returns all the neighbours of a Cell in a particular row and column (null off the edge). First, the three to the left, then the three to the right, then top and finally bottom. Under an extended rule, the whole neighbourhood row by row instead
+		if (rule.isExtended())	return extendedNeighbours(row, column);
+
 		Cell[] result = new Cell[8];
 		// assume that these are valid
 		int upRow = row - 1;
@@ -147,58 +534,111 @@ public class City implements Serializable {	// a City canvas/grid in which the C
 		}
 
 		if (leftColumn != -1) {	// there are cells to the left
-			result[0] = cells[row][leftColumn];
-			if (upRow != -1) {	// there are cells to the top
-				result[1] = cells[upRow][leftColumn];
-				result[2] = cells[upRow][column];
-			}
-			if (downRow != numberOfRows()) {	// there are cells to the bottom
-				result[3] = cells[downRow][leftColumn];
-				result[4] = cells[downRow][column];
-			}
+			result[0] = cellAt(row, leftColumn);
+			if (upRow != -1)	result[1] = cellAt(upRow, leftColumn);	// there are cells to the top
+			if (downRow != numberOfRows())	result[3] = cellAt(downRow, leftColumn);	// there are cells to the bottom
 		}
+		if (upRow != -1)	result[2] = cellAt(upRow, column);	// (these used to be left out in column 0 of a bounded city, as if they were off the edge too)
+		if (downRow != numberOfRows())	result[4] = cellAt(downRow, column);
 
 		if (rightColumn != numberOfColumns()) {	// there are cells to the right
-			result[5] = cells[row][rightColumn];
+			result[5] = cellAt(row, rightColumn);
 			if (upRow != -1) {	// there are cells to the top
-				result[6] = cells[upRow][rightColumn];
+				result[6] = cellAt(upRow, rightColumn);
 			}
 			if (downRow != numberOfRows()) {	// there are cells to the bottom
-				result[7] = cells[downRow][rightColumn];
+				result[7] = cellAt(downRow, rightColumn);
 			}
 		}
 
 		return result;
 	}
 
-	public int countAliveNeighbours(int row, int column) {	// counts the number of live neighbours a Cell in a particular row and column has
+	private Cell[] extendedNeighbours(int row, int column) {	// the neighbourhood of a Cell, row by row
+		int range = rule.getRange();
+		Cell[] result = new Cell[rule.getNumberOfNeighbours()];
+		int k = 0;
+		for (int i = row - range; i <= row + range; i++)
+			for (int j = column - range; j <= column + range; j++) {
+				if ((i == row && j == column) || !isInNeighbourhood(i - row, j - column))	continue;
+				int neighbourRow = wrap(i, numberOfRows);
+				int neighbourColumn = wrap(j, numberOfColumns);
+				result[k++] = neighbourRow == -1 || neighbourColumn == -1 ? null : cellAt(neighbourRow, neighbourColumn);
+			}
+
+		return result;
+	}
+
+	private Cell cellAt(int row, int column) {	// a Cell object with the state of the Cell in a particular row and column
+		Cell cell = new Cell(cellWidth, cellHeight);
+		cell.isAlive = isAlive(row, column);
+		return cell;
+	}
+
+	public int countAliveNeighbours(int row, int column) {	// counts the number of live neighbours a Cell in a particular row and column has, in the rule's neighbourhood. In column 0 of a bounded city, this includes the Cells just above and below, which used to be missed, so cities that have live Cells there now step differently (correctly)
+		int range = rule.getRange();
+		if (range == 1 && !rule.isVonNeumann() && row > 0 && row < numberOfRows - 1 && column > 0 && column < numberOfColumns - 1)	// the eight around it, three bits of each row at a time
+			return Long.bitCount(threeAround(row - 1, column)) + Long.bitCount(threeAround(row, column) & 5) + Long.bitCount(threeAround(row + 1, column));
+
 		int count = 0;	// counts the live neighbours
-		Cell[] neighbours = neighbours(row, column);	// holds the neighbours
 
-		for (int i = 0; i < neighbours.length; i++)
-			if (neighbours[i] != null)
-				if (neighbours[i].isAlive)	count++;
+		for (int i = row - range; i <= row + range; i++)
+			for (int j = column - range; j <= column + range; j++) {
+				if (i == row && j == column)	continue;	// not a neighbour of itself
+				if (!isInNeighbourhood(i - row, j - column))	continue;
+				int neighbourRow = wrap(i, numberOfRows);
+				int neighbourColumn = wrap(j, numberOfColumns);
+				if (neighbourRow == -1 || neighbourColumn == -1)	continue;	// off the edge
+
+				if (isAlive(neighbourRow, neighbourColumn))	count++;
+			}
 
 		return count;
 	}
 
-	public void render(Graphics g, boolean isCurvy, boolean isMonochrome) {
-		for (int i = 0; i < numberOfRows(); i++)	// fill all the live cells
-			for (int j = 0; j < numberOfColumns(); j++) {
-				Cell currentCell = cells[i][j];
-				int numberOfNeighbours = countAliveNeighbours(i, j);
+	private long threeAround(int row, int column) {	// the Cells in columns column - 1 to column + 1 of a row, as the bottom three bits (the columns must all be in the city)
+		int start = row * wordsPerRow + ((column - 1) >>> 6);
+		int shift = (column - 1) & 63;
+		long bits = words[start] >>> shift;
+		if (shift > 61)	bits |= words[start + 1] << (64 - shift);	// (part of it is in the next word)
+		return bits & 7;
+	}
 
-				currentCell.colourCell(numberOfNeighbours, isMonochrome);
+	private boolean isInNeighbourhood(int rowOffset, int columnOffset) {	// true if a Cell this far away is in the rule's neighbourhood (if it's within range)
+		return !rule.isVonNeumann() || Math.abs(rowOffset) + Math.abs(columnOffset) <= rule.getRange();
+	}
 
-				if (! (!currentCell.isAlive && numberOfNeighbours != 3)) {		// fill the cells
-					currentCell.render(this, g, isCurvy, i, j);
-				}
-			}
+	private int wrap(int index, int size) {	// a row or column wrapped round if periodic, or -1 if it's off the edge
+		if (isPeriodic)	return Math.floorMod(index, size);	// modify according to periodicity
+		return index >= 0 && index < size ? index : -1;
 	}
 
-	public void addPlayer(Player player) {
-		player.setRow((int) (Math.random() * numberOfRows()));
-		player.setColumn((int) (Math.random() * numberOfColumns()));
+	private void readObject(ObjectInputStream is) throws IOException, ClassNotFoundException {	// reads a City, including the old kind that was saved with a Cell object for every square
+		ObjectInputStream.GetField fields = is.readFields();
+		isPeriodic = fields.get("isPeriodic", false);
+		cellWidth = fields.get("cellWidth", 0);
+		cellHeight = fields.get("cellHeight", 0);
+
+		if (fields.getObjectStreamClass().getField("cells") != null) {	// an old one, so pack the Cells
+			Cell[][] cells = (Cell[][]) fields.get("cells", null);
+			numberOfRows = cells.length;
+			numberOfColumns = cells.length == 0 ? 0 : cells[0].length;
+			wordsPerRow = wordsPerRow(numberOfColumns);
+			words = new long[numberOfRows * wordsPerRow];
+			for (int i = 0; i < numberOfRows; i++)
+				for (int j = 0; j < numberOfColumns; j++)
+					if (cells[i][j].isAlive)	words[i * wordsPerRow + (j >>> 6)] |= 1L << j;
+		}
+		else {
+			words = (long[]) fields.get("words", null);
+			numberOfRows = fields.get("numberOfRows", 0);
+			numberOfColumns = fields.get("numberOfColumns", 0);
+			wordsPerRow = fields.get("wordsPerRow", 0);
+		}
+
+		rule = (Rule) fields.get("rule", Rule.CONWAY);	// (older cities only knew Conway's)
+		ages = (long[][]) fields.get("ages", null);
+		if (ages == null)	ages = new long[numberOfPlanes(rule)][words.length];
 	}
 
 }
\ No newline at end of file
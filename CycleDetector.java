@@ -0,0 +1,107 @@
+package com.convai;
+
+import java.util.*;	// for the Arrays utility class
+
+public class CycleDetector {	// spots a universe going back to a pattern it was in before, by remembering the hashes of its last few generations
+
+	private final long[] history;	// the hash of each remembered generation, at generation % its length
+	private final long[] tableHashes;	// the same hashes in an open-addressed table (a power of two slots) so each can be found at once
+	private final long[] tableGenerations;	// the generation of the hash in the same slot
+	private final boolean[] isUsed;	// true for the slots in use
+	private long firstGeneration;	// the oldest generation still remembered
+	private long lastGeneration = -1;	// the newest one (-1 if none)
+	private long cycleStart = -1;	// the first generation of the cycle found (-1 if none yet)
+	private long period;	// its length in generations
+
+	public CycleDetector() {
+		this(1024);
+	}
+
+	public CycleDetector(int historyLength) {	// remembers enough generations to catch cycles of up to historyLength generations
+		history = new long[historyLength];
+		int capacity = Integer.highestOneBit(Math.max(1, historyLength) * 4 - 1);
+		tableHashes = new long[capacity];
+		tableGenerations = new long[capacity];
+		isUsed = new boolean[capacity];
+	}
+
+	/* Getter Methods */
+
+	public boolean isCycling() {	// true once a generation has repeated an earlier one
+		return cycleStart != -1;
+	}
+
+	public long getCycleStart() {	// the first generation of the cycle (-1 if none has been found)
+		return cycleStart;
+	}
+
+	public long getPeriod() {	// the number of generations the cycle takes to come round (0 if none has been found)
+		return period;
+	}
+
+	/* Public methods */
+
+	public boolean record(long generation, long hash) {	// remembers the hash of the next generation. Returns true if it's the same as one of the remembered ones, and so the universe is in a cycle
+		if (lastGeneration != -1 && generation != lastGeneration + 1)	reset();	// a gap in the generations, so the old ones don't tell us anything
+		if (lastGeneration == -1)	firstGeneration = generation;
+
+		int slot = find(hash);
+		if (slot != -1 && cycleStart == -1) {
+			cycleStart = tableGenerations[slot];
+			period = generation - cycleStart;
+		}
+
+		if (generation - firstGeneration >= history.length) {	// forget the oldest generation to make room
+			remove(history[(int) (firstGeneration % history.length)], firstGeneration);
+			firstGeneration++;
+		}
+		history[(int) (generation % history.length)] = hash;
+		put(hash, generation);
+		lastGeneration = generation;
+
+		return slot != -1;
+	}
+
+	public void reset() {	// forgets every generation, eg. after the universe was changed by hand
+		Arrays.fill(isUsed, false);
+		lastGeneration = -1;
+		cycleStart = -1;
+		period = 0;
+	}
+
+	/* Private methods */
+
+	private int find(long hash) {	// the slot of a hash, or -1 if it isn't remembered
+		int mask = tableHashes.length - 1;
+		for (int i = LongSet.hash(hash) & mask; isUsed[i]; i = (i + 1) & mask)
+			if (tableHashes[i] == hash)	return i;
+
+		return -1;
+	}
+
+	private void put(long hash, long generation) {	// remembers the latest generation with a hash
+		int mask = tableHashes.length - 1;
+		int i = LongSet.hash(hash) & mask;
+		while (isUsed[i] && tableHashes[i] != hash)	i = (i + 1) & mask;
+		tableHashes[i] = hash;
+		tableGenerations[i] = generation;
+		isUsed[i] = true;
+	}
+
+	private void remove(long hash, long generation) {	// forgets a hash, unless a later generation has it too
+		int i = find(hash);
+		if (i == -1 || tableGenerations[i] != generation)	return;
+
+		int mask = tableHashes.length - 1;
+		for (int j = (i + 1) & mask; isUsed[j]; j = (j + 1) & mask) {	// shift back the hashes after it that would no longer be found
+			int home = LongSet.hash(tableHashes[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				tableHashes[i] = tableHashes[j];
+				tableGenerations[i] = tableGenerations[j];
+				i = j;
+			}
+		}
+		isUsed[i] = false;
+	}
+
+}
\ No newline at end of file
@@ -10,26 +10,44 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.KeyListener;	// for resizing cells
 import java.awt.event.KeyEvent;
 import java.io.*;	// for serialization
+import java.util.concurrent.*;	// for the simulation thread
+import java.util.function.UnaryOperator;	// for moving the viewport
 
 public class GoL {	// the main game class
 
 	protected int frameWidth = 600; 	// holds the width of the frame in pixels
 	protected int frameHeight = 600;	// holds the height of the frame in pixels
-	protected double  rowSpacing = 30; 	// holds the spacing of each row in pixels
-	protected double  columnSpacing = 30;	// holds the spacing of each column in pixels
-	protected int numberOfRows = frameHeight/ (int)  rowSpacing;
-	protected int numberOfColumns = frameWidth / (int)  columnSpacing;
+	protected static final int UNIVERSE_SIZE = 1024;	// the rows and columns of a new universe (the window shows as much of it as it's zoomed out to)
 	protected double fps = 0.2;		// the speed of the simulation (in FPS)
 	protected JFrame frame;	// the main frame
-	protected City city = new City((int) columnSpacing, (int) rowSpacing, numberOfRows, numberOfColumns);	// the city of cells within the game
-	protected boolean gameActive = false;		// flag for whether the game should be in process
-	protected boolean gameOver = true;	// tells if the game is over
+	protected Simulation simulation = new Simulation(new City(1, 1, UNIVERSE_SIZE, UNIVERSE_SIZE));	// the city of cells within the game, and its evolution (only touched on the simulation thread, see change)
+	protected ScheduledExecutorService simulationThread = Executors.newSingleThreadScheduledExecutor(runnable -> {	// evolves the city and makes every change to it, so the GUI never sees one half made
+		Thread thread = new Thread(runnable, "simulation");
+		thread.setDaemon(true);
+		return thread;
+	});
+	protected volatile Viewport viewport = Viewport.centredOn(UNIVERSE_SIZE / 2.0, UNIVERSE_SIZE / 2.0, frameWidth, frameHeight, 30);	// the part of the universe the window shows (see moveViewport)
+	protected volatile Snapshot snapshot;	// the latest generation handed over to be drawn
+	protected volatile double generationsOwed;	// how far the simulation is through evolving the next generation (it's evolved when this reaches 1)
+	protected boolean stopOnCycle = true;	// stops the game once the city is static or repeating itself
+	protected volatile boolean gameActive = false;		// flag for whether the game should be in process
 	protected boolean gridOn = false;	// true if we want the grid on
 	protected boolean isMonochrome = false;	// good ol' B&W if true
 	protected boolean isCurvy = false;	// makes cells oval shaped if true
-
-	public static void main(String[] args) {
+	protected boolean redrawAll = true;	// true if the whole city needs drawing again rather than just the parts that changed (eg. after a setting changed)
+	protected static final long FRAME_NANOS = 1000000000L / 60;	// the shortest time between two snapshots, for a steady 60 Hz at most
+	private static final long TICK_NANOS = 1000000;	// the shortest time between two ticks (faster than this, each tick evolves several generations)
+	private volatile ScheduledFuture<?> ticks;	// the simulation thread's ticking (null until the game is played)
+	private volatile double generationsPerTick;	// the generations each tick is due to evolve (less than 1 if slower than a tick a frame)
+	private volatile boolean isPainted = true;	// true once the latest snapshot has been drawn
+	private boolean isChanged = true;	// true if the city has changed since the latest snapshot (only touched on the simulation thread)
+	private long lastPublished;	// when the latest snapshot was taken (by System.nanoTime)
+	protected volatile Metrics metrics;	// measures the simulation and the drawing of it (null until it's asked for, see measure)
+	protected volatile boolean showMetrics = false;	// draws the metrics over the city if true
+
+	public static void main(String[] args) {	// usage: GoL [-metrics]
 		GoL game = new GoL();
+		if (args.length > 0 && args[0].equals("-metrics"))	game.measure();
 		game.play();
 	}
 
@@ -46,33 +64,23 @@ public class GoL {	// the main game class
 		return fps;
 	}
 
+	protected Universe city() {	// the city of cells within the game (only to be used on the simulation thread, see change)
+		return simulation.getCity();
+	}
+
 	/* Setter Methods */
 
 	public void setFPS(double fps) {
 		this.fps = fps;
+		if (ticks != null)	startSimulation();	// tick at the new rate
 	}
 
 	/* Public methods */
 
 	public void play() {	// the main funciton which does the execution
+		simulation.setHistory(new History());	// keep the recent generations to go back to
 		buildGui();
-		gameOver = false;	// game has just begun!
-		while (!gameOver) {
-			while (gameActive) {
-				render();
-			}
-			try{Thread.sleep(1);} catch (Exception e) {}	// give a chance for others to execute
-		}
-	}
-
-	protected void render() {	// renders the frame
-		evolve();	// let the configuration evolve
-		frame.repaint();	// repaint the new configuration
-		try{
-			Thread.sleep( (long) ( 1000 / getFPS() ) );	// sleep according to the FPS
-		} catch (Exception ex) {
-			ex.printStackTrace();
-		}
+		startSimulation();	// game has just begun!
 	}
 
 	/* Protected methods */
@@ -88,59 +96,173 @@ public class GoL {	// the main game class
 		frame.setVisible(true);
 	}
 
-	protected void resizeCity(double rowResizeAmount, double columnResizeAmount) {	// resizes the city by the desired multipliers
-		rowSpacing = rowSpacing * rowResizeAmount;
-		columnSpacing = columnSpacing * columnResizeAmount;
-		numberOfRows = frameHeight/ (int) rowSpacing;
-		numberOfColumns = frameWidth / (int) columnSpacing;
+	protected synchronized void moveViewport(UnaryOperator<Viewport> move) {	// pans or zooms the window over the universe (never touching the universe itself), then has a snapshot of what it shows handed over
+		viewport = move.apply(viewport);
+		change(() -> {});
+	}
+
+	protected synchronized void measure() {	// starts measuring the simulation, making the metrics available over JMX (once)
+		if (metrics != null)	return;
+		Metrics metrics = new Metrics();
+		metrics.register();
+		this.metrics = metrics;
+		change(() -> simulation.setMetrics(metrics));
+	}
+
+	protected void setAlive(int row, int column, boolean isAlive) {	// gives life to (or kills) a Cell, if it's in the universe
+		change(() -> {
+			if (isOpen() || (row >= 0 && row < city().numberOfRows() && column >= 0 && column < city().numberOfColumns()))	city().setAlive(row, column, isAlive);
+		});
+		frame.repaint();
+	}
 
-		city.resize((int) columnSpacing, (int) rowSpacing, numberOfRows, numberOfColumns);
+	protected synchronized void startSimulation() {	// (re)starts the simulation thread ticking, fast enough to evolve fps generations a second and to hand over snapshots at up to 60 Hz
+		if (ticks != null)	ticks.cancel(false);
+		long period = Math.max(TICK_NANOS, Math.min(FRAME_NANOS, (long) (1e9 / getFPS())));
+		generationsPerTick = getFPS() * period / 1e9;
+		ticks = simulationThread.scheduleAtFixedRate(this::tick, 0, period, TimeUnit.NANOSECONDS);
+	}
+
+	protected void change(Runnable change) {	// makes a change to the city on the simulation thread, between generations (or straight away, before the game is played)
+		if (ticks == null) {
+			change.run();
+			return;
+		}
+
+		simulationThread.execute(() -> {
+			try {
+				change.run();
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			}
+			isChanged = true;
+		});
+	}
+
+	private void tick() {	// runs on the simulation thread every tick: evolves the generations due, then hands over a snapshot if one is wanted
+		try {
+			if (gameActive) {
+				generationsOwed += generationsPerTick;
+				while (generationsOwed >= 1 && gameActive) {
+					generationsOwed--;
+					evolve();
+					isChanged = true;
+				}
+			}
+			else	generationsOwed = 0;
+			publish();
+		} catch (Exception ex) {	// keep ticking
+			ex.printStackTrace();
+		}
+	}
+
+	private void publish() {	// takes a snapshot of the city to be drawn, at most 60 times a second and not while the last one is still being drawn (so frames are skipped rather than holding up the simulation)
+		long now = System.nanoTime();
+		if (!isChanged || now - lastPublished < FRAME_NANOS)	return;
+		if (!isPainted && now - lastPublished < 1000000000L)	return;	// (after a second, it's likely the window just isn't being painted, eg. it's minimised)
+
+		Viewport shown;
+		synchronized (this) {	// keep the window over a universe with edges
+			if (!isOpen())	viewport = viewport.keepOver(city().numberOfRows(), city().numberOfColumns());
+			shown = viewport;
+		}
+
+		snapshot = new Snapshot(city(), simulation.getGeneration(), shown);
+		isChanged = false;
+		isPainted = false;
+		lastPublished = now;
+		if (frame != null)	frame.repaint();
+	}
+
+	private boolean isOpen() {	// true if Cells can live anywhere, past the universe's rows and columns (only to be used on the simulation thread)
+		return city() instanceof SparseUniverse && ((SparseUniverse) city()).isUnbounded() && !city().isPeriodic();
 	}
 
 	protected void evolve() {	// evolves the pattern according to the rules
 		if (!gameActive)	return;
-		
-		City newCity = city.nextGeneration();
-		if (newCity.equals(city))	gameActive = false;	// if the patern is static, why evolve further?
-		city = newCity;
+
+		if (simulation.step())	cycleFound(simulation.getCycleStart(), simulation.getPeriod());
+	}
+
+	protected void cycleFound(long start, long period) {	// called when the city goes back to a pattern it was in before (a period of 1 means it's static)
+		if (stopOnCycle)	gameActive = false;	// if the patern is just repeating, why evolve further?
+		SwingUtilities.invokeLater(() -> frame.setTitle("Repeating every " + period + " generations from generation " + start));
+	}
+
+	protected void setGameActive(boolean gameActive) {	// starts or stops the game
+		if (gameActive && !this.gameActive)	change(() -> simulation.forgetCycle());	// let it run on past a cycle it was stopped at
+		this.gameActive = gameActive;
+	}
+
+	protected void fastForward(long generations) {	// jumps the city ahead by a number of generations at once (see Simulation.fastForward)
+		simulation.fastForward(generations);
+	}
+
+	protected void rewind(long generation) {	// stops the game and takes the city back to an earlier generation (or on to a later one, if it was rewound from there)
+		gameActive = false;
+		boolean isKept = simulation.rewind(generation);
+		SwingUtilities.invokeLater(() -> frame.setTitle(isKept ? "Generation " + generation : "Generation " + generation + " is no longer kept"));
+	}
+
+	protected void switchUniverse() {	// swaps a dense City for an endless SparseUniverse (or back), keeping the cells on show (but not any dying ones)
+		if (city() instanceof City && (city().getRule().isBornFromNothing() || city().getRule().isExtended()))	return;	// a SparseUniverse can't follow this rule
+		Universe other;
+		if (city() instanceof City)	other = new SparseUniverse(city().cellWidth(), city().cellHeight(), city().numberOfRows(), city().numberOfColumns(), true);
+		else	other = new City(city().cellWidth(), city().cellHeight(), city().numberOfRows(), city().numberOfColumns());
+
+		other.setPeriodic(city().isPeriodic());
+		other.setRule(city().getRule());
+		city().forEachLiveCell(0, 0, city().numberOfRows(), city().numberOfColumns(), (i, j) -> other.setAlive(i, j, true));
+
+		simulation.setCity(other);
+	}
+
+	protected void setRule(Rule rule) {	// evolves the city by another rule from now on
+		if ((rule.isBornFromNothing() || rule.isExtended()) && city() instanceof SparseUniverse)	switchUniverse();	// only a City can follow it
+		city().setRule(rule);
+		simulation.forgetCycle();	// the same pattern may not repeat under the new rule
 	}
 
 	protected void clearCity() {	// clears the city
-		city.kill();
+		city().kill();
 	}
 
 	protected void randomize() {	// randomly makes 20 % of the cells alive
-		city.randomize(20);
+		city().randomize(20);
 	}
 
 	protected void savePattern(File file) {	// saves the current pattern to a file
 		try {
-			FileOutputStream fileStream = new FileOutputStream(file);
-			ObjectOutputStream os = new ObjectOutputStream(fileStream);
-			os.writeObject(frameWidth);
-			os.writeObject(frameHeight);
-			os.writeObject(rowSpacing);
-			os.writeObject(columnSpacing);
-			os.writeObject(getFPS());
-			os.writeObject(city);
+			if (LifeFormats.isLifeFormat(file))	LifeFormats.write(file, city());	// just the pattern
+			else	new PatternFile(frameWidth, frameHeight, viewport.getCellSize(), viewport.getCellSize(), getFPS(), city()).write(file);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
 	}
 
-	protected void loadPattern(File file) {	// loads a pattern from a file
+	protected void loadPattern(File file) {	// loads a pattern from a file (old serialized ones too)
+		gameActive = false;
+		if (LifeFormats.isLifeFormat(file)) {	// just the pattern, so put it in a clear city
+			change(() -> {
+				clearCity();
+				try {
+					LifeFormats.read(file, city());
+				} catch (IOException ex) {
+					ex.printStackTrace();
+				}
+			});
+			return;
+		}
+
 		try {
-			FileInputStream fileStream = new FileInputStream(file);
-			ObjectInputStream os = new ObjectInputStream(fileStream);
-			frameWidth = (int) os.readObject();
-			frameHeight = (int) os.readObject();
-			rowSpacing = (double) os.readObject();
-			columnSpacing = (double) os.readObject();
-			setFPS((double) os.readObject());
-			city = (City) os.readObject();
-			gameActive = false;
+			PatternFile pattern = PatternFile.read(file);
+			frameWidth = pattern.frameWidth;
+			frameHeight = pattern.frameHeight;
+			setFPS(pattern.fps);
+			change(() -> simulation.setCity(pattern.universe));
 			frame.setSize(frameWidth, frameHeight);
-			resizeCity(1, 1);
+			int cellSize = Math.max(1, Math.min(Viewport.MAXIMUM_CELL_SIZE, (int) pattern.rowSpacing));
+			moveViewport(shown -> new Viewport(0, 0, shown.getWidth(), shown.getHeight(), cellSize, 1));	// from the top left, as it was saved
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -150,9 +272,12 @@ public class GoL {	// the main game class
 
 	public class GoLPanel extends JPanel {	// the panel upon which everything appears
 
+		private PixelRenderer renderer = new PixelRenderer();	// keeps the city as it was last drawn, so that only the tiles of it that changed need drawing again
+
 		public void addAllListeners() {	// mainly to add listeners
-			addMouseListener(new ClickListener());
-			addMouseMotionListener(new ClickListener());
+			ClickListener clickListener = new ClickListener();
+			addMouseListener(clickListener);
+			addMouseMotionListener(clickListener);
 			addMouseWheelListener(new ScrollListener());
 			addKeyListener(new KeyBoardListener());
 			setFocusable(true);
@@ -161,77 +286,55 @@ public class GoL {	// the main game class
 
 		public void paintComponent(Graphics g) {	// repaint calls this
 
-			Graphics2D g2d = (Graphics2D) g;
-		    	g2d.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
+			frameWidth = frame.getWidth();
+			frameHeight = frame.getHeight();
+			int width = getWidth();
+			int height = getHeight();
+			if (viewport.getWidth() != width || viewport.getHeight() != height)	// if the window is resized, show more (or less) of the universe around the same middle
+				moveViewport(shown -> shown.resize(width, height).panBy((shown.getWidth() - width) / 2, (shown.getHeight() - height) / 2));
 
-			g2d.setColor(Color.white);
-			g2d.fillRect(0, 0, getWidth(), getHeight());	// the background
+			Snapshot shown = snapshot;	// (the simulation may hand over another while this one's being drawn)
+			if (shown == null)	return;
 
-			if (frame.getWidth() != frameWidth || frame.getHeight() != frameHeight) {	// if the frame is resized, resize the city accordingly
-				frameWidth = frame.getWidth();
-				frameHeight = frame.getHeight();
-				resizeCity(1, 1);
+			if (redrawAll) {	// start again from a blank canvas
+				renderer.invalidate();
+				redrawAll = false;
 			}
 
-			if (gridOn) {	// draw the grid
-				for (int i = 1; i < numberOfRows; i++) {	// draw all the row divider lines
-					g2d.setColor(Color.black);
-					g2d.drawLine(0, i*(int) rowSpacing, getWidth(), i*(int) rowSpacing);
-				}
-
-				for (int i = 1; i < numberOfColumns; i++) {	// draw all the column divider lines
-					g2d.setColor(Color.black);
-					g2d.drawLine(i*(int) columnSpacing, 0, i*(int) columnSpacing, getHeight());
-				}
+			Metrics metrics = GoL.this.metrics;
+			long start = metrics != null ? metrics.startRender() : 0;
+			g.drawImage(renderer.render(shown, isCurvy, isMonochrome, gridOn), 0, 0, null);
+			if (metrics != null) {
+				metrics.endRender(start, width, height);
+				if (showMetrics)	metrics.render(g, 8, 8);
 			}
-
-			city.render(g, isCurvy, isMonochrome);
+			isPainted = true;
 		}
 	
 	}
 
 	public class ClickListener implements MouseInputListener {	// listens for mouse events
 
+		private int lastX;	// where the mouse was when last seen while panning
+		private int lastY;
+
 		public void mouseClicked(MouseEvent e) {		// the mouse is clicked
-			if (e.getButton() == MouseEvent.BUTTON1){	// left click creates the cell
-				int x = e.getX();
-				int y = e.getY();
-				int row = y / (int) rowSpacing;
-				int column = x / (int) columnSpacing;
-				city.cells[row][column].isAlive = true;
-				frame.repaint();
-			}
-			if (e.getButton() == MouseEvent.BUTTON3){	// right click kills the cell
-				int x = e.getX();
-				int y = e.getY();
-				int row = y / (int) rowSpacing;
-				int column = x / (int) columnSpacing;
-				city.cells[row][column].isAlive = false;
-				frame.repaint();
-			}
+			if (e.getButton() == MouseEvent.BUTTON1)	setAlive(e, true);	// left click creates the cell
+			if (e.getButton() == MouseEvent.BUTTON3)	setAlive(e, false);	// right click kills the cell
 			if (e.getButton() == MouseEvent.BUTTON2){	// scroll button click toggles the game active
-				gameActive = !gameActive;
+				setGameActive(!gameActive);
 			}
 		}
 
 		public void mouseDragged(MouseEvent e) {
-			if (SwingUtilities.isLeftMouseButton(e)){	// left click creates the cell
-				int x = e.getX();
-				int y = e.getY();
-				int row = y / (int) rowSpacing;
-				int column = x / (int) columnSpacing;
-				if (row >= numberOfRows || row < 0 || column >= numberOfColumns || column < 0)	return;
-				city.cells[row][column].isAlive = true;
-				frame.repaint();
-			}
-			if (SwingUtilities.isRightMouseButton(e)){	// right click kills the cell
-				int x = e.getX();
-				int y = e.getY();
-				int row = y / (int) rowSpacing;
-				int column = x / (int) columnSpacing;
-				if (row >= numberOfRows || row < 0 || column >= numberOfColumns || column < 0)	return;
-				city.cells[row][column].isAlive = false;
-				frame.repaint();
+			if (SwingUtilities.isLeftMouseButton(e))	setAlive(e, true);	// left click creates the cell
+			if (SwingUtilities.isRightMouseButton(e))	setAlive(e, false);	// right click kills the cell
+			if (SwingUtilities.isMiddleMouseButton(e)) {	// scroll button drags the universe around
+				int dx = lastX - e.getX();
+				int dy = lastY - e.getY();
+				moveViewport(shown -> shown.panBy(dx, dy));
+				lastX = e.getX();
+				lastY = e.getY();
 			}
 		}
 
@@ -241,56 +344,123 @@ public class GoL {	// the main game class
 
 		public void mouseMoved(MouseEvent e) {}
 
-		public void mousePressed(MouseEvent e) {}
+		public void mousePressed(MouseEvent e) {
+			lastX = e.getX();
+			lastY = e.getY();
+		}
 
 		public void mouseReleased(MouseEvent e) {}
 
+		private void setAlive(MouseEvent e, boolean isAlive) {	// gives life to (or kills) the Cell under the mouse
+			long row = viewport.rowAt(e.getY());
+			long column = viewport.columnAt(e.getX());
+			if (row == (int) row && column == (int) column)	GoL.this.setAlive((int) row, (int) column, isAlive);
+		}
+
 	}
 
 	public class ScrollListener implements MouseWheelListener {	// scrolling up/down speeds up/down the game
 
 		public void mouseWheelMoved(MouseWheelEvent e) {
+			if (e.isControlDown()) {	// zoom in or out around the mouse
+				moveViewport(shown -> e.getWheelRotation() > 0 ? shown.zoomOut(e.getX(), e.getY()) : shown.zoomIn(e.getX(), e.getY()));
+				return;
+			}
+
 			if (e.getWheelRotation() > 0) {
 				if (getFPS() >= 0.2)	setFPS(getFPS() * 0.97);
 			}
 			else
-				if (getFPS() <= 100)	setFPS(getFPS() * 1.03);
+				if (getFPS() <= 10000)	setFPS(getFPS() * 1.03);
 		}
 
 	}
 
 	public class KeyBoardListener implements KeyListener {	// all the keyboard commands
 		public void keyPressed(KeyEvent e) {
-			if (e.getKeyCode() == KeyEvent.VK_SPACE)	gameActive = !gameActive;
+			redrawAll = true;	// most keys change how things look
+			if (e.getKeyCode() == KeyEvent.VK_SPACE)	setGameActive(!gameActive);
 			if (e.getKeyCode() == KeyEvent.VK_G)	gridOn = !gridOn;
 			if (e.getKeyCode() == KeyEvent.VK_C)	isMonochrome = !isMonochrome;
-			if (e.getKeyCode() == KeyEvent.VK_N)	clearCity();
-			if (e.getKeyCode() == KeyEvent.VK_R)	randomize();
+			if (e.getKeyCode() == KeyEvent.VK_N)	change(() -> clearCity());
+			if (e.getKeyCode() == KeyEvent.VK_R)	change(() -> randomize());
 			if (e.getKeyCode() == KeyEvent.VK_T)	isCurvy = !isCurvy;
-			if (e.getKeyCode() == KeyEvent.VK_P)	city.isPeriodic = !city.isPeriodic;
+			if (e.getKeyCode() == KeyEvent.VK_M)	{	// shows (or hides) the metrics, measuring from the first time
+				measure();
+				showMetrics = !showMetrics;
+			}
+			if (e.getKeyCode() == KeyEvent.VK_P)	change(() -> city().setPeriodic(!city().isPeriodic()));
+			if (e.getKeyCode() == KeyEvent.VK_U)	change(() -> switchUniverse());
 			if (e.getKeyCode() == KeyEvent.VK_F11)	fullScreen();
+			if (e.getKeyCode() == KeyEvent.VK_BACK_SPACE)	change(() -> rewind(simulation.getGeneration() - 1));	// back a generation
+
+			if (e.getKeyCode() == KeyEvent.VK_F)	{
+				String generations = JOptionPane.showInputDialog(frame, "Generations to fast-forward:", "Fast-Forward", JOptionPane.QUESTION_MESSAGE);
+				try {
+					if (generations != null) {
+						long count = Long.parseLong(generations.trim());
+						change(() -> fastForward(count));
+					}
+				} catch (NumberFormatException ex) {
+					JOptionPane.showMessageDialog(frame, "Not a number of generations: " + generations);
+				}
+			}
+
+			if (e.getKeyCode() == KeyEvent.VK_J)	{
+				String generation = JOptionPane.showInputDialog(frame, "Generation to go back to:", "Rewind", JOptionPane.QUESTION_MESSAGE);
+				try {
+					if (generation != null) {
+						long target = Long.parseLong(generation.trim());
+						change(() -> rewind(target));
+					}
+				} catch (NumberFormatException ex) {
+					JOptionPane.showMessageDialog(frame, "Not a generation: " + generation);
+				}
+			}
+
+			if (e.getKeyCode() == KeyEvent.VK_L)	{
+				String rule = JOptionPane.showInputDialog(frame, "Rule (B3/S23 for Conway's, with the number of states for Generations, as B2/S/C3, or Larger than Life, as R5,C0,M1,S34..58,B34..45,NM):", city().getRule());
+				try {
+					if (rule != null) {
+						Rule parsed = Rule.parse(rule);
+						change(() -> setRule(parsed));
+					}
+				} catch (IllegalArgumentException ex) {
+					JOptionPane.showMessageDialog(frame, "Not a rule: " + rule);
+				}
+			}
 
 			if (e.getKeyCode() == KeyEvent.VK_S)	{
 				JFileChooser fileSave = new JFileChooser("Save Pattern");
 				fileSave.setCurrentDirectory(new File(System.getProperty("user.dir")));
 				fileSave.setFileFilter(new FileNameExtensionFilter("GoL Files", "gol"));
-				fileSave.showSaveDialog(frame);
-				if (!fileSave.getSelectedFile().getName().contains(".gol") ) savePattern(new File(fileSave.getSelectedFile().getName() + ".gol"));
-				else	savePattern(fileSave.getSelectedFile());
+				fileSave.addChoosableFileFilter(new FileNameExtensionFilter("Life Patterns (RLE, plaintext, Life 1.06)", "rle", "cells", "lif", "life"));
+				if (fileSave.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+					File file;
+					if (LifeFormats.isLifeFormat(fileSave.getSelectedFile()))	file = fileSave.getSelectedFile();
+					else if (!fileSave.getSelectedFile().getName().contains(".gol") ) file = new File(fileSave.getSelectedFile().getName() + ".gol");
+					else	file = fileSave.getSelectedFile();
+					change(() -> savePattern(file));
+				}
 			}
 
 			if (e.getKeyCode() == KeyEvent.VK_O)	{
 				JFileChooser fileOpen = new JFileChooser("Load Pattern");
 				fileOpen.setCurrentDirectory(new File(System.getProperty("user.dir")));
 				fileOpen.setFileFilter(new FileNameExtensionFilter("GoL Files", "gol"));
-				fileOpen.showOpenDialog(frame);
-				loadPattern(fileOpen.getSelectedFile());
+				fileOpen.addChoosableFileFilter(new FileNameExtensionFilter("Life Patterns (RLE, plaintext, Life 1.06)", "rle", "cells", "lif", "life"));
+				if (fileOpen.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION)	loadPattern(fileOpen.getSelectedFile());
 			}
 
 			if (e.getKeyCode() == KeyEvent.VK_ADD || e.getKeyCode() == KeyEvent.VK_PLUS || e.getKeyCode() == KeyEvent.VK_EQUALS)
-				resizeCity(1.03, 1.03);
+				moveViewport(shown -> shown.zoomIn(shown.getWidth() / 2, shown.getHeight() / 2));
 			else if (e.getKeyCode() == KeyEvent.VK_SUBTRACT || e.getKeyCode() == KeyEvent.VK_MINUS)
-				resizeCity(0.97, 0.97);
+				moveViewport(shown -> shown.zoomOut(shown.getWidth() / 2, shown.getHeight() / 2));
+
+			if (e.getKeyCode() == KeyEvent.VK_LEFT)	moveViewport(shown -> shown.panBy(-shown.getWidth() / 8, 0));	// the arrows pan an eighth of the window at a time
+			if (e.getKeyCode() == KeyEvent.VK_RIGHT)	moveViewport(shown -> shown.panBy(shown.getWidth() / 8, 0));
+			if (e.getKeyCode() == KeyEvent.VK_UP)	moveViewport(shown -> shown.panBy(0, -shown.getHeight() / 8));
+			if (e.getKeyCode() == KeyEvent.VK_DOWN)	moveViewport(shown -> shown.panBy(0, shown.getHeight() / 8));
 			frame.repaint();
 		}
 
@@ -0,0 +1,169 @@
+package com.convai;
+
+import java.io.*;	// for the pattern files
+import java.util.*;	// for the Locale of the statistics
+
+public class GoLBatch {	// runs a pattern for a number of generations as fast as it will go, with no GUI, then saves where it got to and prints some statistics
+	// usage: GoLBatch pattern generations [output] [-rows n] [-columns n] [-unbounded] [-periodic] [-threads n] [-stop] [-hashlife] [-rule B3/S23] [-mapped file] [-metrics]
+
+	private File input;	// the pattern to start from (.gol, .rle, .cells, .lif or .life)
+	private File output;	// where to save the last generation (null to not save it)
+	private long generations;	// the number of generations to run
+	private int numberOfRows = 1024;	// the size of the universe a .rle, .cells, .lif or .life pattern is put in (a .gol file brings its own)
+	private int numberOfColumns = 1024;
+	private boolean isUnbounded = false;	// puts the pattern in an endless SparseUniverse instead of a City
+	private boolean isPeriodic = false;	// makes the universe wrap round
+	private int threads = Runtime.getRuntime().availableProcessors();	// the number of threads to step a large City on
+	private boolean stopOnCycle = false;	// stops as soon as the pattern is static or repeating itself
+	private boolean useHashLife = false;	// jumps ahead with HashLife (on an endless plane) instead of stepping each generation
+	private Rule rule;	// the rule to run the pattern by (null for the one the pattern comes with, or Conway's)
+	private File mapped;	// a file to keep the universe in, as a MappedCity, for one too big for the heap (null to keep it on the heap). A .golmap pattern carries on from such a file
+	private boolean isMeasured = false;	// measures each step (readable over JMX while it runs), printing how long they took
+
+	public static void main(String[] args) {
+		GoLBatch batch = new GoLBatch();
+		try {
+			batch.parse(args);
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println("usage: GoLBatch pattern generations [output] [-rows n] [-columns n] [-unbounded] [-periodic] [-threads n] [-stop] [-hashlife] [-rule B3/S23] [-mapped file] [-metrics]");
+			System.exit(2);
+		}
+
+		try {
+			batch.run(System.out);
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/* Public methods */
+
+	public void parse(String[] args) {	// reads the command line
+		List<String> files = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-rows"))	numberOfRows = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-columns"))	numberOfColumns = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-unbounded"))	isUnbounded = true;
+				else if (args[i].equals("-periodic"))	isPeriodic = true;
+				else if (args[i].equals("-threads"))	threads = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-stop"))	stopOnCycle = true;
+				else if (args[i].equals("-hashlife"))	useHashLife = true;
+				else if (args[i].equals("-rule"))	rule = Rule.parse(args[++i]);
+				else if (args[i].equals("-mapped"))	mapped = new File(args[++i]);
+				else if (args[i].equals("-metrics"))	isMeasured = true;
+				else if (args[i].startsWith("-"))	throw new IllegalArgumentException("unknown option " + args[i]);
+				else	files.add(args[i]);
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+			throw new IllegalArgumentException("an option is missing its number");
+		}
+
+		if (files.size() < 2 || files.size() > 3)	throw new IllegalArgumentException("need a pattern, a number of generations and (optionally) an output file");
+		input = new File(files.get(0));
+		try {
+			generations = Long.parseLong(files.get(1));
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("not a number of generations: " + files.get(1));
+		}
+		if (generations < 0)	throw new IllegalArgumentException("can't run a negative number of generations");
+		if (files.size() == 3)	output = new File(files.get(2));
+		if (numberOfRows < 1 || numberOfColumns < 1 || threads < 1)	throw new IllegalArgumentException("rows, columns and threads must all be at least 1");
+		if (isUnbounded && rule != null && (rule.isBornFromNothing() || rule.isExtended()))	throw new IllegalArgumentException("an unbounded universe can't follow " + rule);
+		boolean isMapped = mapped != null || isMappedFile(input);
+		if (useHashLife && (!isUnbounded || isPeriodic))	throw new IllegalArgumentException("HashLife only runs an unbounded universe (see -unbounded)");
+		if (isMapped && (isUnbounded || useHashLife))	throw new IllegalArgumentException("a mapped universe can't be unbounded or run with HashLife");
+		if (isMapped && rule != null && (rule.isGenerations() || rule.isExtended()))	throw new IllegalArgumentException("a mapped universe can't follow " + rule);
+	}
+
+	public void run(PrintStream out) throws IOException {	// loads the pattern, runs it, saves it and prints the statistics
+		Universe city = load();
+		ParallelEngine engine = new ParallelEngine(threads);
+		Simulation simulation = new Simulation(city, engine);
+		Metrics metrics = null;
+		if (isMeasured) {
+			metrics = new Metrics();
+			metrics.register();
+			simulation.setMetrics(metrics);
+		}
+
+		long start = System.nanoTime();
+		long run;
+		try {
+			if (useHashLife) {
+				simulation.fastForward(generations);
+				run = generations;
+			}
+			else	run = simulation.run(generations, stopOnCycle);
+		} finally {
+			engine.close();	// (its threads aren't needed again)
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (output != null)	save(simulation.getCity());
+		if (city instanceof MappedCity)	((MappedCity) city).close();	// (checkpointing it, so it can be carried on from)
+
+		double seconds = Math.max(elapsed, 1) / 1e9;
+		out.println("generations: " + run);
+		out.println("population: " + simulation.getPopulation());
+		out.println("hash: " + String.format("%016x", city.getHash()));
+		if (simulation.isCycling())	out.println("cycle: every " + simulation.getPeriod() + " generations from generation " + simulation.getCycleStart());
+		else	out.println("cycle: none found");
+		out.println("time: " + String.format(Locale.ROOT, "%.3f", seconds) + " s");
+		out.println("speed: " + String.format(Locale.ROOT, "%.1f", run / seconds) + " generations/s, " + String.format(Locale.ROOT, "%.3g", (double) run * city.numberOfRows() * city.numberOfColumns() / seconds) + " cells/s");
+		if (metrics != null && metrics.getSteps() > 0) {	// (HashLife's jump isn't a step)
+			out.println("step: " + String.format(Locale.ROOT, "%.1f", metrics.getStepMean() / 1e3) + " us mean, " + String.format(Locale.ROOT, "%.1f", metrics.getStepPercentile(50) / 1e3) + " us p50, " + String.format(Locale.ROOT, "%.1f", metrics.getStepPercentile(99) / 1e3) + " us p99, " + String.format(Locale.ROOT, "%.1f", metrics.getStepMaximum() / 1e3) + " us max");
+			if (metrics.getAllocated() >= 0)	out.println("allocated: " + metrics.getAllocated() + " bytes in the last step");
+			metrics.unregister();
+		}
+	}
+
+	/* Private methods */
+
+	private Universe load() throws IOException {	// the universe to start from
+		if (isMappedFile(input)) {
+			MappedCity city = MappedCity.open(input);
+			if (isPeriodic)	city.setPeriodic(true);
+			if (rule != null)	city.setRule(rule);
+			return city;
+		}
+
+		if (!LifeFormats.isLifeFormat(input)) {
+			Universe city = PatternFile.read(input).universe;
+			if (isPeriodic)	city.setPeriodic(true);
+			if (rule != null)	city.setRule(rule);
+			if (mapped == null)	return city;
+
+			MappedCity mappedCity = new MappedCity(mapped, 1, 1, city.numberOfRows(), city.numberOfColumns());	// copy it into the file a row at a time
+			long[] words = new long[(city.numberOfColumns() + 63) >>> 6];
+			for (int i = 0; i < city.numberOfRows(); i++) {
+				city.readRow(i, words);
+				mappedCity.writeRow(i, words);
+			}
+			mappedCity.setPeriodic(city.isPeriodic());
+			mappedCity.setRule(city.getRule());
+			return mappedCity;
+		}
+
+		Universe city;
+		if (isUnbounded)	city = new SparseUniverse(1, 1, numberOfRows, numberOfColumns, true);
+		else if (mapped != null)	city = new MappedCity(mapped, 1, 1, numberOfRows, numberOfColumns);
+		else	city = new City(1, 1, numberOfRows, numberOfColumns);
+		city.setPeriodic(isPeriodic);
+		LifeFormats.read(input, city);
+		if (rule != null)	city.setRule(rule);
+		return city;
+	}
+
+	private static boolean isMappedFile(File file) {	// true if a file is a MappedCity's, by its name
+		return file != null && file.getName().toLowerCase(Locale.ROOT).endsWith(".golmap");
+	}
+
+	private void save(Universe city) throws IOException {	// saves the last generation in the format the output file's name says
+		if (LifeFormats.isLifeFormat(output))	LifeFormats.write(output, city);
+		else	new PatternFile(city.numberOfColumns(), city.numberOfRows(), 1, 1, 0, city).write(output);
+	}
+
+}
\ No newline at end of file
@@ -10,14 +10,22 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.KeyListener;	// for resizing cells
 import java.awt.event.KeyEvent;
 import java.io.*;	// for serialization
+import java.util.concurrent.TimeUnit;	// for checking on the clients
 
 class GoLGame extends GoL {
 
-	private Player player;
-	private double refreshBarWidth = frameWidth / 2.0;
+	private static final int CELL_SIZE = 150;	// the pixel size of the Cells, big enough to play on
+	private static final int PLAYER = 0;	// the player on the keyboard (the rest are bots)
+	private int numberOfBots = 0;	// the bots playing too
+	private Players players;	// every player, brought up to date on the simulation thread after each generation
+	private volatile Players.View shownPlayers;	// the players as they were after the latest generation (or move), to be drawn
+	private int port = -1;	// the port to stream the game on to clients that watch it and move the bots (-1 to not)
+	private SpectatorServer server;
 
-	public static void main(String[] args) {
+	public static void main(String[] args) {	// usage: GoLGame [bots] [port]
 		GoLGame game = new GoLGame();
+		if (args.length > 0)	game.numberOfBots = Integer.parseInt(args[0]);
+		if (args.length > 1)	game.port = Integer.parseInt(args[1]);
 		game.play();
 	}
 
@@ -37,53 +45,75 @@ class GoLGame extends GoL {
 		frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
 		frame.setUndecorated(true);
 		frame.setVisible(true);
+		new Timer(1000 / 60, e -> frame.repaint()).start();	// keeps the refresh bar moving
 		gridOn = false;
 		isCurvy = true;
 		setFPS(0.2);
-		resizeCity(5, 5);
-		player = new Player(city);
+		Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+		int side = (int) Math.ceil(Math.sqrt(numberOfBots * 16.0));	// room for the bots to move about
+		simulation.setCity(new City(1, 1, Math.max(screen.height / CELL_SIZE, side), Math.max(screen.width / CELL_SIZE, side)));	// a board that fits on the screen, or bigger if the bots need it
+		moveViewport(shown -> new Viewport(0, 0, shown.getWidth(), shown.getHeight(), CELL_SIZE, 1));
+		players = new Players(1 + numberOfBots);
+		players.add(city(), false);
+		for (int b = 0; b < numberOfBots; b++)	players.add(city(), true);
+		if (port >= 0)	serve();
 		clearCity();
 	}
 
-	protected void evolve() {
+	protected void evolve() {	// after each generation, the bots move and everyone's health goes up or down in one pass, however often the window is painted
 		super.evolve();
-		if (!player.isAlive())		gameActive = false;
+		players.update(city(), 1250 * getFPS(), 50 / getFPS());	// (as much as a thousand steps of the refresh bar used to make)
+		showPlayers();
+		if (!players.isAlive(PLAYER))		gameActive = false;
 	}
 
 	protected void clearCity() {
 		super.clearCity();
-		player.setHealth(100);
+		players.respawn(city());
+		showPlayers();
 		frame.repaint();
 	}
 
 	protected void randomize() {
 		super.randomize();
-		city.cells[player.getRow()][player.getColumn()].isAlive = true;
-		player.setHealth(100);
+		players.respawn(city());
+		players.bringToLife(city());
+		showPlayers();
 	}
 
-	protected void render() {
-		evolve();	// let the configuration evolve
-		frame.repaint();	// repaint the new configuration
-		repaintRefreshBar();
+	protected void loadPattern(File file) {	// everyone starts again on the pattern loaded (which may be a smaller city than the one they were on)
+		super.loadPattern(file);
+		change(() -> {
+			players.respawn(city());
+			showPlayers();
+		});
+		frame.repaint();
 	}
 
-	protected void resizeCity(double rowResizeAmount, double columnResizeAmount) {
-		super.resizeCity(rowResizeAmount, columnResizeAmount);
-		refreshBarWidth = frameWidth / 2.0;
+	private void showPlayers() {	// hands over the players as they are now to be drawn, and the city to be streamed (only on the simulation thread)
+		shownPlayers = players.view(city().getRule());
+		if (server != null)	server.publish(city(), simulation.getGeneration());
 	}
 
-	private void repaintRefreshBar() {	// repaints the refresh bar
-		while (refreshBarWidth  > frameWidth / 2000.0) {
-			refreshBarWidth -= frameWidth / 2000.0;
-			frame.repaint();
-			try{
-				Thread.sleep( (long) ( 1 / getFPS() ) );	// sleep according to the FPS
-			} catch (Exception ex) {
-				ex.printStackTrace();
-			}
+	private void serve() {	// streams the game to clients on the port, letting them move the bots (not the player on the keyboard)
+		try {
+			server = new SpectatorServer(port, (bot, changeInX, changeInY) -> {
+				if (bot != PLAYER)	players.move(bot, changeInX, changeInY);
+			});
+			simulationThread.scheduleWithFixedDelay(() -> {	// a client that joins while the game is stopped still gets to see it
+				if (server.isWaiting())	server.publish(city(), simulation.getGeneration());
+			}, 100, 100, TimeUnit.MILLISECONDS);
+		} catch (IOException ex) {
+			ex.printStackTrace();
 		}
-		refreshBarWidth = frameWidth/2.0;
+	}
+
+	private void move(int changeInX, int changeInY) {	// moves the player on the keyboard straight away, between generations
+		players.move(PLAYER, changeInX, changeInY);
+		change(() -> {
+			players.resolveMoves(city());
+			showPlayers();
+		});
 	}
 
 	public class GoLPanel extends GoL.GoLPanel {	// the panel upon which everything appears
@@ -93,30 +123,25 @@ class GoLGame extends GoL {
 		}
 
 		public void addAllListeners() {
-			addMouseListener(new ClickListener());
-			addMouseMotionListener(new ClickListener());
+			ClickListener clickListener = new ClickListener();
+			addMouseListener(clickListener);
+			addMouseMotionListener(clickListener);
 			addMouseWheelListener(new ScrollListener());
 			addKeyListener(new KeyBoardListener());
 			setFocusable(true);
 			setFocusTraversalKeysEnabled(false);
 		}
 
-		public void paintComponent(Graphics g) {	// draws a heart for the current player
+		public void paintComponent(Graphics g) {	// draws the players on top
 			super.paintComponent(g);
 
-			if (!gameActive)	return;
+			Snapshot shown = snapshot;
+			Players.View shownPlayers = GoLGame.this.shownPlayers;
+			if (!gameActive || shown == null || shownPlayers == null)	return;
 
 			Graphics2D g2d = (Graphics2D) g;
 			g2d.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
-
-			int numberOfNeighbours = city.countAliveNeighbours(player.getRow(), player.getColumn());
-
-			if (numberOfNeighbours == 2 || numberOfNeighbours == 3)	player.setHealth(player.getHealth() + 1.25 * getFPS());
-		    	else	player.setHealth(player.getHealth() - 0.05 / getFPS());
-
-			player.colourCell(numberOfNeighbours, isMonochrome);
-			player.render(g, isCurvy, city.cellWidth(), city.cellHeight());
-
+			shownPlayers.render(g, shown.getViewport(), isCurvy, isMonochrome);
 		}
 	
 	}
@@ -124,11 +149,11 @@ class GoLGame extends GoL {
 	public class KeyBoardListener extends GoL.KeyBoardListener{
 
 		public void keyPressed(KeyEvent e) {
-			super.keyPressed(e);
-			if (e.getKeyCode() == KeyEvent.VK_LEFT)	player.move(city, -1, 0);
-			if (e.getKeyCode() == KeyEvent.VK_RIGHT)	player.move(city, 1, 0);
-			if (e.getKeyCode() == KeyEvent.VK_UP)	player.move(city, 0, -1);
-			if (e.getKeyCode() == KeyEvent.VK_DOWN)	player.move(city, 0, 1);
+			if (e.getKeyCode() == KeyEvent.VK_LEFT)	move(-1, 0);	// the arrows move the player rather than the view
+			else if (e.getKeyCode() == KeyEvent.VK_RIGHT)	move(1, 0);
+			else if (e.getKeyCode() == KeyEvent.VK_UP)	move(0, -1);
+			else if (e.getKeyCode() == KeyEvent.VK_DOWN)	move(0, 1);
+			else	super.keyPressed(e);
 			frame.repaint();
 		}
 
@@ -151,17 +176,10 @@ class GoLGame extends GoL {
 		public void paintComponent(Graphics g) {
 			Graphics2D g2d = (Graphics2D) g;
 			g2d.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
-			if (!gameActive)	return;
-			g2d.setColor(player.color);
-			g2d.fillRect((int) (getWidth() * 0.25), (int) (getHeight() * 0.25), (int) refreshBarWidth, (int) (getHeight() * 0.5));
-		}
-
-	}
-
-	private class RefreshBarShortener implements Runnable{
-
-		public void run() {
-			repaintRefreshBar();
+			Players.View shownPlayers = GoLGame.this.shownPlayers;
+			if (!gameActive || shownPlayers == null)	return;
+			g2d.setColor(shownPlayers.colourOf(PLAYER, isMonochrome));
+			g2d.fillRect((int) (getWidth() * 0.25), (int) (getHeight() * 0.25), (int) (frameWidth / 2.0 * (1 - generationsOwed)), (int) (getHeight() * 0.5));	// shrinks until the next generation
 		}
 
 	}
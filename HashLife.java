@@ -0,0 +1,303 @@
+package com.convai;
+
+import java.util.*;	// for the node table
+
+public class HashLife {	// evolves a pattern on an endless plane by splitting it into a quadtree of squares, sharing every square that appears more than once and remembering what each one turns into, so that it can jump ahead 2^k generations at a time
+
+	private static final Node DEAD = new Node(0);	// the two single Cells every square is made of
+	private static final Node ALIVE = new Node(1);
+
+	private final Rule rule;	// the rule the pattern evolves by (a Life-like one that leaves empty space empty)
+	private final int maximumNodes;	// the most squares kept in the table before the least recently used ones are forgotten
+	private final Map<Node, Node> nodes;	// the canonical copy of every square, so that equal squares are the same object
+	private final Node[] empty = new Node[64];	// the empty square of each level
+	private Node root = DEAD;	// the whole pattern
+	private long originRow;	// the row and column of the top left of root on the plane
+	private long originColumn;
+	private long generation;	// the number of generations advanced so far
+
+	public HashLife() {
+		this(Rule.CONWAY);
+	}
+
+	public HashLife(int maximumNodes) {
+		this(Rule.CONWAY, maximumNodes);
+	}
+
+	public HashLife(Rule rule) {
+		this(rule, 1 << 22);
+	}
+
+	public HashLife(Rule rule, int maximumNodes) {	// (an empty square is taken to stay empty, a Cell to be just alive or dead, and its next state to depend on the 3x3 square around it, so neither Generations rules, ones with Cells born from nothing nor extended ones can be followed)
+		if (rule.isGenerations() || rule.isBornFromNothing() || rule.isExtended())	throw new IllegalArgumentException("can't hash " + rule);
+		this.rule = rule;
+		this.maximumNodes = maximumNodes;
+		nodes = new LinkedHashMap<Node, Node>(1024, 0.75f, true) {	// in order of use, so the eldest is the least recently used
+			protected boolean removeEldestEntry(Map.Entry<Node, Node> eldest) {
+				return size() > HashLife.this.maximumNodes;
+			}
+		};
+		empty[0] = DEAD;
+	}
+
+	/* Getter Methods */
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public long getPopulation() {	// the number of live Cells
+		return root.population;
+	}
+
+	public int getNumberOfNodes() {	// the number of distinct squares in the table
+		return nodes.size();
+	}
+
+	/* Public methods */
+
+	public void readCity(Universe city) {	// makes the pattern a copy of the city: every live Cell of an unbounded one, where it is, or else the rows and columns on show, with their top left at row 0, column 0 of the plane
+		if (isOpen(city)) {
+			readCells((SparseUniverse) city);
+			return;
+		}
+
+		int level = 3;
+		while ((1L << level) < Math.max(city.numberOfRows(), city.numberOfColumns()))	level++;
+		root = build(city, level, 0, 0);
+		originRow = 0;
+		originColumn = 0;
+		generation = 0;
+	}
+
+	public void writeCity(Universe city) {	// copies the pattern into the city: all of it into an unbounded one, or else the part at its rows and columns (anything that has drifted outside them is left out)
+		city.kill();
+		if (isOpen(city))	write(city, root, originRow, originColumn, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		else	write(city, root, originRow, originColumn, 0, 0, city.numberOfRows(), city.numberOfColumns());
+	}
+
+	public void advance(long generations) {	// moves the pattern on by any number of generations, one power of two at a time
+		if (generations < 0)	throw new IllegalArgumentException("can't go back " + (-generations) + " generations");
+
+		for (int j = 0; j < 62; j++)
+			if ((generations & (1L << j)) != 0) {
+				while (root.level < j + 3 || !isPadded(root))	expand();	// make room for the pattern to grow into
+				long offset = 1L << (root.level - 2);
+				root = successor(root, j);
+				originRow += offset;
+				originColumn += offset;
+				generation += 1L << j;
+			}
+	}
+
+	public void clearCache() {	// forgets every square that isn't part of the current pattern along with everything remembered about them
+		nodes.clear();
+		Arrays.fill(empty, 1, empty.length, null);
+		root = recanonicalise(root, new IdentityHashMap<Node, Node>());
+	}
+
+	/* Private methods */
+
+	private static boolean isOpen(Universe city) {	// true if the city is a window on an endless plane, with Cells past the ones on show
+		return city instanceof SparseUniverse && ((SparseUniverse) city).isUnbounded() && !city.isPeriodic();
+	}
+
+	private void readCells(SparseUniverse city) {	// makes the pattern a copy of every live Cell of an unbounded universe, wherever they are
+		long[] cells = new long[city.getNumberOfLiveCells()];
+		int[] size = {0};
+		city.forEachLiveCell(cell -> cells[size[0]++] = cell);
+
+		long top = 0;	// the rectangle round them
+		long left = 0;
+		long bottom = 0;
+		long right = 0;
+		for (int c = 0; c < size[0]; c++) {
+			long row = SparseUniverse.row(cells[c]);
+			long column = SparseUniverse.column(cells[c]);
+			if (c == 0 || row < top)	top = row;
+			if (c == 0 || column < left)	left = column;
+			if (c == 0 || row > bottom)	bottom = row;
+			if (c == 0 || column > right)	right = column;
+		}
+
+		int level = 3;
+		while ((1L << level) <= Math.max(bottom - top, right - left))	level++;
+		root = build(cells, size[0], level, top, left);
+		originRow = top;
+		originColumn = left;
+		generation = 0;
+	}
+
+	private Node build(long[] cells, int size, int level, long row, long column) {	// the square of a level with its top left at a row and column, from the first size cells (keys of SparseUniverse), all of which are in it
+		if (size == 0)	return empty(level);
+		if (level == 0)	return ALIVE;
+
+		long half = 1L << (level - 1);
+		long[][] quarters = new long[4][size];
+		int[] sizes = new int[4];
+		for (int c = 0; c < size; c++) {
+			int quarter = (SparseUniverse.row(cells[c]) >= row + half ? 2 : 0) + (SparseUniverse.column(cells[c]) >= column + half ? 1 : 0);
+			quarters[quarter][sizes[quarter]++] = cells[c];
+		}
+		return join(build(quarters[0], sizes[0], level - 1, row, column), build(quarters[1], sizes[1], level - 1, row, column + half), build(quarters[2], sizes[2], level - 1, row + half, column), build(quarters[3], sizes[3], level - 1, row + half, column + half));
+	}
+
+	private Node join(Node nw, Node ne, Node sw, Node se) {	// the canonical square made of the four given quarters
+		Node node = new Node(nw, ne, sw, se);
+		Node canonical = nodes.get(node);
+		if (canonical != null)	return canonical;
+		nodes.put(node, node);
+		return node;
+	}
+
+	private Node empty(int level) {	// the empty square of a level
+		if (empty[level] == null) {
+			Node quarter = empty(level - 1);
+			empty[level] = join(quarter, quarter, quarter, quarter);
+		}
+		return empty[level];
+	}
+
+	private Node recanonicalise(Node node, Map<Node, Node> done) {	// puts a square and all its quarters back in the table (done holds the ones already put back, as shared quarters would otherwise be visited over and over)
+		if (node.level == 0)	return node;
+		if (node.population == 0)	return empty(node.level);
+		Node result = done.get(node);
+		if (result == null) {
+			result = join(recanonicalise(node.nw, done), recanonicalise(node.ne, done), recanonicalise(node.sw, done), recanonicalise(node.se, done));
+			done.put(node, result);
+		}
+		return result;
+	}
+
+	private void expand() {	// doubles the size of the plane around the pattern, keeping it in the middle
+		Node border = empty(root.level - 1);
+		long offset = 1L << (root.level - 1);
+		root = join(join(border, border, border, root.nw), join(border, border, root.ne, border), join(border, root.sw, border, border), join(root.se, border, border, border));
+		originRow -= offset;
+		originColumn -= offset;
+	}
+
+	private static boolean isPadded(Node node) {	// true if the pattern lies wholly within the middle quarter of the square, so it can't outgrow the middle half
+		if (node.level < 3)	return false;
+		return node.nw.se.se.population + node.ne.sw.sw.population + node.sw.ne.ne.population + node.se.nw.nw.population == node.population;
+	}
+
+	private Node successor(Node node, int j) {	// the middle half of a square of level k, 2^j generations on (j is at most k - 2)
+		if (node.population == 0)	return node.nw;
+		if (node.level == 2)	return lifeOf4x4(node);
+		if (j > node.level - 2)	j = node.level - 2;
+		if (node.results != null && node.results[j] != null)	return node.results[j];
+
+		Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+		Node c1 = successor(nw, j);	// the nine overlapping squares of the next level down, moved on
+		Node c2 = successor(join(nw.ne, ne.nw, nw.se, ne.sw), j);
+		Node c3 = successor(ne, j);
+		Node c4 = successor(join(nw.sw, nw.se, sw.nw, sw.ne), j);
+		Node c5 = successor(join(nw.se, ne.sw, sw.ne, se.nw), j);
+		Node c6 = successor(join(ne.sw, ne.se, se.nw, se.ne), j);
+		Node c7 = successor(sw, j);
+		Node c8 = successor(join(sw.ne, se.nw, sw.se, se.sw), j);
+		Node c9 = successor(se, j);
+
+		Node result;
+		if (j < node.level - 2)	// they've gone far enough, so just stitch their middles together
+			result = join(join(c1.se, c2.sw, c4.ne, c5.nw), join(c2.se, c3.sw, c5.ne, c6.nw), join(c4.se, c5.sw, c7.ne, c8.nw), join(c5.se, c6.sw, c8.ne, c9.nw));
+		else	// move them on as far again
+			result = join(successor(join(c1, c2, c4, c5), j), successor(join(c2, c3, c5, c6), j), successor(join(c4, c5, c7, c8), j), successor(join(c5, c6, c8, c9), j));
+
+		if (node.results == null)	node.results = new Node[node.level - 1];
+		node.results[j] = result;
+		return result;
+	}
+
+	private Node lifeOf4x4(Node node) {	// the middle 2x2 of a 4x4 square, one generation on
+		int bits = 0;	// the 16 Cells, row after row
+		Node[] quarters = {node.nw, node.ne, node.sw, node.se};
+		for (int q = 0; q < 4; q++) {
+			int row = (q / 2) * 2;
+			int column = (q % 2) * 2;
+			if (quarters[q].nw == ALIVE)	bits |= 1 << (row * 4 + column);
+			if (quarters[q].ne == ALIVE)	bits |= 1 << (row * 4 + column + 1);
+			if (quarters[q].sw == ALIVE)	bits |= 1 << ((row + 1) * 4 + column);
+			if (quarters[q].se == ALIVE)	bits |= 1 << ((row + 1) * 4 + column + 1);
+		}
+
+		return join(cellOf4x4(bits, 1, 1), cellOf4x4(bits, 1, 2), cellOf4x4(bits, 2, 1), cellOf4x4(bits, 2, 2));
+	}
+
+	private Node cellOf4x4(int bits, int row, int column) {	// the next state of a middle Cell of a 4x4 square
+		int numberOfNeighbours = 0;
+		for (int i = row - 1; i <= row + 1; i++)
+			for (int j = column - 1; j <= column + 1; j++)
+				if ((i != row || j != column) && (bits & (1 << (i * 4 + j))) != 0)	numberOfNeighbours++;
+
+		boolean isAlive = (bits & (1 << (row * 4 + column))) != 0;
+		if (isAlive ? rule.survives(numberOfNeighbours) : rule.isBorn(numberOfNeighbours))	return ALIVE;
+		return DEAD;
+	}
+
+	private Node build(Universe city, int level, int row, int column) {	// the square of a level with its top left at a row and column of the city
+		if (row >= city.numberOfRows() || column >= city.numberOfColumns())	return empty(level);
+		if (level == 0)	return city.isAlive(row, column) ? ALIVE : DEAD;
+
+		int half = 1 << (level - 1);
+		return join(build(city, level - 1, row, column), build(city, level - 1, row, column + half), build(city, level - 1, row + half, column), build(city, level - 1, row + half, column + half));
+	}
+
+	private void write(Universe city, Node node, long row, long column, long top, long left, long bottom, long right) {	// sets the live Cells of a square with its top left at a row and column into the city, leaving out those outside rows top to bottom and columns left to right (not including the last ones)
+		long size = 1L << node.level;
+		if (node.population == 0 || row >= bottom || column >= right || row + size <= top || column + size <= left)	return;
+		if (node.level == 0) {
+			city.setAlive((int) row, (int) column, true);
+			return;
+		}
+
+		long half = size / 2;
+		write(city, node.nw, row, column, top, left, bottom, right);
+		write(city, node.ne, row, column + half, top, left, bottom, right);
+		write(city, node.sw, row + half, column, top, left, bottom, right);
+		write(city, node.se, row + half, column + half, top, left, bottom, right);
+	}
+
+	private static class Node {	// a square of 2^level by 2^level Cells made of four quarters of the level below
+
+		final int level;
+		final Node nw, ne, sw, se;	// the quarters (null for a single Cell)
+		final long population;	// the number of live Cells
+		final int hash;
+		Node[] results;	// the middle half of this square 2^j generations on, for each j worked out so far
+
+		Node(long population) {	// a single Cell (only the two constants are ever made)
+			level = 0;
+			nw = ne = sw = se = null;
+			this.population = population;
+			hash = (int) population;
+		}
+
+		Node(Node nw, Node ne, Node sw, Node se) {
+			level = nw.level + 1;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			population = nw.population + ne.population + sw.population + se.population;
+			hash = ((System.identityHashCode(nw) * 31 + System.identityHashCode(ne)) * 31 + System.identityHashCode(sw)) * 31 + System.identityHashCode(se);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object object) {	// the quarters are canonical, so they only need comparing by identity
+			if (!(object instanceof Node))	return false;
+			Node node = (Node) object;
+			return node.nw == nw && node.ne == ne && node.sw == sw && node.se == se;
+		}
+
+	}
+
+}
\ No newline at end of file
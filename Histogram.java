@@ -0,0 +1,81 @@
+package com.convai;
+
+import java.util.concurrent.atomic.AtomicLongArray;	// so it can be read on other threads while it's recorded to
+
+final class Histogram {	// counts how long things take in buckets that widen as the times grow (as HdrHistogram does), so any percentile can be read off to within about 3% without keeping every time
+	// Times below 2 * SUB_BUCKETS each have a bucket of their own. Above that, each power of two is split into SUB_BUCKETS buckets of equal width.
+	// Only one thread records to it, but any thread may read it (seeing it perhaps a time or two behind).
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = 2 * SUB_BUCKETS + (62 - SUB_BITS) * SUB_BUCKETS;	// (enough for any positive long)
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private volatile long count;	// the times recorded
+	private volatile long total;	// their sum
+	private volatile long maximum;
+
+	/* Getter Methods */
+
+	long getCount() {
+		return count;
+	}
+
+	long getMaximum() {
+		return maximum;
+	}
+
+	double getMean() {	// (0 if nothing has been recorded)
+		long count = this.count;
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	long getPercentile(double percentile) {	// the time that percentile percent of those recorded took no longer than, give or take the width of its bucket (0 if nothing has been recorded)
+		long count = this.count;
+		if (count == 0)	return 0;
+
+		long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts.get(b);
+			if (seen >= wanted)	return Math.min(highestIn(b), maximum);
+		}
+		return maximum;
+	}
+
+	/* Package-private methods */
+
+	void record(long time) {	// counts a time (only on the one thread that records to it)
+		if (time < 0)	time = 0;
+		int b = bucketOf(time);
+		counts.lazySet(b, counts.get(b) + 1);
+		total += time;
+		if (time > maximum)	maximum = time;
+		count++;
+	}
+
+	void reset() {	// forgets every time (anything recorded meanwhile may be half forgotten)
+		for (int b = 0; b < BUCKETS; b++)	counts.set(b, 0);
+		count = 0;
+		total = 0;
+		maximum = 0;
+	}
+
+	/* Private methods */
+
+	private static int bucketOf(long time) {
+		if (time < 2 * SUB_BUCKETS)	return (int) time;
+		int magnitude = 63 - Long.numberOfLeadingZeros(time);	// (at least SUB_BITS + 1)
+		int shift = magnitude - SUB_BITS;
+		return 2 * SUB_BUCKETS + (magnitude - SUB_BITS - 1) * SUB_BUCKETS + (int) (time >>> shift) - SUB_BUCKETS;
+	}
+
+	private static long highestIn(int bucket) {	// the longest time that goes in a bucket
+		if (bucket < 2 * SUB_BUCKETS)	return bucket;
+		int magnitude = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS + 1;
+		long sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		int shift = magnitude - SUB_BITS;
+		return ((sub + 1) << shift) - 1;	// (Long.MAX_VALUE for the last bucket, by overflowing)
+	}
+
+}
\ No newline at end of file
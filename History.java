@@ -0,0 +1,400 @@
+package com.convai;
+
+import java.io.*;	// for the spill file
+import java.util.*;	// for the list of frames
+import java.util.zip.*;	// for compression
+
+public class History {	// the recent generations of a universe, so it can be rewound to any of them
+	// Each generation is kept as a frame of the words of Cells that changed since the one before (their XOR), with every so often a keyframe of the whole generation to start from, so what's kept grows with how much happens rather than with the size of the universe.
+	// A frame is the changed words, each as a gap in words since the last one (a varint), a byte with a bit set for each of the word's bytes that aren't 0, then those bytes of the word XORed in, so a few Cells changing take a few bytes. Keyframes are deflated too (deflating every frame would take longer than a step). Once the frames take more memory than allowed, the oldest keyframe and the frames after it are pushed out, to a spill file if there is one (where they can still be rewound to) or else forgotten. The spill file is a ring: once it's as big as allowed, it wraps round to the start, forgetting the oldest frames in it as they're written over.
+	// Only the rows and columns on show are kept (not dying Cells, nor an unbounded universe's Cells past them).
+
+	public static final int KEYFRAME_INTERVAL = 64;	// the generations between keyframes, by default
+	public static final long MEMORY_LIMIT = 64L << 20;	// the bytes of frames kept in memory, by default
+	public static final long SPILL_LIMIT = 1L << 30;	// the bytes of frames kept in the spill file, by default
+	private static final int FRAME_OVERHEAD = 48;	// roughly what a frame costs besides its bytes, so even empty ones count
+
+	private final int keyframeInterval;
+	private final long memoryLimit;
+	private final File spill;	// where frames pushed out of memory go (null to forget them)
+	private final long spillLimit;
+	private RandomAccessFile spillFile;	// (opened the first time it's needed)
+	private long spillPosition;	// where the next frame pushed out goes in the spill file
+	private long spilled;	// the bytes of the frames in the spill file (and what finding them takes in memory)
+	private final List<Frame> frames = new ArrayList<Frame>();	// the generations kept, oldest first, starting with a keyframe
+	private int firstInMemory;	// the index of the oldest frame not spilled
+	private long memoryUsed;	// the bytes of the frames in memory
+	private int numberOfRows = -1;	// the size of the universe recorded (-1 before the first)
+	private int numberOfColumns;
+	private int wordsPerRow;
+	private long[] last = new long[0];	// the words of generation lastGeneration, row after row
+	private long lastGeneration = -1;	// the generation last holds (-1 if it holds nothing recorded)
+	private long latestChanges = -1;	// the Cells that changed from the generation before the latest one recorded (-1 if it wasn't recorded just before)
+	private byte[] encoded = new byte[256];	// a frame before deflating
+	private byte[] deflated = new byte[256];	// and after
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final Inflater inflater = new Inflater();
+
+	public History() {
+		this(KEYFRAME_INTERVAL, MEMORY_LIMIT, null);
+	}
+
+	public History(int keyframeInterval, long memoryLimit, File spill) {
+		this(keyframeInterval, memoryLimit, spill, SPILL_LIMIT);
+	}
+
+	public History(int keyframeInterval, long memoryLimit, File spill, long spillLimit) {	// keeps a keyframe every keyframeInterval generations and at most memoryLimit bytes of frames in memory, pushing older ones out to the spill file (null to forget them), which keeps at most spillLimit bytes of them
+		if (keyframeInterval < 1)	throw new IllegalArgumentException("need a keyframe at least every generation, not every " + keyframeInterval);
+		this.keyframeInterval = keyframeInterval;
+		this.memoryLimit = memoryLimit;
+		this.spill = spill;
+		this.spillLimit = spillLimit;
+	}
+
+	/* Getter Methods */
+
+	public boolean isEmpty() {
+		return frames.isEmpty();
+	}
+
+	public long getFirstGeneration() {	// the oldest generation that can be rewound to (-1 if none)
+		return frames.isEmpty() ? -1 : frames.get(0).generation;
+	}
+
+	public long getLatestGeneration() {	// the newest generation recorded (-1 if none)
+		return frames.isEmpty() ? -1 : frames.get(frames.size() - 1).generation;
+	}
+
+	public long getLatestChanges() {	// the Cells that were born or died from the generation before the one last recorded to it (-1 if that wasn't the one recorded before it, eg. after rewinding)
+		return latestChanges;
+	}
+
+	public int getNumberOfFrames() {
+		return frames.size();
+	}
+
+	public long getMemoryUsed() {	// the bytes of frames in memory
+		return memoryUsed;
+	}
+
+	public long getSpilled() {	// the bytes of frames in the spill file (counting what finding each takes in memory, so even empty ones count)
+		return spilled;
+	}
+
+	public boolean holds(long generation) {	// true if a generation can be rewound to
+		return indexOf(generation) != -1;
+	}
+
+	/* Public methods */
+
+	public void record(Universe universe, long generation) {	// keeps a generation of a universe, replacing it and any after it if they were recorded already (after rewinding, or it was changed by hand)
+		if (universe.numberOfRows() != numberOfRows || universe.numberOfColumns() != numberOfColumns)	resize(universe.numberOfRows(), universe.numberOfColumns());
+		while (!frames.isEmpty() && frames.get(frames.size() - 1).generation >= generation)	removeLast();
+		if (!frames.isEmpty() && lastGeneration != getLatestGeneration() && !replay(frames.size() - 1))	clear();	// the changes are from the latest generation left
+
+		boolean isKeyframe = frames.isEmpty() || framesSinceKeyframe() >= keyframeInterval - 1;
+		boolean isNext = lastGeneration != -1 && lastGeneration == generation - 1;	// (so the Cells that changed can be counted)
+		long changes = 0;
+		int length = 0;
+		long gapStart = 0;	// the word after the last one written
+		long[] words = new long[wordsPerRow];
+		for (int i = 0; i < numberOfRows; i++) {
+			universe.readRow(i, words);
+			if (wordsPerRow > 0)	words[wordsPerRow - 1] &= LifeKernel.lastWordMask(numberOfColumns);
+			int start = i * wordsPerRow;
+			for (int w = 0; w < wordsPerRow; w++) {
+				long change = words[w] ^ last[start + w];
+				changes += Long.bitCount(change);
+				last[start + w] = words[w];
+				if (isKeyframe)	change = words[w];	// (a keyframe keeps the live words rather than the changed ones)
+				if (change == 0)	continue;
+
+				if (length + 19 > encoded.length)	encoded = Arrays.copyOf(encoded, encoded.length * 2);
+				length = putChange(encoded, length, start + w - gapStart, change);
+				gapStart = start + w + 1;
+			}
+		}
+		lastGeneration = generation;
+		latestChanges = isNext ? changes : -1;
+
+		Frame frame = new Frame(generation, isKeyframe, length, isKeyframe ? deflate(length) : Arrays.copyOf(encoded, length));
+		frames.add(frame);
+		memoryUsed += frame.data.length + FRAME_OVERHEAD;
+		pushOut();
+	}
+
+	public boolean seek(Universe universe, long generation) {	// rewinds (or winds on) a universe to a generation recorded. Returns false if it wasn't, or has been forgotten
+		int index = indexOf(generation);
+		if (index == -1 || universe.numberOfRows() != numberOfRows || universe.numberOfColumns() != numberOfColumns)	return false;
+		if (lastGeneration != generation && !replay(index)) {
+			clear();
+			return false;
+		}
+
+		long[] words = new long[wordsPerRow];
+		for (int i = 0; i < numberOfRows; i++) {
+			System.arraycopy(last, i * wordsPerRow, words, 0, wordsPerRow);
+			universe.writeRow(i, words);
+		}
+		return true;
+	}
+
+	public void clear() {	// forgets every generation
+		frames.clear();
+		firstInMemory = 0;
+		memoryUsed = 0;
+		lastGeneration = -1;
+		latestChanges = -1;
+		Arrays.fill(last, 0L);
+		spillPosition = 0;
+		spilled = 0;
+		if (spillFile != null)
+			try {
+				spillFile.setLength(0);
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+	}
+
+	public void close() {	// forgets every generation and closes the spill file
+		clear();
+		if (spillFile == null)	return;
+		try {
+			spillFile.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+		spillFile = null;
+	}
+
+	/* Private methods */
+
+	private void resize(int numberOfRows, int numberOfColumns) {	// starts again with a universe of another size
+		clear();
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		wordsPerRow = (numberOfColumns + 63) >>> 6;
+		last = new long[numberOfRows * wordsPerRow];
+	}
+
+	private int indexOf(long generation) {	// where a generation's frame is (-1 if it isn't), searching by halves as they're in order
+		int low = 0;
+		int high = frames.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long found = frames.get(middle).generation;
+			if (found == generation)	return middle;
+			if (found < generation)	low = middle + 1;
+			else	high = middle - 1;
+		}
+		return -1;
+	}
+
+	private int framesSinceKeyframe() {	// the frames after the latest keyframe
+		int count = 0;
+		for (int k = frames.size() - 1; k >= 0 && !frames.get(k).isKeyframe; k--)	count++;
+		return count;
+	}
+
+	private boolean replay(int index) {	// works out the generation of a frame into last, from the keyframe before it. Returns false if a frame couldn't be read back
+		int start = index;
+		while (!frames.get(start).isKeyframe)	start--;
+
+		Arrays.fill(last, 0L);
+		try {
+			for (int k = start; k <= index; k++) {
+				Frame frame = frames.get(k);
+				int length = inflate(frame);
+				long word = 0;	// the word after the last one changed
+				for (int at = 0; at < length; ) {
+					long gap = 0;
+					for (int shift = 0; ; shift += 7) {
+						byte b = encoded[at++];
+						gap |= (long) (b & 0x7F) << shift;
+						if (b >= 0)	break;
+					}
+					word += gap;
+					int mask = encoded[at++];
+					long change = 0;
+					for (int b = 0; b < 8; b++)
+						if ((mask & (1 << b)) != 0)	change |= (encoded[at++] & 0xFFL) << (b << 3);
+					last[(int) word++] ^= change;
+				}
+			}
+		} catch (IOException | DataFormatException | RuntimeException ex) {
+			ex.printStackTrace();
+			lastGeneration = -1;
+			return false;
+		}
+		lastGeneration = frames.get(index).generation;
+		return true;
+	}
+
+	private byte[] deflate(int length) {	// the first length bytes of encoded, deflated
+		if (length == 0)	return new byte[0];
+
+		deflater.reset();
+		deflater.setInput(encoded, 0, length);
+		deflater.finish();
+		int size = 0;
+		while (!deflater.finished()) {
+			if (size == deflated.length)	deflated = Arrays.copyOf(deflated, deflated.length * 2);
+			size += deflater.deflate(deflated, size, deflated.length - size);
+		}
+		return Arrays.copyOf(deflated, size);
+	}
+
+	private int inflate(Frame frame) throws IOException, DataFormatException {	// a frame's bytes (inflated, if it's a keyframe) into encoded, reading them back from the spill file if they were pushed out. Returns how many
+		if (frame.rawLength == 0)	return 0;
+
+		if (encoded.length < frame.rawLength)	encoded = new byte[frame.rawLength];
+		byte[] data = frame.data;
+		if (data == null) {
+			data = frame.isKeyframe ? new byte[frame.length] : encoded;
+			spillFile.seek(frame.offset);
+			spillFile.readFully(data, 0, frame.length);
+		}
+		if (!frame.isKeyframe) {
+			if (data != encoded)	System.arraycopy(data, 0, encoded, 0, frame.rawLength);
+			return frame.rawLength;
+		}
+
+		inflater.reset();
+		inflater.setInput(data);
+		int size = 0;
+		while (size < frame.rawLength) {
+			int inflated = inflater.inflate(encoded, size, frame.rawLength - size);
+			if (inflated == 0 && (inflater.finished() || inflater.needsInput()))	throw new EOFException("frame of generation " + frame.generation + " ends early");
+			size += inflated;
+		}
+		return size;
+	}
+
+	private void pushOut() {	// pushes the oldest keyframe and the frames after it out of memory, while there's too much in it (always keeping the latest keyframe's)
+		while (memoryUsed > memoryLimit) {
+			int next = nextKeyframeInMemory();
+			if (next >= frames.size())	return;
+
+			if (spill != null && spillTo(next))	continue;
+
+			next = nextKeyframeInMemory();	// (making room in the spill file may have forgotten older frames)
+			for (int k = firstInMemory; k < next; k++)	memoryUsed -= frames.get(k).data.length + FRAME_OVERHEAD;	// forget them, and any spilled before them (nothing could be rewound to past the gap)
+			frames.subList(0, next).clear();
+			firstInMemory = 0;
+			spillPosition = 0;
+			spilled = 0;
+		}
+	}
+
+	private int nextKeyframeInMemory() {	// the index of the keyframe after the oldest frame in memory (the number of frames if there isn't one)
+		int next = firstInMemory + 1;
+		while (next < frames.size() && !frames.get(next).isKeyframe)	next++;
+		return next;
+	}
+
+	private boolean spillTo(int next) {	// writes the frames in memory before next out to the spill file, making room for them. Returns false if it couldn't
+		long length = 0;
+		for (int k = firstInMemory; k < next; k++)	length += frames.get(k).data.length;
+		if (length + (next - firstInMemory) * FRAME_OVERHEAD > spillLimit)	return false;	// (they'd never fit)
+
+		if (spillPosition + length > spillLimit)	spillPosition = 0;	// wrap round
+		int dropped = makeRoom(spillPosition, spillPosition + length, length + (next - firstInMemory) * FRAME_OVERHEAD);
+		if (dropped == -1)	return false;
+		next -= dropped;
+		try {
+			if (spillFile == null) {
+				spillFile = new RandomAccessFile(spill, "rw");
+				spillFile.setLength(0);
+			}
+			spillFile.seek(spillPosition);
+			for (int k = firstInMemory; k < next; k++) {
+				Frame frame = frames.get(k);
+				spillFile.write(frame.data);
+				frame.offset = spillPosition;
+				frame.length = frame.data.length;
+				spillPosition += frame.length;
+				spilled += frame.length + FRAME_OVERHEAD;
+				memoryUsed -= frame.data.length + FRAME_OVERHEAD;	// (the frame itself stays, to find its bytes by)
+				frame.data = null;
+			}
+			firstInMemory = next;
+			return true;
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			return false;
+		}
+	}
+
+	private int makeRoom(long from, long to, long cost) {	// forgets the oldest spilled frames, a keyframe and the frames after it at a time, until cost more bytes fit and nothing spilled is in the file from from to to (which, as the file is written round and round, is where the oldest are). Returns the number of frames forgotten, or -1 if it couldn't make room
+		int dropped = 0;
+		while (firstInMemory > 0) {
+			int next = 1;	// the keyframe after the oldest
+			while (next < frames.size() && !frames.get(next).isKeyframe)	next++;
+			boolean isOverwritten = false;
+			for (int k = 0; k < next && k < firstInMemory; k++) {
+				Frame frame = frames.get(k);
+				if (frame.length > 0 && frame.offset < to && frame.offset + frame.length > from)	isOverwritten = true;
+			}
+			if (!isOverwritten && spilled + cost <= spillLimit)	return dropped;
+			if (next > firstInMemory)	return -1;	// (the frames after them are still in memory, and need them to be rewound to)
+
+			for (int k = 0; k < next; k++)	spilled -= frames.get(k).length + FRAME_OVERHEAD;
+			frames.subList(0, next).clear();
+			firstInMemory -= next;
+			dropped += next;
+		}
+		return spilled + cost <= spillLimit ? dropped : -1;
+	}
+
+	private void removeLast() {	// forgets the newest frame
+		Frame frame = frames.remove(frames.size() - 1);
+		if (frame.data != null)	memoryUsed -= frame.data.length + FRAME_OVERHEAD;
+		else {
+			spilled -= frame.length + FRAME_OVERHEAD;
+			spillPosition = frame.offset;
+			firstInMemory = frames.size();
+		}
+		if (frame.generation == lastGeneration)	lastGeneration = -1;	// last may no longer be any generation kept
+	}
+
+	static int putChange(byte[] bytes, int at, long gap, long change) {	// writes a changed word the way frames keep it (taking up to 19 bytes). Returns where it ends
+		at = putVarint(bytes, at, gap);
+		int mask = at++;
+		bytes[mask] = 0;
+		for (int b = 0; b < 8; b++) {
+			byte part = (byte) (change >>> (b << 3));
+			if (part == 0)	continue;
+			bytes[mask] |= 1 << b;
+			bytes[at++] = part;
+		}
+		return at;
+	}
+
+	private static int putVarint(byte[] bytes, int at, long value) {	// writes a value 7 bits at a time, lowest first, with the top bit set on all but the last byte. Returns where it ends
+		while ((value & ~0x7FL) != 0) {
+			bytes[at++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[at++] = (byte) value;
+		return at;
+	}
+
+	private static class Frame {	// a recorded generation
+
+		final long generation;
+		final boolean isKeyframe;	// true if it's the whole generation rather than the changes from the one before
+		final int rawLength;	// the bytes before deflating
+		byte[] data;	// its bytes, deflated if it's a keyframe (null once pushed out to the spill file)
+		long offset;	// where it is in the spill file, once it's been pushed out
+		int length;
+
+		Frame(long generation, boolean isKeyframe, int rawLength, byte[] data) {
+			this.generation = generation;
+			this.isKeyframe = isKeyframe;
+			this.rawLength = rawLength;
+			this.data = data;
+		}
+
+	}
+
+}
\ No newline at end of file
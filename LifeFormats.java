@@ -0,0 +1,247 @@
+package com.convai;
+
+import java.io.*;	// for the readers and writers
+
+public class LifeFormats {	// reads and writes the usual Life pattern formats (RLE, plaintext .cells and Life 1.06) a character at a time, placing Cells straight into a universe
+	// A pattern read into a bounded universe is clipped to it. Cells are only ever added, so clear the universe first to replace what's there.
+
+	private LifeFormats() {}
+
+	/* Public methods */
+
+	public static boolean isLifeFormat(File file) {	// true if the file is named like one of these formats
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".rle") || name.endsWith(".cells") || name.endsWith(".lif") || name.endsWith(".life");
+	}
+
+	public static void read(File file, Universe universe) throws IOException {	// reads a file with its origin where it usually belongs: the top left of the universe, or the middle for Life 1.06
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".lif") || name.endsWith(".life"))	read(file, universe, universe.numberOfRows() / 2, universe.numberOfColumns() / 2);
+		else	read(file, universe, 0, 0);
+	}
+
+	public static void read(File file, Universe universe, int rowOffset, int columnOffset) throws IOException {	// reads a file in the format its name says, with its origin (the top left, or 0, 0 for Life 1.06) at a row and column of the universe
+		try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), 64 * 1024)) {
+			String name = file.getName().toLowerCase();
+			if (name.endsWith(".rle"))	readRle(in, universe, rowOffset, columnOffset);
+			else if (name.endsWith(".cells"))	readPlaintext(in, universe, rowOffset, columnOffset);
+			else if (name.endsWith(".lif") || name.endsWith(".life"))	readLife106(in, universe, rowOffset, columnOffset);
+			else	throw new IOException("don't know the format of " + file);
+		}
+	}
+
+	public static void write(File file, Universe universe) throws IOException {	// writes the rows and columns on show to a file in the format its name says
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024)) {
+			String name = file.getName().toLowerCase();
+			if (name.endsWith(".rle"))	writeRle(out, universe);
+			else if (name.endsWith(".cells"))	writePlaintext(out, universe);
+			else if (name.endsWith(".lif") || name.endsWith(".life"))	writeLife106(out, universe);
+			else	throw new IOException("don't know the format of " + file);
+		}
+	}
+
+	public static void readRle(Reader in, Universe universe, int rowOffset, int columnOffset) throws IOException {	// run length encoded: "#" comment lines, an "x = ..." header line, then runs like 3o2b$ ending with !
+		int row = 0;
+		int column = 0;
+		int count = 0;	// the run count being read (0 if none)
+		boolean atLineStart = true;
+		boolean sawRuns = false;	// (so that an x can only start the header before the runs)
+		int c;
+		while ((c = in.read()) != -1) {
+			if (atLineStart && c == '#') {	// a comment
+				skipLine(in);
+				continue;
+			}
+			if (atLineStart && c == 'x' && !sawRuns) {	// the header, which may give the rule
+				readRule(readLine(in), universe);
+				continue;
+			}
+			atLineStart = c == '\n';
+			if (!Character.isWhitespace(c))	sawRuns = true;
+
+			if (c >= '0' && c <= '9')	count = count * 10 + (c - '0');
+			else if (c == 'b' || c == '.') {	// dead Cells
+				column += Math.max(count, 1);
+				count = 0;
+			}
+			else if (c == '$') {	// the end of one or more rows
+				row += Math.max(count, 1);
+				column = 0;
+				count = 0;
+			}
+			else if (c == '!')	return;
+			else if (Character.isLetter(c)) {	// live Cells (any state other than dead counts as alive)
+				for (int k = Math.max(count, 1); k > 0; k--)	place(universe, rowOffset + row, columnOffset + column++);
+				count = 0;
+			}
+		}
+	}
+
+	public static void writeRle(Writer out, Universe universe) throws IOException {
+		out.write("x = " + universe.numberOfColumns() + ", y = " + universe.numberOfRows() + ", rule = " + universe.getRule() + "\n");
+
+		RunWriter runs = new RunWriter(out);
+		long[] words = new long[(universe.numberOfColumns() + 63) >>> 6];
+		int rowEnds = 0;	// the row ends waiting to be written (held back so that trailing empty rows are dropped)
+		for (int i = 0; i < universe.numberOfRows(); i++) {
+			universe.readRow(i, words);
+			int column = 0;	// where the last run of live Cells ended
+			for (int start = nextCell(words, 0, universe.numberOfColumns(), true); start < universe.numberOfColumns(); start = nextCell(words, column, universe.numberOfColumns(), true)) {
+				int end = nextCell(words, start, universe.numberOfColumns(), false);
+				runs.write(rowEnds, '$');
+				rowEnds = 0;
+				runs.write(start - column, 'b');
+				runs.write(end - start, 'o');
+				column = end;
+			}
+			rowEnds++;
+		}
+
+		runs.write(1, '!');
+		out.write('\n');
+	}
+
+	public static void readPlaintext(Reader in, Universe universe, int rowOffset, int columnOffset) throws IOException {	// "!" comment lines, then a line per row with . for dead and O for live Cells
+		int row = 0;
+		int column = 0;
+		int c;
+		while ((c = in.read()) != -1) {
+			if (column == 0 && c == '!') {
+				skipLine(in);
+				continue;
+			}
+
+			if (c == '\n') {
+				row++;
+				column = 0;
+			}
+			else if (c == 'O' || c == 'o' || c == '*')	place(universe, rowOffset + row, columnOffset + column++);
+			else if (c != '\r')	column++;
+		}
+	}
+
+	public static void writePlaintext(Writer out, Universe universe) throws IOException {
+		out.write("!Name: GoL\n");
+		for (int i = 0; i < universe.numberOfRows(); i++) {
+			int end = universe.numberOfColumns();
+			while (end > 0 && !universe.isAlive(i, end - 1))	end--;	// leave off the dead Cells at the end
+			for (int j = 0; j < end; j++)	out.write(universe.isAlive(i, j) ? 'O' : '.');
+			out.write('\n');
+		}
+	}
+
+	public static void readLife106(Reader in, Universe universe, int rowOffset, int columnOffset) throws IOException {	// "#" lines, then a line per live Cell giving its x (column) and y (row)
+		int[] coordinates = new int[2];
+		int numberRead = 0;
+		int number = 0;
+		int sign = 1;
+		boolean inNumber = false;
+		boolean atLineStart = true;
+		int c;
+		while ((c = in.read()) != -1) {
+			if (atLineStart && c == '#') {
+				skipLine(in);
+				continue;
+			}
+			atLineStart = false;
+
+			if (c == '-')	sign = -1;
+			else if (c >= '0' && c <= '9') {
+				number = number * 10 + (c - '0');
+				inNumber = true;
+			}
+			else {
+				if (inNumber && numberRead < 2)	coordinates[numberRead++] = sign * number;
+				number = 0;
+				sign = 1;
+				inNumber = false;
+				if (c == '\n') {
+					if (numberRead == 2)	place(universe, rowOffset + coordinates[1], columnOffset + coordinates[0]);
+					numberRead = 0;
+					atLineStart = true;
+				}
+			}
+		}
+		if (inNumber && numberRead < 2)	coordinates[numberRead++] = sign * number;	// no newline at the end
+		if (numberRead == 2)	place(universe, rowOffset + coordinates[1], columnOffset + coordinates[0]);
+	}
+
+	public static void writeLife106(Writer out, Universe universe) throws IOException {	// with 0, 0 in the middle of the universe, where read puts it back
+		out.write("#Life 1.06\n");
+		int middleRow = universe.numberOfRows() / 2;
+		int middleColumn = universe.numberOfColumns() / 2;
+		long[] words = new long[(universe.numberOfColumns() + 63) >>> 6];
+		for (int i = 0; i < universe.numberOfRows(); i++) {
+			universe.readRow(i, words);
+			for (int w = 0; w < words.length; w++)
+				for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+					out.write(Integer.toString((w << 6) + Long.numberOfTrailingZeros(bits) - middleColumn));
+					out.write(' ');
+					out.write(Integer.toString(i - middleRow));
+					out.write('\n');
+				}
+		}
+	}
+
+	/* Private methods */
+
+	private static void place(Universe universe, int row, int column) {	// brings a Cell to life, unless it's off the edge of a bounded universe
+		boolean isUnbounded = universe instanceof SparseUniverse && ((SparseUniverse) universe).isUnbounded() && !universe.isPeriodic();
+		if (isUnbounded || (row >= 0 && row < universe.numberOfRows() && column >= 0 && column < universe.numberOfColumns()))
+			universe.setAlive(row, column, true);
+	}
+
+	private static int nextCell(long[] words, int from, int numberOfColumns, boolean isAlive) {	// the first column from a given one on with a live (or dead) Cell, or numberOfColumns if there isn't one
+		for (int w = from >>> 6; w < words.length; w++) {
+			long bits = (isAlive ? words[w] : ~words[w]) & (w == from >>> 6 ? -1L << from : -1L);
+			if (bits != 0)	return Math.min((w << 6) + Long.numberOfTrailingZeros(bits), numberOfColumns);
+		}
+		return numberOfColumns;
+	}
+
+	private static void readRule(String header, Universe universe) throws IOException {	// follows the rule in an RLE header (as in "x = 3, y = 3, rule = B3/S23"), if it gives one. It comes last, as a Larger than Life rule has commas of its own
+		java.util.regex.Matcher rule = java.util.regex.Pattern.compile("(?i)\\brule\\s*=\\s*(.*)").matcher(header);
+		if (!rule.find())	return;
+		try {
+			universe.setRule(Rule.parse(rule.group(1)));
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("can't follow the rule " + rule.group(1).trim() + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	private static String readLine(Reader in) throws IOException {	// the rest of a line
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n')	line.append((char) c);
+		return line.toString();
+	}
+
+	private static void skipLine(Reader in) throws IOException {
+		int c;
+		while ((c = in.read()) != -1 && c != '\n');
+	}
+
+	private static class RunWriter {	// writes RLE runs, keeping lines within 70 characters
+
+		private final Writer out;
+		private int lineLength = 0;
+
+		RunWriter(Writer out) {
+			this.out = out;
+		}
+
+		void write(int count, char tag) throws IOException {
+			if (count == 0)	return;
+			int length = (count > 1 ? Integer.toString(count).length() : 0) + 1;
+			if (lineLength + length > 70) {
+				out.write('\n');
+				lineLength = 0;
+			}
+			if (count > 1)	out.write(Integer.toString(count));
+			out.write(tag);
+			lineLength += length;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.convai;
+
+final class LifeKernel {	// steps packed rows of Cells 64 at a time, counting neighbours with bitwise adders instead of one Cell at a time
+
+	private LifeKernel() {}
+
+	static boolean stepRow(long[] words, long[] nextWords, int row, int numberOfRows, int numberOfColumns, int wordsPerRow, boolean isPeriodic, Rule rule) {	// writes the next generation of a row of words into nextWords. Returns true if it changed
+		int up = rowStart(row - 1, numberOfRows, wordsPerRow, isPeriodic);
+		int middle = row * wordsPerRow;
+		int down = rowStart(row + 1, numberOfRows, wordsPerRow, isPeriodic);
+
+		boolean changed = false;
+		for (int w = 0; w < wordsPerRow; w++) {
+			long next = nextWord(words, up, middle, down, w, numberOfColumns, wordsPerRow, isPeriodic, rule);
+			nextWords[middle + w] = next;
+			if (next != words[middle + w])	changed = true;
+		}
+
+		return changed;
+	}
+
+	static int rowStart(int row, int numberOfRows, int wordsPerRow, boolean isPeriodic) {	// where a row starts in the words, wrapped round if periodic, or -1 if it's off the edge
+		if (isPeriodic) {	// modify according to periodicity
+			if (row == -1)	row = numberOfRows - 1;
+			else if (row == numberOfRows)	row = 0;
+		}
+		else if (row == -1 || row == numberOfRows)	return -1;
+
+		return row * wordsPerRow;
+	}
+
+	static long nextWord(long[] words, int up, int middle, int down, int w, int numberOfColumns, int wordsPerRow, boolean isPeriodic, Rule rule) {	// the next generation of word w of the row starting at middle, given where the rows above and below it start (-1 if off the edge)
+		long upWest = west(words, up, w, numberOfColumns, wordsPerRow, isPeriodic);	// the eight neighbours of every Cell in the word, lined up with it
+		long upCentre = up == -1 ? 0 : words[up + w];
+		long upEast = east(words, up, w, numberOfColumns, wordsPerRow, isPeriodic);
+		long middleWest = west(words, middle, w, numberOfColumns, wordsPerRow, isPeriodic);
+		long alive = words[middle + w];
+		long middleEast = east(words, middle, w, numberOfColumns, wordsPerRow, isPeriodic);
+		long downWest = west(words, down, w, numberOfColumns, wordsPerRow, isPeriodic);
+		long downCentre = down == -1 ? 0 : words[down + w];
+		long downEast = east(words, down, w, numberOfColumns, wordsPerRow, isPeriodic);
+
+		long next = nextGeneration(rule, alive, upWest, upCentre, upEast, middleWest, middleEast, downWest, downCentre, downEast);
+		if (w == wordsPerRow - 1)	next &= lastWordMask(numberOfColumns);	// keep the spare bits off the edge dead
+		return next;
+	}
+
+	static long nextGeneration(long alive, long n0, long n1, long n2, long n3, long n4, long n5, long n6, long n7) {	// the next state of 64 Cells from their eight neighbours, adding up each bit position separately
+		long upOnes = n0 ^ n1 ^ n2;	// the top three as a 2 bit count
+		long upTwos = (n0 & n1) | (n2 & (n0 ^ n1));
+		long downOnes = n5 ^ n6 ^ n7;	// the bottom three
+		long downTwos = (n5 & n6) | (n7 & (n5 ^ n6));
+		long middleOnes = n3 ^ n4;	// the two at the sides
+		long middleTwos = n3 & n4;
+
+		long ones = upOnes ^ downOnes ^ middleOnes;	// the ones bit of the total
+		long carry = (upOnes & downOnes) | (middleOnes & (upOnes ^ downOnes));	// one more two from adding the ones
+
+		long twosA = upTwos ^ downTwos;	// the total has exactly one two (so is 2 or 3) when exactly one of these four is set
+		long twosB = middleTwos ^ carry;
+		long exactlyOneTwo = (twosA ^ twosB) & ~((upTwos & downTwos) | (middleTwos & carry));
+
+		return exactlyOneTwo & (ones | alive);	// born with 3, survives with 2 or 3
+	}
+
+	static long nextGeneration(Rule rule, long alive, long n0, long n1, long n2, long n3, long n4, long n5, long n6, long n7) {	// the same under any rule, adding up the neighbours into the bits of their count for the rule to pick from
+		if (rule.isConway())	return nextGeneration(alive, n0, n1, n2, n3, n4, n5, n6, n7);	// (which only needs to know whether the count is 2 or 3)
+
+		long aOnes = n0 ^ n1 ^ n2;	// the same adder as countNeighbours, kept inline so nothing is allocated
+		long aTwos = (n0 & n1) | (n2 & (n0 ^ n1));
+		long bOnes = n3 ^ n4 ^ n5;
+		long bTwos = (n3 & n4) | (n5 & (n3 ^ n4));
+		long cOnes = n6 ^ n7;
+		long cTwos = n6 & n7;
+
+		long dTwos = (aOnes & bOnes) | (cOnes & (aOnes ^ bOnes));
+		long eTwos = aTwos ^ bTwos ^ cTwos;
+		long eFours = (aTwos & bTwos) | (cTwos & (aTwos ^ bTwos));
+		long fFours = eTwos & dTwos;
+
+		return rule.next(alive, aOnes ^ bOnes ^ cOnes, eTwos ^ dTwos, eFours ^ fFours, eFours & fFours);
+	}
+
+	static void countNeighbours(long n0, long n1, long n2, long n3, long n4, long n5, long n6, long n7, long[] counts) {	// the number of live neighbours (0 to 8) of 64 Cells, as its ones, twos, fours and eights bits in counts[0] to counts[3]
+		long aOnes = n0 ^ n1 ^ n2;	// the first three as a 2 bit count
+		long aTwos = (n0 & n1) | (n2 & (n0 ^ n1));
+		long bOnes = n3 ^ n4 ^ n5;	// the next three
+		long bTwos = (n3 & n4) | (n5 & (n3 ^ n4));
+		long cOnes = n6 ^ n7;	// the last two
+		long cTwos = n6 & n7;
+
+		long dTwos = (aOnes & bOnes) | (cOnes & (aOnes ^ bOnes));	// the carry from adding up the ones
+		long eTwos = aTwos ^ bTwos ^ cTwos;	// adding up the twos
+		long eFours = (aTwos & bTwos) | (cTwos & (aTwos ^ bTwos));
+		long fFours = eTwos & dTwos;
+
+		counts[0] = aOnes ^ bOnes ^ cOnes;
+		counts[1] = eTwos ^ dTwos;
+		counts[2] = eFours ^ fFours;
+		counts[3] = eFours & fFours;
+	}
+
+	static long west(long[] words, int rowStart, int w, int numberOfColumns, int wordsPerRow, boolean isPeriodic) {	// each Cell's neighbour to the left, lined up with the Cell
+		if (rowStart == -1)	return 0;
+		long word = words[rowStart + w];
+		long carry;
+		if (w > 0)	carry = words[rowStart + w - 1] >>> 63;
+		else if (isPeriodic)	carry = (words[rowStart + wordsPerRow - 1] >>> ((numberOfColumns - 1) & 63)) & 1;	// the last column wraps round to the first
+		else	carry = 0;
+		return (word << 1) | carry;
+	}
+
+	static long east(long[] words, int rowStart, int w, int numberOfColumns, int wordsPerRow, boolean isPeriodic) {	// each Cell's neighbour to the right, lined up with the Cell
+		if (rowStart == -1)	return 0;
+		long word = words[rowStart + w];
+		long carry;
+		if (w < wordsPerRow - 1)	carry = words[rowStart + w + 1] << 63;
+		else if (isPeriodic)	carry = (words[rowStart] & 1) << ((numberOfColumns - 1) & 63);	// the first column wraps round to the last
+		else	carry = 0;
+		return (word >>> 1) | carry;
+	}
+
+	static long lastWordMask(int numberOfColumns) {	// the bits of the last word of a row which are actual Cells
+		if ((numberOfColumns & 63) == 0)	return -1L;
+		return (1L << numberOfColumns) - 1;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.convai;
+
+import java.util.*;	// for the Arrays utility class
+
+final class LongCounter {	// counts how often each long turns up, in open-addressed arrays so nothing is boxed
+
+	private long[] keys;	// the slots (a power of two of them), LongSet.EMPTY if free
+	private int[] counts;	// the count of the key in the same slot
+	private int size;
+
+	LongCounter() {
+		keys = new long[16];
+		counts = new int[16];
+		Arrays.fill(keys, LongSet.EMPTY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int capacity() {	// the number of slots, for going through them with key() and count()
+		return keys.length;
+	}
+
+	long key(int index) {	// the key in a slot, or LongSet.EMPTY
+		return keys[index];
+	}
+
+	int count(int index) {	// the count in a slot
+		return counts[index];
+	}
+
+	int get(long key) {	// the count of a key, 0 if it never turned up
+		int mask = keys.length - 1;
+		for (int i = LongSet.hash(key) & mask; keys[i] != LongSet.EMPTY; i = (i + 1) & mask)
+			if (keys[i] == key)	return counts[i];
+		return 0;
+	}
+
+	void increment(long key) {
+		int mask = keys.length - 1;
+		int i = LongSet.hash(key) & mask;
+		for (; keys[i] != LongSet.EMPTY; i = (i + 1) & mask)
+			if (keys[i] == key) {
+				counts[i]++;
+				return;
+			}
+
+		keys[i] = key;
+		counts[i] = 1;
+		if (++size * 2 > keys.length)	rehash(keys.length * 2);
+	}
+
+	void clear() {	// empties it, shrinking it back if the last use needed far fewer slots
+		if (size * 8 < keys.length && keys.length > 16) {
+			keys = new long[LongSet.capacityFor(size)];
+			counts = new int[keys.length];
+		}
+		Arrays.fill(keys, LongSet.EMPTY);
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new long[capacity];
+		counts = new int[capacity];
+		Arrays.fill(keys, LongSet.EMPTY);
+		int mask = capacity - 1;
+		for (int k = 0; k < oldKeys.length; k++)
+			if (oldKeys[k] != LongSet.EMPTY) {
+				int i = LongSet.hash(oldKeys[k]) & mask;
+				while (keys[i] != LongSet.EMPTY)	i = (i + 1) & mask;
+				keys[i] = oldKeys[k];
+				counts[i] = oldCounts[k];
+			}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.convai;
+
+import java.util.*;	// for the Arrays utility class
+
+final class LongSet {	// a set of longs kept in one open-addressed array, so nothing is boxed
+
+	static final long EMPTY = Long.MIN_VALUE;	// marks a free slot, so it can't be put in the set itself
+
+	private long[] keys;	// the slots (a power of two of them)
+	private int size;
+
+	LongSet() {
+		this(16);
+	}
+
+	LongSet(int expectedSize) {
+		keys = new long[capacityFor(expectedSize)];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int capacity() {	// the number of slots, for going through them with slot()
+		return keys.length;
+	}
+
+	long slot(int index) {	// the key in a slot, or EMPTY
+		return keys[index];
+	}
+
+	boolean contains(long key) {
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask)
+			if (keys[i] == key)	return true;
+
+		return false;
+	}
+
+	boolean add(long key) {	// returns false if it was already there
+		if (key == EMPTY)	throw new IllegalArgumentException("can't hold " + key);
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		for (; keys[i] != EMPTY; i = (i + 1) & mask)
+			if (keys[i] == key)	return false;
+
+		keys[i] = key;
+		if (++size * 2 > keys.length)	rehash(keys.length * 2);
+		return true;
+	}
+
+	boolean remove(long key) {	// returns false if it wasn't there
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		for (; keys[i] != key; i = (i + 1) & mask)
+			if (keys[i] == EMPTY)	return false;
+
+		for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {	// shift back the keys after it that would no longer be found
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		size--;
+		return true;
+	}
+
+	void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	static int hash(long key) {	// spreads the bits of a key so that neighbouring coordinates land far apart
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+	static int capacityFor(int expectedSize) {	// the smallest power of two at least twice the size
+		int capacity = 16;
+		while (capacity < expectedSize * 2)	capacity <<= 1;
+		return capacity;
+	}
+
+	private void rehash(int capacity) {
+		long[] old = keys;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		int mask = capacity - 1;
+		for (int k = 0; k < old.length; k++)
+			if (old[k] != EMPTY) {
+				int i = hash(old[k]) & mask;
+				while (keys[i] != EMPTY)	i = (i + 1) & mask;
+				keys[i] = old[k];
+			}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,429 @@
+package com.convai;
+
+import java.io.*;	// for the file
+import java.nio.*;	// for the buffers
+import java.nio.channels.FileChannel;	// for mapping the file
+import java.nio.file.StandardOpenOption;
+import java.util.*;	// for the Arrays utility class
+
+public class MappedCity implements Universe, Closeable {	// a City kept in a memory-mapped file rather than on the heap, for universes far bigger than the heap (100,000 rows of 100,000 Cells take 1.25 GB a generation)
+	// The file is a header (see checkpoint) followed by two generations of Cells packed the way City packs them, the current one and the one before it, each mapped a band of rows at a time.
+	// A step streams through the rows from top to bottom, keeping only the three it reads from and the one it writes on the heap, and skips the rows that, along with the rows either side, are the same as two generations ago (the generation before already holds their next one).
+	// So the heap only holds a few flags and counts for each row, however many Cells there are, and the file itself is the checkpoint: checkpoint() flushes it, and open() carries on from it.
+
+	public static final int MAGIC = 0x476F4C4D;	// "GoLM"
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4096;	// a page, so the generations start on one
+	private static final long CHUNK_SIZE = 1L << 30;	// the most bytes mapped as one buffer (a MappedByteBuffer holds under 2 GB)
+
+	private final FileChannel channel;
+	private final int numberOfRows;
+	private final int numberOfColumns;
+	private final int wordsPerRow;
+	private final int cellWidth;
+	private final int cellHeight;
+	private final int rowsPerChunk;	// the rows mapped as one buffer
+	private final MappedByteBuffer[][] mappings;	// the two generations, each as its bands of rows
+	private final LongBuffer[][] generations;	// the same, a long at a time
+	private final MappedByteBuffer header;
+	private int current;	// which of the two generations is the current one
+	private boolean isPeriodic = false;	// wraps the city to itself to form a periodic space with no edges
+	private Rule rule = Rule.CONWAY;
+	private boolean[] changedRows;	// the rows that aren't the same as two generations ago (or were changed by hand)
+	private boolean[] nextChangedRows;
+	private final boolean[] editedRows;	// the rows changed by hand since the last step. They count as changed for two generations, until the other generation is their last one again
+	private boolean[] flippingRows;	// the rows that aren't the same as the last generation
+	private boolean[] nextFlippingRows;
+	private final long[] rowHashChanges;	// the change each row made to the hash in the last generation
+	private int[] rowPopulations;	// the live Cells of each row
+	private int[] nextRowPopulations;	// the same for the other generation
+	private long hash;	// the Zobrist hash of the live Cells
+	private boolean isSurveyed;	// false if the hash and the row populations need working out again
+	private final long[] window;	// the three rows a step reads from, one after another
+	private final int[] windowRows = new int[3];	// the row in each third of the window (-1 if none)
+	private final long[] nextRow;	// the row a step writes
+	private final long[] previousRow;	// the row it overwrites, from two generations ago
+
+	public MappedCity(File file, int width, int height, int numberOfRows, int numberOfColumns) throws IOException {	// makes a new empty city in a file (replacing what was there), with a certain number of rows and columns of Cells with given dimensions
+		this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE), width, height, numberOfRows, numberOfColumns);
+		checkpoint();
+	}
+
+	private MappedCity(FileChannel channel, int width, int height, int numberOfRows, int numberOfColumns) throws IOException {
+		if (numberOfRows < 0 || numberOfColumns < 0)	throw new IllegalArgumentException("can't have " + numberOfRows + " rows of " + numberOfColumns + " columns");
+		this.channel = channel;
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		wordsPerRow = (numberOfColumns + 63) >>> 6;
+		cellWidth = width;
+		cellHeight = height;
+
+		long rowSize = wordsPerRow * 8L;
+		rowsPerChunk = (int) Math.max(1, Math.min(numberOfRows, CHUNK_SIZE / Math.max(rowSize, 1)));
+		long generationSize = (numberOfRows * rowSize + HEADER_SIZE - 1) / HEADER_SIZE * HEADER_SIZE;	// (rounded up to a page)
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		int numberOfChunks = (numberOfRows + rowsPerChunk - 1) / rowsPerChunk;
+		mappings = new MappedByteBuffer[2][numberOfChunks];
+		generations = new LongBuffer[2][numberOfChunks];
+		for (int g = 0; g < 2; g++)
+			for (int k = 0; k < numberOfChunks; k++) {
+				int rows = Math.min(rowsPerChunk, numberOfRows - k * rowsPerChunk);
+				mappings[g][k] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + g * generationSize + (long) k * rowsPerChunk * rowSize, rows * rowSize);
+				generations[g][k] = mappings[g][k].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			}
+
+		changedRows = new boolean[numberOfRows];
+		nextChangedRows = new boolean[numberOfRows];
+		editedRows = new boolean[numberOfRows];
+		flippingRows = new boolean[numberOfRows];
+		nextFlippingRows = new boolean[numberOfRows];
+		rowHashChanges = new long[numberOfRows];
+		rowPopulations = new int[numberOfRows];
+		nextRowPopulations = new int[numberOfRows];
+		window = new long[3 * wordsPerRow];
+		nextRow = new long[wordsPerRow];
+		previousRow = new long[wordsPerRow];
+		restepAll();
+	}
+
+	public static MappedCity open(File file) throws IOException {	// carries on from a city saved in a file by checkpoint()
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header) != -1);
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)	throw new IOException(file + " isn't a mapped GoL city");
+			int version = header.getInt();
+			if (version < 1 || version > VERSION)	throw new IOException(file + " is version " + version + ", which is newer than this program");
+
+			int numberOfRows = header.getInt();
+			int numberOfColumns = header.getInt();
+			int cellWidth = header.getInt();
+			int cellHeight = header.getInt();
+			boolean isPeriodic = header.get() != 0;
+			int current = header.get();
+			byte[] rule = new byte[header.getShort() & 0xFFFF];
+			header.get(rule);
+
+			MappedCity city = new MappedCity(channel, cellWidth, cellHeight, numberOfRows, numberOfColumns);
+			city.current = current & 1;
+			city.isPeriodic = isPeriodic;
+			try {
+				city.setRule(Rule.parse(new String(rule, "US-ASCII")));
+			} catch (IllegalArgumentException ex) {
+				throw new IOException(file + " has a rule this program can't follow", ex);
+			}
+			return city;
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/* Getter Methods */
+
+	public int cellWidth() {
+		return cellWidth;
+	}
+
+	public int cellHeight() {
+		return cellHeight;
+	}
+
+	public int numberOfRows() {
+		return numberOfRows;
+	}
+
+	public int numberOfColumns() {
+		return numberOfColumns;
+	}
+
+	public boolean isPeriodic() {
+		return isPeriodic;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public boolean isAlive(int row, int column) {
+		return (word(current, row, column >>> 6) & (1L << column)) != 0;
+	}
+
+	public int getNumberOfLiveCells() {	// (at most Integer.MAX_VALUE: see getPopulation)
+		return (int) Math.min(getPopulation(), Integer.MAX_VALUE);
+	}
+
+	public long getPopulation() {	// the number of live Cells, which may be more than an int holds
+		survey();
+		long population = 0;
+		for (int count : rowPopulations)	population += count;
+		return population;
+	}
+
+	public long getHash() {
+		survey();
+		return hash;
+	}
+
+	/* Setter Methods */
+
+	public void setPeriodic(boolean isPeriodic) {
+		this.isPeriodic = isPeriodic;
+		restepAll();	// the edges behave differently now
+	}
+
+	public void setRule(Rule rule) {	// (there's no room in the file for the ages of dying Cells, nor on the heap for the rows an extended neighbourhood reaches)
+		if (rule.isGenerations() || rule.isExtended())	throw new IllegalArgumentException("a mapped city can't follow " + rule + ", only rules of live and dead Cells and their eight nearest neighbours");
+		this.rule = rule;
+		restepAll();
+	}
+
+	public void setAlive(int row, int column, boolean isAlive) {
+		if (row < 0 || row >= numberOfRows || column < 0 || column >= numberOfColumns)	throw new IndexOutOfBoundsException("no cell at " + row + ", " + column);
+		long word = word(current, row, column >>> 6);
+		long changed = isAlive ? word | (1L << column) : word & ~(1L << column);
+		if (changed == word)	return;
+
+		setWord(current, row, column >>> 6, changed);
+		if (isSurveyed) {
+			hash ^= Zobrist.key(row, column);
+			rowPopulations[row] += isAlive ? 1 : -1;
+		}
+		changedRows[row] = true;
+		editedRows[row] = true;
+	}
+
+	/* Public methods */
+
+	public void readRow(int row, long[] words) {
+		readGeneration(current, row, words);
+	}
+
+	public void readRow(int row, int fromColumn, long[] words) {	// a word at a time, shifting them along if the part doesn't start at the start of one
+		int from = fromColumn >> 6;
+		int shift = fromColumn & 63;
+		LongBuffer chunk = generations[current][row / rowsPerChunk];
+		int start = (row % rowsPerChunk) * wordsPerRow;
+		for (int w = 0; w < words.length; w++) {
+			words[w] = from + w >= 0 && from + w < wordsPerRow ? chunk.get(start + from + w) >>> shift : 0L;
+			if (shift != 0 && from + w + 1 >= 0 && from + w + 1 < wordsPerRow)	words[w] |= chunk.get(start + from + w + 1) << (64 - shift);
+		}
+	}
+
+	public void writeRow(int row, long[] words) {
+		if (isSurveyed) {	// take the old row out of the hash and population
+			readGeneration(current, row, previousRow);
+			rowPopulations[row] = 0;
+			for (int w = 0; w < wordsPerRow; w++)	hash ^= Zobrist.ofWord(previousRow[w], row, w << 6);
+		}
+		System.arraycopy(words, 0, nextRow, 0, wordsPerRow);
+		if (wordsPerRow > 0)	nextRow[wordsPerRow - 1] &= LifeKernel.lastWordMask(numberOfColumns);	// drop anything past the last column
+		writeGeneration(current, row, nextRow);
+		if (isSurveyed)
+			for (int w = 0; w < wordsPerRow; w++) {
+				hash ^= Zobrist.ofWord(nextRow[w], row, w << 6);
+				rowPopulations[row] += Long.bitCount(nextRow[w]);
+			}
+		changedRows[row] = true;
+		editedRows[row] = true;
+	}
+
+	public int countAliveNeighbours(int row, int column) {
+		int count = 0;
+		for (int i = row - 1; i <= row + 1; i++)
+			for (int j = column - 1; j <= column + 1; j++) {
+				if (i == row && j == column)	continue;	// not a neighbour of itself
+				int neighbourRow = isPeriodic ? Math.floorMod(i, numberOfRows) : i;
+				int neighbourColumn = isPeriodic ? Math.floorMod(j, numberOfColumns) : j;
+				if (neighbourRow < 0 || neighbourRow >= numberOfRows || neighbourColumn < 0 || neighbourColumn >= numberOfColumns)	continue;	// off the edge
+				if (isAlive(neighbourRow, neighbourColumn))	count++;
+			}
+
+		return count;
+	}
+
+	public int countLiveCells(int fromRow, int fromColumn, int toRow, int toColumn) {	// a row at a time, a word at a time
+		fromRow = Math.max(fromRow, 0);
+		fromColumn = Math.max(fromColumn, 0);
+		toRow = Math.min(toRow, numberOfRows);
+		toColumn = Math.min(toColumn, numberOfColumns);
+		if (fromRow >= toRow || fromColumn >= toColumn)	return 0;
+
+		long[] words = new long[(toColumn - fromColumn + 63) >>> 6];
+		long mask = LifeKernel.lastWordMask(toColumn - fromColumn);
+		int count = 0;
+		for (int i = fromRow; i < toRow; i++) {
+			readRow(i, fromColumn, words);
+			for (int w = 0; w < words.length - 1; w++)	count += Long.bitCount(words[w]);
+			count += Long.bitCount(words[words.length - 1] & mask);
+		}
+		return count;
+	}
+
+	public void kill() {	// kills all residents
+		Arrays.fill(nextRow, 0L);
+		for (int i = 0; i < numberOfRows; i++)	writeGeneration(current, i, nextRow);
+		Arrays.fill(rowPopulations, 0);
+		hash = 0;
+		isSurveyed = true;
+		restepAll();
+	}
+
+	public void randomize(double percentChanceOfLife) {	// randomly gives life to cells based on the percent chance parameter, a row at a time
+		for (int i = 0; i < numberOfRows; i++) {
+			Arrays.fill(nextRow, 0L);
+			for (int j = 0; j < numberOfColumns; j++)
+				if (Math.random() < percentChanceOfLife * Math.random() / 100.0)	nextRow[j >>> 6] |= 1L << j;
+			writeGeneration(current, i, nextRow);
+		}
+		isSurveyed = false;
+		restepAll();
+	}
+
+	public boolean step() {	// streams the rows of the current generation through a window of three, writing the next generation over the one before
+		survey();
+		int other = 1 - current;
+		Arrays.fill(windowRows, -1);	// (the rows may have been changed by hand since the last step)
+		boolean changed = false;
+		for (int i = 0; i < numberOfRows; i++) {
+			int up = neighbourRow(i - 1);
+			int down = neighbourRow(i + 1);
+			boolean isActive = changedRows[i] || (up != -1 && changedRows[up]) || (down != -1 && changedRows[down]);
+			nextChangedRows[i] = editedRows[i];
+			editedRows[i] = false;
+			if (!isActive) {	// the generation before is already the next one, so it flips back the way it flipped last time
+				nextFlippingRows[i] = flippingRows[i];
+				if (flippingRows[i]) {
+					hash ^= rowHashChanges[i];
+					changed = true;
+				}
+				continue;
+			}
+
+			int middle = load(i, up, down);
+			int upStart = up == -1 ? -1 : load(up, i, down);
+			int downStart = down == -1 ? -1 : load(down, i, up);
+			readGeneration(other, i, previousRow);
+			long hashChange = 0;
+			int population = 0;
+			boolean isFlipping = false;
+			for (int w = 0; w < wordsPerRow; w++) {
+				long next = LifeKernel.nextWord(window, upStart, middle, downStart, w, numberOfColumns, wordsPerRow, isPeriodic, rule);
+				if (next != previousRow[w])	nextChangedRows[i] = true;
+				if (next != window[middle + w]) {
+					isFlipping = true;
+					hashChange ^= Zobrist.ofWord(next ^ window[middle + w], i, w << 6);
+				}
+				population += Long.bitCount(next);
+				nextRow[w] = next;
+			}
+			writeGeneration(other, i, nextRow);
+
+			nextFlippingRows[i] = isFlipping;
+			rowHashChanges[i] = hashChange;
+			hash ^= hashChange;
+			nextRowPopulations[i] = population;
+			changed |= isFlipping;
+		}
+
+		current = other;
+		boolean[] swap = changedRows;
+		changedRows = nextChangedRows;
+		nextChangedRows = swap;
+		swap = flippingRows;
+		flippingRows = nextFlippingRows;
+		nextFlippingRows = swap;
+		int[] swapPopulations = rowPopulations;
+		rowPopulations = nextRowPopulations;
+		nextRowPopulations = swapPopulations;
+		return changed;
+	}
+
+	public void checkpoint() throws IOException {	// flushes the current generation and the header to the file, so open() can carry on from here
+		for (MappedByteBuffer chunk : mappings[current])	chunk.force();
+		byte[] ruleBytes = rule.toString().getBytes("US-ASCII");
+		header.clear();
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(numberOfRows);
+		header.putInt(numberOfColumns);
+		header.putInt(cellWidth);
+		header.putInt(cellHeight);
+		header.put((byte) (isPeriodic ? 1 : 0));
+		header.put((byte) current);
+		header.putShort((short) ruleBytes.length);
+		header.put(ruleBytes);
+		header.force();
+	}
+
+	public void close() throws IOException {	// checkpoints the city and closes the file (the mappings go when they're collected)
+		checkpoint();
+		channel.close();
+	}
+
+	/* Private methods */
+
+	private long word(int generation, int row, int w) {
+		return generations[generation][row / rowsPerChunk].get((row % rowsPerChunk) * wordsPerRow + w);
+	}
+
+	private void setWord(int generation, int row, int w, long word) {
+		generations[generation][row / rowsPerChunk].put((row % rowsPerChunk) * wordsPerRow + w, word);
+	}
+
+	private void readGeneration(int generation, int row, long[] words) {
+		LongBuffer chunk = generations[generation][row / rowsPerChunk];
+		chunk.position((row % rowsPerChunk) * wordsPerRow);
+		chunk.get(words, 0, wordsPerRow);
+	}
+
+	private void writeGeneration(int generation, int row, long[] words) {
+		LongBuffer chunk = generations[generation][row / rowsPerChunk];
+		chunk.position((row % rowsPerChunk) * wordsPerRow);
+		chunk.put(words, 0, wordsPerRow);
+	}
+
+	private int load(int row, int keep, int alsoKeep) {	// where a row of the current generation starts in the window, reading it into a third that doesn't hold the other two rows if it isn't there already
+		for (int k = 0; k < 3; k++)
+			if (windowRows[k] == row)	return k * wordsPerRow;
+
+		for (int k = 0; k < 3; k++)
+			if (windowRows[k] == -1 || (windowRows[k] != keep && windowRows[k] != alsoKeep)) {
+				LongBuffer chunk = generations[current][row / rowsPerChunk];
+				chunk.position((row % rowsPerChunk) * wordsPerRow);
+				chunk.get(window, k * wordsPerRow, wordsPerRow);
+				windowRows[k] = row;
+				return k * wordsPerRow;
+			}
+		throw new IllegalStateException("no room in the window for row " + row);
+	}
+
+	private int neighbourRow(int row) {	// a row wrapped round if periodic, or -1 if it's off the edge
+		if (row >= 0 && row < numberOfRows)	return row;
+		if (!isPeriodic)	return -1;
+		return Math.floorMod(row, numberOfRows);
+	}
+
+	private void survey() {	// works out the hash and the population of each row from scratch, if they aren't known
+		if (isSurveyed)	return;
+		hash = 0;
+		for (int i = 0; i < numberOfRows; i++) {
+			readGeneration(current, i, nextRow);
+			rowPopulations[i] = 0;
+			for (int w = 0; w < wordsPerRow; w++) {
+				hash ^= Zobrist.ofWord(nextRow[w], i, w << 6);
+				rowPopulations[i] += Long.bitCount(nextRow[w]);
+			}
+		}
+		isSurveyed = true;
+	}
+
+	private void restepAll() {	// makes every row be stepped for the next two generations, as the generation before no longer says anything about the next one
+		Arrays.fill(changedRows, true);
+		Arrays.fill(editedRows, true);
+		Arrays.fill(flippingRows, true);
+	}
+
+}
\ No newline at end of file
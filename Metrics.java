@@ -0,0 +1,358 @@
+package com.convai;
+
+import java.awt.*;	// for the overlay
+import java.lang.management.*;	// for the allocation of the simulation thread and the MBean server
+import java.util.*;	// for the Locale of the overlay
+import javax.management.*;	// to be read over JMX
+
+public class Metrics {	// measures a Simulation as it runs: how fast it goes, how long each step and each frame drawn take, how the population changes and how much each step allocates. Read over JMX (see register), from a JFR recording or drawn over the window
+	// A Simulation with no Metrics (the default) measures nothing, so it costs nothing but a null check.
+	// The steps are measured on the simulation thread and the frames on the thread that draws them; the readings can be taken on any thread.
+
+	public static final String OBJECT_NAME = "com.convai:type=Metrics";	// the name it's registered under over JMX
+	private static final long RATE_NANOS = 1000000000L;	// how long the generations per second are counted over
+	private static final boolean HAS_JFR = hasClass("jdk.jfr.Event");	// (JFR came to Java 8 late, so it may not be there)
+
+	private final Histogram steps = new Histogram();	// the nanoseconds each step took
+	private final Histogram renders = new Histogram();	// and each frame drawn
+	private final com.sun.management.ThreadMXBean threads = allocationCounter();	// (null if the JVM can't count what a thread allocates)
+	private volatile double generationsPerSecond;
+	private volatile int population = -1;	// the live Cells after the latest step (-1 before the first)
+	private volatile long births = -1;	// the Cells born in the latest step (-1 if it isn't known)
+	private volatile long deaths = -1;
+	private volatile long allocated = -1;	// the bytes the latest step allocated on the simulation thread (-1 if they can't be counted)
+	private long rateStart;	// when the generations per second started being counted (only touched on the simulation thread)
+	private long rateSteps;	// the steps since
+	private long allocatedBefore;	// what the simulation thread had allocated when the step started
+	private Object stepEvent;	// the JFR event of the step being measured (null without JFR)
+	private Object renderEvent;	// and of the frame being drawn
+
+	/* Getter Methods */
+
+	public double getGenerationsPerSecond() {	// the generations stepped in the last second or so
+		return generationsPerSecond;
+	}
+
+	public long getSteps() {	// the steps measured
+		return steps.getCount();
+	}
+
+	public double getStepMean() {	// the nanoseconds a step takes on average
+		return steps.getMean();
+	}
+
+	public long getStepPercentile(double percentile) {	// the nanoseconds percentile percent of the steps took no longer than
+		return steps.getPercentile(percentile);
+	}
+
+	public long getStepMaximum() {
+		return steps.getMaximum();
+	}
+
+	public double getRenderMean() {	// the nanoseconds drawing a frame takes on average
+		return renders.getMean();
+	}
+
+	public long getRenderPercentile(double percentile) {
+		return renders.getPercentile(percentile);
+	}
+
+	public int getPopulation() {
+		return population;
+	}
+
+	public long getBirths() {
+		return births;
+	}
+
+	public long getDeaths() {
+		return deaths;
+	}
+
+	public long getAllocated() {
+		return allocated;
+	}
+
+	/* Public methods */
+
+	public long startStep() {	// called just before a step, returning when it started (only on the simulation thread)
+		if (HAS_JFR)	stepEvent = Events.begin(true);
+		if (threads != null)	allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());	// (after the event, so making it isn't counted as the step's)
+		return System.nanoTime();
+	}
+
+	public void endStep(long start) {	// called just after it, with when it started
+		long end = System.nanoTime();
+		steps.record(end - start);
+		if (threads != null)	allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;	// (not counting what the engine's other threads allocate)
+		if (stepEvent != null)	Events.end(stepEvent);
+
+		if (rateSteps == 0)	rateStart = start;
+		rateSteps++;
+		if (end - rateStart >= RATE_NANOS) {
+			generationsPerSecond = rateSteps * 1e9 / (end - rateStart);
+			rateSteps = 0;
+		}
+	}
+
+	public void counted(long generation, int populationBefore, int population, long changes) {	// called once the step's generation has been counted: how many were alive before and after it, and how many Cells changed (-1 if it isn't known)
+		this.population = population;
+		births = changes < 0 ? -1 : (changes + population - populationBefore) / 2;	// (the births less the deaths is the change in the population, and the births and the deaths add up to the changes)
+		deaths = changes < 0 ? -1 : (changes - population + populationBefore) / 2;
+		if (stepEvent != null) {
+			Events.commitStep(stepEvent, generation, population, births, deaths, allocated);
+			stepEvent = null;
+		}
+	}
+
+	public long startRender() {	// called just before a frame is drawn, returning when it started (only on the thread that draws)
+		if (HAS_JFR)	renderEvent = Events.begin(false);
+		return System.nanoTime();
+	}
+
+	public void endRender(long start, int width, int height) {	// called just after it, with when it started and the size of the frame
+		renders.record(System.nanoTime() - start);
+		if (renderEvent != null) {
+			Events.commitRender(renderEvent, width, height);
+			renderEvent = null;
+		}
+	}
+
+	public void reset() {	// starts measuring again from nothing
+		steps.reset();
+		renders.reset();
+	}
+
+	public void register() {	// makes the readings available over JMX, under OBJECT_NAME
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name))	server.unregisterMBean(name);
+			server.registerMBean(new StandardMBean(new Readings(), MBean.class), name);
+		} catch (JMException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	public void unregister() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name))	server.unregisterMBean(name);
+		} catch (JMException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	public void render(Graphics g, int x, int y) {	// draws the readings over a window, from its top-left corner at x, y
+		String[] lines = {
+			String.format(Locale.ROOT, "%.1f generations/s", generationsPerSecond),
+			"step: " + time(steps.getMean()) + " mean, " + time(steps.getPercentile(50)) + " p50, " + time(steps.getPercentile(99)) + " p99, " + time(steps.getMaximum()) + " max",
+			"render: " + time(renders.getMean()) + " mean, " + time(renders.getPercentile(99)) + " p99",
+			"live: " + Math.max(population, 0) + (births < 0 ? "" : ", born: " + births + ", died: " + deaths),
+			allocated < 0 ? "allocated: unknown" : "allocated: " + allocated / 1024 + " KB/step"
+		};
+
+		FontMetrics font = g.getFontMetrics();
+		int width = 0;
+		for (String line : lines)	width = Math.max(width, font.stringWidth(line));
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fillRect(x, y, width + 16, lines.length * font.getHeight() + 12);
+		g.setColor(Color.white);
+		for (int l = 0; l < lines.length; l++)	g.drawString(lines[l], x + 8, y + 6 + l * font.getHeight() + font.getAscent());
+	}
+
+	/* Private methods */
+
+	private static String time(double nanos) {	// a time in the units that suit it
+		if (nanos < 1e3)	return String.format(Locale.ROOT, "%.0f ns", nanos);
+		if (nanos < 1e6)	return String.format(Locale.ROOT, "%.1f us", nanos / 1e3);
+		return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		try {
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (!(threads instanceof com.sun.management.ThreadMXBean))	return null;
+			com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+			if (!counter.isThreadAllocatedMemorySupported())	return null;
+			if (!counter.isThreadAllocatedMemoryEnabled())	counter.setThreadAllocatedMemoryEnabled(true);
+			return counter;
+		} catch (LinkageError | UnsupportedOperationException | SecurityException ex) {	// (not a HotSpot JVM)
+			return null;
+		}
+	}
+
+	private static boolean hasClass(String name) {
+		try {
+			Class.forName(name);
+			return true;
+		} catch (ClassNotFoundException | LinkageError ex) {
+			return false;
+		}
+	}
+
+	public interface MBean {	// what's read over JMX (times in microseconds)
+
+		double getGenerationsPerSecond();
+
+		long getSteps();
+
+		double getStepMean();
+
+		double getStepP50();
+
+		double getStepP90();
+
+		double getStepP99();
+
+		double getStepMaximum();
+
+		double getRenderMean();
+
+		double getRenderP99();
+
+		int getPopulation();
+
+		long getBirths();
+
+		long getDeaths();
+
+		long getAllocatedBytesPerStep();
+
+		void reset();
+
+	}
+
+	private class Readings implements MBean {
+
+		public double getGenerationsPerSecond() {
+			return generationsPerSecond;
+		}
+
+		public long getSteps() {
+			return steps.getCount();
+		}
+
+		public double getStepMean() {
+			return steps.getMean() / 1e3;
+		}
+
+		public double getStepP50() {
+			return steps.getPercentile(50) / 1e3;
+		}
+
+		public double getStepP90() {
+			return steps.getPercentile(90) / 1e3;
+		}
+
+		public double getStepP99() {
+			return steps.getPercentile(99) / 1e3;
+		}
+
+		public double getStepMaximum() {
+			return steps.getMaximum() / 1e3;
+		}
+
+		public double getRenderMean() {
+			return renders.getMean() / 1e3;
+		}
+
+		public double getRenderP99() {
+			return renders.getPercentile(99) / 1e3;
+		}
+
+		public int getPopulation() {
+			return population;
+		}
+
+		public long getBirths() {
+			return births;
+		}
+
+		public long getDeaths() {
+			return deaths;
+		}
+
+		public long getAllocatedBytesPerStep() {
+			return allocated;
+		}
+
+		public void reset() {
+			Metrics.this.reset();
+		}
+
+	}
+
+	private static class Events {	// the JFR events, kept apart so nothing of JFR is loaded unless it's there
+
+		private static final jdk.jfr.EventType STEP = jdk.jfr.EventType.getEventType(StepEvent.class);
+		private static final jdk.jfr.EventType RENDER = jdk.jfr.EventType.getEventType(RenderEvent.class);
+
+		static Object begin(boolean isStep) {	// (null unless it's being recorded, asking before making the event so none is made for each step and frame otherwise)
+			if (!(isStep ? STEP : RENDER).isEnabled())	return null;
+			jdk.jfr.Event event = isStep ? new StepEvent() : new RenderEvent();
+			event.begin();
+			return event;
+		}
+
+		static void end(Object event) {
+			((jdk.jfr.Event) event).end();
+		}
+
+		static void commitStep(Object event, long generation, int population, long births, long deaths, long allocated) {
+			StepEvent step = (StepEvent) event;
+			step.generation = generation;
+			step.population = population;
+			step.births = births;
+			step.deaths = deaths;
+			step.allocated = allocated;
+			step.commit();
+		}
+
+		static void commitRender(Object event, int width, int height) {
+			RenderEvent render = (RenderEvent) event;
+			render.width = width;
+			render.height = height;
+			render.commit();
+		}
+
+	}
+
+	@jdk.jfr.Name("com.convai.Step")
+	@jdk.jfr.Label("Generation Step")
+	@jdk.jfr.Category("Game of Life")
+	static class StepEvent extends jdk.jfr.Event {	// a step of the simulation
+
+		@jdk.jfr.Label("Generation")
+		long generation;
+
+		@jdk.jfr.Label("Population")
+		int population;
+
+		@jdk.jfr.Label("Births")
+		long births;
+
+		@jdk.jfr.Label("Deaths")
+		long deaths;
+
+		@jdk.jfr.Label("Allocated")
+		@jdk.jfr.DataAmount
+		long allocated;
+
+	}
+
+	@jdk.jfr.Name("com.convai.Render")
+	@jdk.jfr.Label("Render")
+	@jdk.jfr.Category("Game of Life")
+	static class RenderEvent extends jdk.jfr.Event {	// a frame drawn
+
+		@jdk.jfr.Label("Width")
+		int width;
+
+		@jdk.jfr.Label("Height")
+		int height;
+
+	}
+
+}
\ No newline at end of file
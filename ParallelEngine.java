@@ -0,0 +1,135 @@
+package com.convai;
+
+import java.util.*;	// for the list of bands
+import java.util.concurrent.*;	// for the thread pools
+
+public class ParallelEngine implements AutoCloseable {	// steps a City on several threads at once, giving each a horizontal band of rows
+
+	private final ExecutorService executor;	// runs the bands
+	private final int parallelism;	// the number of threads the bands are spread across
+	private boolean ownsExecutor;	// true if the executor was made for this engine, so closing it shuts the executor down
+	private int sequentialCutoff = 1 << 16;	// cities with fewer cells than this aren't worth splitting up, so they're stepped on the calling thread
+	private City bandedCity;	// the city the bands below were made for
+	private int bandedRows;	// the number of rows that city had then
+	private List<Band> bands = new ArrayList<Band>();
+	private volatile boolean isAbandoned;	// set when a step is given up on, so the bands that haven't started yet don't
+
+	public ParallelEngine() {	// runs on the common ForkJoinPool
+		this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	public ParallelEngine(int parallelism) {	// runs on a ForkJoinPool of its own with the given number of threads (or the common one, if that has as many or only one is wanted), to be closed when done with
+		this(parallelism == 1 || parallelism == ForkJoinPool.getCommonPoolParallelism() ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism), parallelism);
+		ownsExecutor = executor != ForkJoinPool.commonPool();
+	}
+
+	public ParallelEngine(ExecutorService executor, int parallelism) {	// runs on any executor, splitting the work for the given number of threads
+		if (parallelism < 1)	throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/* Getter Methods */
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getSequentialCutoff() {
+		return sequentialCutoff;
+	}
+
+	/* Setter Methods */
+
+	public void setSequentialCutoff(int sequentialCutoff) {
+		this.sequentialCutoff = sequentialCutoff;
+	}
+
+	/* Public methods */
+
+	public boolean isWorthwhile(City city) {	// returns true if the city is big enough to be stepped in parallel
+		return parallelism > 1 && city.numberOfTileRows() > 1 && city.getNumberOfCells() >= sequentialCutoff;
+	}
+
+	public boolean step(Universe universe) {	// moves the universe on to its next generation, in parallel if it's a large City. Returns false if nothing changed
+		if (!(universe instanceof City) || !isWorthwhile((City) universe))	return universe.step();
+
+		City city = (City) universe;
+		makeBands(city);
+		city.prepareStep();
+		isAbandoned = false;
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (Band band : bands)	futures.add(executor.submit(band));
+		try {
+			for (Future<Void> future : futures)	future.get();
+		} catch (InterruptedException ex) {	// leave the city as it was, once no band is writing to it any more
+			isAbandoned = true;
+			awaitBands(futures);
+			city.abandonStep();
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException ex) {
+			isAbandoned = true;
+			awaitBands(futures);
+			city.abandonStep();
+			throw new IllegalStateException("a band failed to step", ex.getCause());
+		}
+
+		return city.swapBuffers();
+	}
+
+	public void close() {	// shuts down the engine's own pool, if it has one (an executor it was given is left to whoever gave it)
+		if (ownsExecutor)	executor.shutdown();
+	}
+
+	/* Private methods */
+
+	private void awaitBands(List<Future<Void>> futures) {	// waits for every band of an abandoned step to finish (or not start), however often the thread is interrupted, keeping the interrupt for the caller
+		boolean isInterrupted = false;
+		for (Future<Void> future : futures)
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException ex) {
+					isInterrupted = true;
+				} catch (ExecutionException ex) {
+					break;
+				}
+			}
+		if (isInterrupted)	Thread.currentThread().interrupt();
+	}
+
+	private void makeBands(City city) {	// splits the city into bands of whole tiles, a few per thread so that uneven ones even out
+		if (city == bandedCity && city.numberOfRows() == bandedRows)	return;	// the ones we have still fit
+
+		bands.clear();
+		int numberOfTileRows = city.numberOfTileRows();
+		int numberOfBands = Math.min(numberOfTileRows, parallelism * 4);
+		for (int i = 0; i < numberOfBands; i++)
+			bands.add(new Band(city, i * numberOfTileRows / numberOfBands * City.TILE_ROWS, Math.min((i + 1) * numberOfTileRows / numberOfBands * City.TILE_ROWS, city.numberOfRows())));
+
+		bandedCity = city;
+		bandedRows = city.numberOfRows();
+	}
+
+	private class Band implements Callable<Void> {	// a run of rows stepped by one thread. The rows above and below it (the halo) are only read from the current generation, which no band writes to, so neighbouring bands (and wrapped-around ones in a periodic city) never get in each other's way
+
+		private final City city;
+		private final int fromRow;	// the first row of the band
+		private final int toRow;	// the row after the last one
+
+		Band(City city, int fromRow, int toRow) {
+			this.city = city;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		public Void call() {
+			if (!isAbandoned)	city.stepRows(fromRow, toRow);
+			return null;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+package com.convai;
+
+import java.io.*;	// for the old serialized files
+import java.nio.*;	// for the buffers
+import java.nio.channels.FileChannel;	// for reading and writing the files
+import java.nio.file.StandardOpenOption;
+import java.util.zip.*;	// for compression
+
+public class PatternFile {	// a pattern saved to a .gol file, with the frame it was shown in
+	// The file is a header (see write), the rule as a length and its rulestring (from version 2 on; version 1 files are Conway's), then the Cells packed 64 to a little-endian long, row after row, either as they are or deflated. Dying Cells aren't saved.
+	// Files saved before this format (a Java serialized stream, starting 0xACED) can still be read.
+
+	public static final int MAGIC = 0x476F4C1A;	// "GoL" and a ^Z
+	public static final int VERSION = 2;
+	public static final byte RAW = 0;	// ways of storing the Cells
+	public static final byte DEFLATED = 1;
+	private static final byte CITY = 0;	// kinds of universe
+	private static final byte SPARSE = 1;
+	private static final byte UNBOUNDED = 2;
+	private static final int HEADER_SIZE = 60;
+
+	public int frameWidth;	// the width of the frame in pixels
+	public int frameHeight;	// the height of the frame in pixels
+	public double rowSpacing;	// the spacing of each row in pixels
+	public double columnSpacing;	// the spacing of each column in pixels
+	public double fps;	// the speed of the simulation (in FPS)
+	public Universe universe;	// the pattern itself (only the rows and columns on show, if it's unbounded)
+	public byte compression = DEFLATED;	// how the Cells are stored when writing
+
+	public PatternFile(int frameWidth, int frameHeight, double rowSpacing, double columnSpacing, double fps, Universe universe) {
+		this.frameWidth = frameWidth;
+		this.frameHeight = frameHeight;
+		this.rowSpacing = rowSpacing;
+		this.columnSpacing = columnSpacing;
+		this.fps = fps;
+		this.universe = universe;
+	}
+
+	public void write(File file) throws IOException {	// saves the pattern, streaming it a row at a time
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(frameWidth);
+			header.putInt(frameHeight);
+			header.putDouble(rowSpacing);
+			header.putDouble(columnSpacing);
+			header.putDouble(fps);
+			header.put(kindOf(universe));
+			header.put((byte) (universe.isPeriodic() ? 1 : 0));
+			header.putInt(universe.cellWidth());
+			header.putInt(universe.cellHeight());
+			header.putInt(universe.numberOfRows());
+			header.putInt(universe.numberOfColumns());
+			header.put(compression);
+			header.put((byte) 0);	// spare
+			header.flip();
+			writeFully(channel, header);
+			byte[] rule = universe.getRule().toString().getBytes("US-ASCII");
+			ByteBuffer ruleBytes = ByteBuffer.allocate(2 + rule.length).order(ByteOrder.LITTLE_ENDIAN);
+			ruleBytes.putShort((short) rule.length).put(rule).flip();
+			writeFully(channel, ruleBytes);
+
+			int wordsPerRow = (universe.numberOfColumns() + 63) >>> 6;
+			long[] row = new long[wordsPerRow];
+			ByteBuffer rowBytes = ByteBuffer.allocate(wordsPerRow * 8).order(ByteOrder.LITTLE_ENDIAN);
+			Deflater deflater = compression == DEFLATED ? new Deflater(Deflater.BEST_SPEED) : null;
+			ByteBuffer deflated = ByteBuffer.allocate(64 * 1024);
+			try {
+				for (int i = 0; i < universe.numberOfRows(); i++) {
+					universe.readRow(i, row);
+					rowBytes.clear();
+					rowBytes.asLongBuffer().put(row);
+					if (deflater == null)	writeFully(channel, rowBytes);
+					else {
+						deflater.setInput(rowBytes.array(), 0, rowBytes.capacity());	// (the array overloads, as the ByteBuffer ones need Java 11)
+						while (!deflater.needsInput())	drain(deflater, deflated, channel);
+					}
+				}
+
+				if (deflater != null) {
+					deflater.finish();
+					while (!deflater.finished())	drain(deflater, deflated, channel);
+				}
+			} finally {
+				if (deflater != null)	deflater.end();
+			}
+		}
+	}
+
+	public static PatternFile read(File file) throws IOException {	// loads a pattern, mapping the file rather than copying it in
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (mapped.remaining() >= 2 && (mapped.get(0) & 0xFF) == 0xAC && (mapped.get(1) & 0xFF) == 0xED)	return readSerialized(file);	// an old one
+
+			ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)	throw new IOException(file + " isn't a GoL pattern file");
+			int version = buffer.getInt();
+			if (version < 1 || version > VERSION)	throw new IOException(file + " is version " + version + ", which is newer than this program");
+
+			int frameWidth = buffer.getInt();
+			int frameHeight = buffer.getInt();
+			double rowSpacing = buffer.getDouble();
+			double columnSpacing = buffer.getDouble();
+			double fps = buffer.getDouble();
+			byte kind = buffer.get();
+			boolean isPeriodic = buffer.get() != 0;
+			int cellWidth = buffer.getInt();
+			int cellHeight = buffer.getInt();
+			int numberOfRows = buffer.getInt();
+			int numberOfColumns = buffer.getInt();
+			byte compression = buffer.get();
+			buffer.get();	// spare
+			Rule rule = Rule.CONWAY;
+			if (version >= 2) {
+				if (buffer.remaining() < 2)	throw new EOFException(file + " ends in its header");
+				byte[] ruleBytes = new byte[buffer.getShort() & 0xFFFF];
+				if (buffer.remaining() < ruleBytes.length)	throw new EOFException(file + " ends in its header");
+				buffer.get(ruleBytes);
+				try {
+					rule = Rule.parse(new String(ruleBytes, "US-ASCII"));
+				} catch (IllegalArgumentException ex) {
+					throw new IOException(file + " has a rule this program can't follow", ex);
+				}
+			}
+
+			Universe universe;
+			if (kind == CITY)	universe = new City(cellWidth, cellHeight, numberOfRows, numberOfColumns);
+			else	universe = new SparseUniverse(cellWidth, cellHeight, numberOfRows, numberOfColumns, kind == UNBOUNDED);
+			universe.setPeriodic(isPeriodic);
+			try {
+				universe.setRule(rule);
+			} catch (IllegalArgumentException ex) {
+				throw new IOException(file + " has a rule this program can't follow", ex);
+			}
+
+			int wordsPerRow = (numberOfColumns + 63) >>> 6;
+			long[] row = new long[wordsPerRow];
+			ByteBuffer rowBytes = ByteBuffer.allocate(wordsPerRow * 8).order(ByteOrder.LITTLE_ENDIAN);
+			Inflater inflater = compression == DEFLATED ? new Inflater() : null;
+			byte[] input = inflater != null ? new byte[64 * 1024] : null;	// the mapped file, handed to the inflater a piece at a time
+			try {
+				for (int i = 0; i < numberOfRows; i++) {
+					rowBytes.clear();
+					if (inflater == null) {
+						if (buffer.remaining() < rowBytes.capacity())	throw new EOFException(file + " ends part way through row " + i);
+						ByteBuffer rowSlice = buffer.slice();
+						rowSlice.limit(rowBytes.capacity());
+						rowBytes.put(rowSlice);
+						buffer.position(buffer.position() + rowBytes.capacity());
+					}
+					else
+						while (rowBytes.hasRemaining()) {
+							if (inflater.needsInput() && buffer.hasRemaining()) {
+								int length = Math.min(buffer.remaining(), input.length);
+								buffer.get(input, 0, length);
+								inflater.setInput(input, 0, length);
+							}
+							int inflated = inflater.inflate(rowBytes.array(), rowBytes.position(), rowBytes.remaining());
+							rowBytes.position(rowBytes.position() + inflated);
+							if (inflated == 0 && (inflater.finished() || (inflater.needsInput() && !buffer.hasRemaining())))	throw new EOFException(file + " ends part way through row " + i);
+						}
+					rowBytes.flip();
+					rowBytes.asLongBuffer().get(row);
+					universe.writeRow(i, row);
+				}
+			} catch (DataFormatException ex) {
+				throw new IOException(file + " is corrupt", ex);
+			} finally {
+				if (inflater != null)	inflater.end();
+			}
+
+			PatternFile pattern = new PatternFile(frameWidth, frameHeight, rowSpacing, columnSpacing, fps, universe);
+			pattern.compression = compression;
+			return pattern;
+		}
+	}
+
+	/* Private methods */
+
+	private static PatternFile readSerialized(File file) throws IOException {	// reads a file saved the old way, as a stream of serialized objects
+		try (ObjectInputStream os = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int frameWidth = (int) os.readObject();
+			int frameHeight = (int) os.readObject();
+			double rowSpacing = (double) os.readObject();
+			double columnSpacing = (double) os.readObject();
+			double fps = (double) os.readObject();
+			Universe universe = (Universe) os.readObject();
+			return new PatternFile(frameWidth, frameHeight, rowSpacing, columnSpacing, fps, universe);
+		} catch (ClassNotFoundException ex) {
+			throw new IOException(file + " holds something other than a pattern", ex);
+		}
+	}
+
+	private static byte kindOf(Universe universe) {
+		if (!(universe instanceof SparseUniverse))	return CITY;
+		return ((SparseUniverse) universe).isUnbounded() ? UNBOUNDED : SPARSE;
+	}
+
+	private static void drain(Deflater deflater, ByteBuffer deflated, FileChannel channel) throws IOException {	// writes out whatever the deflater has ready
+		deflated.clear();
+		deflated.limit(deflater.deflate(deflated.array()));
+		writeFully(channel, deflated);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())	channel.write(buffer);
+	}
+
+}
\ No newline at end of file
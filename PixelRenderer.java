@@ -0,0 +1,288 @@
+package com.convai;
+
+import java.awt.*;	// for coloring
+import java.awt.image.*;	// for the image and its pixels
+import java.util.*;	// for the Arrays utility class
+
+public class PixelRenderer {	// draws Snapshots of a universe by writing the colour of each Cell straight into the pixels of an image, sorting 64 Cells at a time into colours by counting their neighbours the way LifeKernel does, so a frame takes a single drawImage
+	// Only the tiles (City.TILE_ROWS by City.TILE_COLUMNS Cells) that look different from the last Snapshot drawn are drawn again. Zoomed out to several Cells a pixel, each pixel is shaded by how many of its Cells are alive.
+
+	private static final int WHITE = 0xFFFFFF;	// the colours, as 0xRRGGBB
+	private static final int BLACK = 0x000000;
+	private static final int RED = Color.red.getRGB() & WHITE;	// alive, but overcrowded
+	private static final int BLUE = Color.blue.getRGB() & WHITE;	// alive, but lonely
+	private static final int GREEN = Color.green.getRGB() & WHITE;	// alive and well
+	private static final int GREY = 0xFAFAFA;	// dead, but about to be born
+	private static final int ORANGE = Color.orange.getRGB() & WHITE;	// dying, under a Generations rule
+	private static final int DARK_GREY = 0x808080;	// dying, in black and white
+	private static final int EDGE = 0xE0E0E0;	// past the edges of a bounded universe
+	private static final int SAMPLES = 4;	// the samples across and down each pixel when working out how much of it an oval Cell covers
+	private static final int MINIMUM_GRID_CELL_SIZE = 4;	// below this, the grid would hide the Cells
+	private static final int MINIMUM_SHADE = 64;	// out of 256, how strongly a pixel with a single live Cell is shaded (so a lone Cell is never lost when zoomed out)
+	private static final int SHADES = 1024;	// the shares of live Cells a pixel is shaded differently for
+
+	private BufferedImage image;	// the universe as it was last drawn
+	private int[] pixels;	// the image's own pixels, row after row
+	private Snapshot rendered;	// the Snapshot drawn on the image, with the settings below
+	private boolean isCurvy;
+	private boolean isMonochrome;
+	private boolean gridOn;
+	private boolean isValid = false;	// false if the whole image needs drawing again
+	private int[] ovalCoverage = new int[0];	// how many of the SAMPLES * SAMPLES samples of each pixel of a Cell's square an oval Cell covers
+	private int ovalSize;	// the size of Cell the coverage is for
+	private boolean[] changedTiles = new boolean[0];	// the tiles with Cells that aren't the same as in the last Snapshot drawn
+	private boolean[] tilesToRender = new boolean[0];	// the changed tiles and the ones around them (whose edge Cells' colours may have changed)
+	private final int[] shades = new int[SHADES + 1];	// zoomed out, the colour of a pixel for each share of its Cells alive
+	private int shadedColour = -1;	// the colour the shades are of
+	private final long[] counts = new long[4];	// the number of live neighbours of 64 Cells, as its ones, twos, fours and eights bits
+
+	/* Public methods */
+
+	public BufferedImage render(Snapshot city, boolean isCurvy, boolean isMonochrome, boolean gridOn) {	// brings an image the size of the Snapshot's window up to date with it and returns it
+		Viewport viewport = city.getViewport();
+		if (image == null || image.getWidth() != viewport.getWidth() || image.getHeight() != viewport.getHeight()) {
+			image = new BufferedImage(viewport.getWidth(), viewport.getHeight(), BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			isValid = false;
+		}
+
+		if (rendered == null || !viewport.equals(rendered.getViewport()) || city.fromRow != rendered.fromRow || city.fromColumn != rendered.fromColumn || city.numberOfRows() != rendered.numberOfRows() || city.numberOfColumns() != rendered.numberOfColumns()
+				|| city.universeRows != rendered.universeRows || city.universeColumns != rendered.universeColumns || city.isOpen != rendered.isOpen || !city.rule.equals(rendered.rule)
+				|| isCurvy != this.isCurvy || isMonochrome != this.isMonochrome || gridOn != this.gridOn)	isValid = false;
+		this.isCurvy = isCurvy;
+		this.isMonochrome = isMonochrome;
+		this.gridOn = gridOn;
+		if (isCurvy && ovalSize != viewport.getCellSize())	makeOval(viewport.getCellSize());
+
+		Snapshot last = rendered;
+		rendered = city;
+		if (viewport.isZoomedOut())	renderDensity(city);
+		else if (!isValid) {	// start again from a blank image
+			fillBackground(city);
+			if (gridOn)	drawGrid(city, 0, 0, city.numberOfRows(), city.numberOfColumns());
+			for (int i = 0; i < city.numberOfRows(); i++)
+				for (int w = 0; w < city.wordsPerRow; w++)	renderWord(city, i, w);
+		}
+		else if (city != last)	renderChangedTiles(last, city);
+
+		isValid = true;
+		return image;
+	}
+
+	public void invalidate() {	// makes the whole image be drawn again next time
+		isValid = false;
+	}
+
+	/* Private methods */
+
+	private void renderChangedTiles(Snapshot last, Snapshot city) {	// draws again only the tiles that may look different from the last Snapshot
+		int numberOfTileRows = (city.numberOfRows() + City.TILE_ROWS - 1) / City.TILE_ROWS;
+		int numberOfTileColumns = city.wordsPerRow;	// a tile is a word across
+		int numberOfTiles = numberOfTileRows * numberOfTileColumns;
+		if (changedTiles.length != numberOfTiles) {
+			changedTiles = new boolean[numberOfTiles];
+			tilesToRender = new boolean[numberOfTiles];
+		}
+		Arrays.fill(changedTiles, false);
+		Arrays.fill(tilesToRender, false);
+
+		for (int i = -1; i <= city.numberOfRows(); i++) {	// (the rows off the edges count as part of the tiles at the edges)
+			int tileRow = Math.min(Math.max(i, 0) / City.TILE_ROWS, numberOfTileRows - 1);
+			int start = (i + 1) * city.wordsPerRow;
+			for (int w = 0; w < city.wordsPerRow; w++)
+				if (city.words[start + w] != last.words[start + w])	changedTiles[tileRow * numberOfTileColumns + w] = true;
+		}
+		if (city.dying.length == last.dying.length)	// and the dying Cells (which only recolour themselves)
+			for (int k = 0; k < city.dying.length; k++)
+				if (city.dying[k] != last.dying[k])	changedTiles[(k / city.wordsPerRow / City.TILE_ROWS) * numberOfTileColumns + k % city.wordsPerRow] = true;
+		if (city.counts != null && last.counts != null && city.counts.length == last.counts.length)	// and, under an extended rule, Cells whose neighbours changed (which may be past the Cells kept)
+			for (int k = 0; k < city.counts.length; k++)
+				if (city.counts[k] != last.counts[k])	changedTiles[(k / city.numberOfColumns() / City.TILE_ROWS) * numberOfTileColumns + (k % city.numberOfColumns() >>> 6)] = true;
+		for (int k = 0; k < city.westColumn.length; k++) {	// and so do the columns off the edges
+			for (long bits = city.westColumn[k] ^ last.westColumn[k]; bits != 0; bits &= bits - 1)
+				changedTiles[Math.min(Math.max((k << 6) + Long.numberOfTrailingZeros(bits) - 1, 0) / City.TILE_ROWS, numberOfTileRows - 1) * numberOfTileColumns] = true;
+			for (long bits = city.eastColumn[k] ^ last.eastColumn[k]; bits != 0; bits &= bits - 1)
+				changedTiles[Math.min(Math.max((k << 6) + Long.numberOfTrailingZeros(bits) - 1, 0) / City.TILE_ROWS, numberOfTileRows - 1) * numberOfTileColumns + numberOfTileColumns - 1] = true;
+		}
+
+		for (int tileRow = 0; tileRow < numberOfTileRows; tileRow++)	// a change in a tile can recolour the Cells at the edges of the ones around it too
+			for (int tileColumn = 0; tileColumn < numberOfTileColumns; tileColumn++)
+				if (changedTiles[tileRow * numberOfTileColumns + tileColumn])
+					for (int i = Math.max(0, tileRow - 1); i <= Math.min(tileRow + 1, numberOfTileRows - 1); i++)
+						for (int j = Math.max(0, tileColumn - 1); j <= Math.min(tileColumn + 1, numberOfTileColumns - 1); j++)	tilesToRender[i * numberOfTileColumns + j] = true;
+
+		for (int tileRow = 0; tileRow < numberOfTileRows; tileRow++)
+			for (int tileColumn = 0; tileColumn < numberOfTileColumns; tileColumn++) {
+				if (!tilesToRender[tileRow * numberOfTileColumns + tileColumn])	continue;
+
+				int top = tileRow * City.TILE_ROWS;
+				int bottom = Math.min(top + City.TILE_ROWS, city.numberOfRows());
+				int left = tileColumn * City.TILE_COLUMNS;
+				int right = Math.min(left + City.TILE_COLUMNS, city.numberOfColumns());
+				fillCells(city, top, left, bottom, right, WHITE);
+				if (gridOn)	drawGrid(city, top, left, bottom, right);
+				for (int i = top; i < bottom; i++)	renderWord(city, i, tileColumn);
+			}
+	}
+
+	private void renderWord(Snapshot city, int row, int w) {	// draws the 64 Cells of a word of a row, sorted into colours by what the rule does with their number of live neighbours
+		int up = row * city.wordsPerRow;	// where the rows start in the Snapshot's words (which start from row -1)
+		int middle = up + city.wordsPerRow;
+		int down = middle + city.wordsPerRow;
+
+		long alive = city.words[middle + w];
+		LifeKernel.countNeighbours(
+			west(city, up, row - 1, w), city.words[up + w], east(city, up, row - 1, w),
+			west(city, middle, row, w), east(city, middle, row, w),
+			west(city, down, row + 1, w), city.words[down + w], east(city, down, row + 1, w),
+			counts);
+		long dying = city.dying.length == 0 ? 0 : city.dying[row * city.wordsPerRow + w];
+		long survives = 0;
+		long lonely = 0;
+		long born = 0;
+		if (city.counts == null) {
+			survives = city.rule.survivals(counts[0], counts[1], counts[2], counts[3]);
+			lonely = city.rule.lonely(counts[0], counts[1], counts[2], counts[3]) & ~survives;
+			born = city.rule.births(counts[0], counts[1], counts[2], counts[3]);
+		}
+		else	// the Snapshot counted them in the rule's neighbourhood, a Cell at a time
+			for (int b = 0, j = w << 6; b < 64 && j < city.numberOfColumns(); b++, j++) {
+				int numberOfNeighbours = city.counts[row * city.numberOfColumns() + j];
+				if (city.rule.survives(numberOfNeighbours))	survives |= 1L << b;
+				else if (city.rule.isLonely(numberOfNeighbours))	lonely |= 1L << b;
+				if (city.rule.isBorn(numberOfNeighbours))	born |= 1L << b;
+			}
+		long cells = w == city.wordsPerRow - 1 ? LifeKernel.lastWordMask(city.numberOfColumns()) : -1L;	// the bits that are actual Cells
+
+		if (isMonochrome) {
+			renderCells(alive, BLACK, row, w);
+			renderCells(dying, DARK_GREY, row, w);
+		}
+		else {
+			renderCells(alive & ~survives & ~lonely, RED, row, w);
+			renderCells(alive & lonely, BLUE, row, w);
+			renderCells(alive & survives, GREEN, row, w);
+			renderCells(~alive & ~dying & born & cells, GREY, row, w);
+			renderCells(dying, ORANGE, row, w);
+		}
+	}
+
+	private static long west(Snapshot city, int start, int row, int w) {	// each Cell's neighbour to the left, lined up with the Cell
+		long carry = w > 0 ? city.words[start + w - 1] >>> 63 : (city.westColumn[(row + 1) >>> 6] >>> (row + 1)) & 1;
+		return (city.words[start + w] << 1) | carry;
+	}
+
+	private static long east(Snapshot city, int start, int row, int w) {	// each Cell's neighbour to the right, lined up with the Cell
+		long carry = w < city.wordsPerRow - 1 ? city.words[start + w + 1] << 63 : ((city.eastColumn[(row + 1) >>> 6] >>> (row + 1)) & 1) << ((city.numberOfColumns() - 1) & 63);
+		return (city.words[start + w] >>> 1) | carry;
+	}
+
+	private void renderCells(long bits, int colour, int row, int w) {	// draws the Cells of a word whose bits are set
+		for (; bits != 0; bits &= bits - 1)	fillCell(row, (w << 6) + Long.numberOfTrailingZeros(bits), colour);
+	}
+
+	private void fillCell(int row, int column, int colour) {	// colours in the square (or oval) of a Cell
+		Viewport viewport = rendered.getViewport();
+		int size = viewport.getCellSize();
+		long x = viewport.pixelX((long) rendered.fromColumn + column);
+		long y = viewport.pixelY((long) rendered.fromRow + row);
+		int width = image.getWidth();
+		int left = (int) Math.max(x, 0);
+		int top = (int) Math.max(y, 0);
+		int right = (int) Math.min(x + size, width);
+		int bottom = (int) Math.min(y + size, image.getHeight());
+		if (left >= right || top >= bottom)	return;	// off the image
+
+		if (!isCurvy) {
+			for (int py = top; py < bottom; py++)	Arrays.fill(pixels, py * width + left, py * width + right, colour);
+			return;
+		}
+
+		int full = SAMPLES * SAMPLES;
+		for (int py = top; py < bottom; py++)
+			for (int px = left; px < right; px++) {
+				int coverage = ovalCoverage[(int) (py - y) * size + (int) (px - x)];
+				if (coverage == full)	pixels[py * width + px] = colour;
+				else if (coverage != 0)	pixels[py * width + px] = blend(pixels[py * width + px], colour, coverage, full);
+			}
+	}
+
+	private static int blend(int under, int over, int amount, int outOf) {	// mixes amount / outOf of one colour into another, channel by channel
+		int red = (((over >>> 16) & 0xFF) * amount + ((under >>> 16) & 0xFF) * (outOf - amount)) / outOf;
+		int green = (((over >>> 8) & 0xFF) * amount + ((under >>> 8) & 0xFF) * (outOf - amount)) / outOf;
+		int blue = ((over & 0xFF) * amount + (under & 0xFF) * (outOf - amount)) / outOf;
+		return (red << 16) | (green << 8) | blue;
+	}
+
+	private void makeOval(int size) {	// works out how much of each pixel of a Cell's square the oval in it covers, so its edges can be smoothed
+		ovalSize = size;
+		ovalCoverage = new int[size * size];
+		double radius = size / 2.0;
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				for (int sy = 0; sy < SAMPLES; sy++)
+					for (int sx = 0; sx < SAMPLES; sx++) {
+						double dx = (x + (sx + 0.5) / SAMPLES - radius) / radius;
+						double dy = (y + (sy + 0.5) / SAMPLES - radius) / radius;
+						if (dx * dx + dy * dy <= 1)	ovalCoverage[y * size + x]++;
+					}
+	}
+
+	private void fill(long left, long top, long right, long bottom, int colour) {	// colours in a rectangle of the window's pixels, clipped to the image
+		int width = image.getWidth();
+		int x = (int) Math.max(left, 0);
+		int end = (int) Math.min(right, width);
+		if (x >= end)	return;
+		for (int py = (int) Math.max(top, 0); py < Math.min(bottom, image.getHeight()); py++)	Arrays.fill(pixels, py * width + x, py * width + end, colour);
+	}
+
+	private void fillCells(Snapshot city, int top, int left, int bottom, int right, int colour) {	// colours in the pixels showing some rows and columns of the part of the universe kept
+		Viewport viewport = city.getViewport();
+		fill(viewport.pixelX((long) city.fromColumn + left), viewport.pixelY((long) city.fromRow + top), viewport.pixelX((long) city.fromColumn + right), viewport.pixelY((long) city.fromRow + bottom), colour);
+	}
+
+	private void fillBackground(Snapshot city) {	// white where the universe is, and another colour past its edges (if it has any)
+		Viewport viewport = city.getViewport();
+		if (city.isOpen) {
+			Arrays.fill(pixels, WHITE);
+			return;
+		}
+
+		Arrays.fill(pixels, EDGE);
+		if (city.universeRows > 0 && city.universeColumns > 0)	fill(viewport.pixelX(0), viewport.pixelY(0), viewport.pixelX(city.universeColumns - 1L) + (viewport.isZoomedOut() ? 1 : viewport.getCellSize()), viewport.pixelY(city.universeRows - 1L) + (viewport.isZoomedOut() ? 1 : viewport.getCellSize()), WHITE);
+	}
+
+	private void drawGrid(Snapshot city, int top, int left, int bottom, int right) {	// draws the row and column divider lines between some rows and columns of the part kept
+		Viewport viewport = city.getViewport();
+		if (viewport.getCellSize() < MINIMUM_GRID_CELL_SIZE)	return;
+
+		long x = viewport.pixelX((long) city.fromColumn + left);
+		long y = viewport.pixelY((long) city.fromRow + top);
+		long width = viewport.pixelX((long) city.fromColumn + right) - x;
+		long height = viewport.pixelY((long) city.fromRow + bottom) - y;
+		for (int i = Math.max(1, top); i < Math.min(bottom, city.numberOfRows()); i++) {	// the row divider lines
+			long py = viewport.pixelY((long) city.fromRow + i);
+			fill(x, py, x + width, py + 1, BLACK);
+		}
+
+		for (int j = Math.max(1, left); j < Math.min(right, city.numberOfColumns()); j++) {	// the column divider lines
+			long px = viewport.pixelX((long) city.fromColumn + j);
+			fill(px, y, px + 1, y + height, BLACK);
+		}
+	}
+
+	private void renderDensity(Snapshot city) {	// shades each pixel by the share of the Cells in its square that are alive
+		fillBackground(city);
+		int colour = isMonochrome ? BLACK : GREEN;
+		if (shadedColour != colour) {	// work out the shades of the colour for each share, the square root bringing out thin patterns
+			for (int k = 0; k <= SHADES; k++)	shades[k] = blend(WHITE, colour, MINIMUM_SHADE + (int) ((256 - MINIMUM_SHADE) * Math.sqrt(k / (double) SHADES)), 256);
+			shadedColour = colour;
+		}
+
+		double cellsPerPixel = city.getViewport().getCellsPerPixel();
+		double shadesPerCell = SHADES / (cellsPerPixel * cellsPerPixel);
+		for (int k = 0; k < pixels.length; k++)
+			if (city.density[k] != 0)	pixels[k] = shades[(int) Math.min(SHADES, city.density[k] * shadesPerCell)];
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,276 @@
+package com.convai;
+
+import java.awt.*;	// for drawing
+import java.util.*;	// for the Arrays utility class
+import java.util.concurrent.atomic.AtomicIntegerArray;	// for the moves asked for
+
+public class Players {	// many players (driven by people or bots) on one city, kept as arrays of their fields rather than as a Player object each, and all brought up to date in one pass after each generation
+	// Moves can be asked for from any thread without locking: each player has a slot for the move it wants next, which the pass (on the simulation thread) takes.
+	// The pass puts the moves that are possible at all into a buffer sorted by the Cell moved to, so where several players want the same Cell the first of them gets it, and then makes them, never taking a lock.
+
+	public static final int MAXIMUM_PLAYERS = 1 << 21;	// (a player's index takes 21 bits of a move in the buffer)
+	public static final double MAXIMUM_HEALTH = 100;
+	private static final int PLAYER_BITS = 21;
+	private static final int NO_MOVE = 0;
+
+	private final int[] rows;	// the row of each player
+	private final int[] columns;
+	private final double[] health;	// from 0 to MAXIMUM_HEALTH
+	private final boolean[] isAlive;
+	private final boolean[] isBot;	// true for the players that move themselves, at random
+	private final int[] neighbours;	// the live neighbours of each player's Cell after the last pass, for colouring it
+	private final AtomicIntegerArray moves;	// the move each player asked for since the last pass (see move), or NO_MOVE
+	private final long[] moveBuffer;	// the moves being made, as the Cell moved to and the player's index (see resolveMoves)
+	private final LongSet occupied = new LongSet();	// the Cells live players are on (see key), so no two share one
+	private int numberOfColumns;	// the columns of the city the Cells are numbered by
+	private int size;	// the number of players
+	private long seed = System.nanoTime() | 1;	// for the bots' moves (xorshift)
+
+	public Players(int capacity) {	// makes room for up to capacity players
+		if (capacity < 0 || capacity > MAXIMUM_PLAYERS)	throw new IllegalArgumentException("can't have " + capacity + " players");
+		rows = new int[capacity];
+		columns = new int[capacity];
+		health = new double[capacity];
+		isAlive = new boolean[capacity];
+		isBot = new boolean[capacity];
+		neighbours = new int[capacity];
+		moves = new AtomicIntegerArray(capacity);
+		moveBuffer = new long[capacity];
+	}
+
+	/* Getter Methods */
+
+	public int size() {
+		return size;
+	}
+
+	public int getRow(int player) {
+		return rows[player];
+	}
+
+	public int getColumn(int player) {
+		return columns[player];
+	}
+
+	public double getHealth(int player) {
+		return health[player];
+	}
+
+	public boolean isAlive(int player) {
+		return isAlive[player];
+	}
+
+	public boolean isBot(int player) {
+		return isBot[player];
+	}
+
+	public int countLivePlayers() {
+		int count = 0;
+		for (int p = 0; p < size; p++)
+			if (isAlive[p])	count++;
+
+		return count;
+	}
+
+	/* Setter Methods */
+
+	public void setHealth(int player, double health) {	// between 0 and MAXIMUM_HEALTH, killing the player if it's less than 0 (or bringing it back if it isn't)
+		this.health[player] = Math.max(0, Math.min(health, MAXIMUM_HEALTH));
+		boolean wasAlive = isAlive[player];
+		isAlive[player] = health >= 0;
+		if (wasAlive && !isAlive[player])	occupied.remove(key(rows[player], columns[player]));
+		if (!wasAlive && isAlive[player])	occupied.add(key(rows[player], columns[player]));
+	}
+
+	/* Public methods */
+
+	public int add(Universe city, boolean isBot) {	// puts a new player with full health on a random Cell no other player is on, returning its index (only on the simulation thread, see GoL.change)
+		if (size == rows.length)	throw new IllegalStateException("no room for more than " + size + " players");
+		numberBy(city);
+		int player = size++;
+		this.isBot[player] = isBot;
+		place(city, player);
+		return player;
+	}
+
+	public void respawn(Universe city) {	// brings every player back to full health, moving the bots to random Cells (the first player stays put, unless it's off the city, as after a smaller one is loaded)
+		numberOfColumns = city.numberOfColumns();
+		occupied.clear();
+		for (int p = 0; p < size; p++) {
+			moves.set(p, NO_MOVE);
+			boolean isOnCity = rows[p] < city.numberOfRows() && columns[p] < city.numberOfColumns();
+			if (isBot[p] || !isOnCity || !occupied.add(key(rows[p], columns[p])))	place(city, p);
+			health[p] = MAXIMUM_HEALTH;
+			isAlive[p] = true;
+		}
+	}
+
+	public void bringToLife(Universe city) {	// makes every live player's Cell alive
+		for (int p = 0; p < size; p++)
+			if (isAlive[p])	city.setAlive(rows[p], columns[p], true);
+	}
+
+	public void move(int player, int changeInX, int changeInY) {	// asks for a player to be moved by the next pass (eg. move(p, 0, 1) moves it down, move(p, -1, -1) top-left). Safe on any thread; a move asked for before the last one was made replaces it
+		if (changeInX < -1 || changeInX > 1 || changeInY < -1 || changeInY > 1)	throw new IllegalArgumentException("a player moves one Cell at a time, not " + changeInX + ", " + changeInY);
+		moves.set(player, (changeInY + 1) * 3 + changeInX + 2);
+	}
+
+	public void resolveMoves(Universe city) {	// makes the moves asked for (only on the simulation thread). A player moves onto a dead Cell no other player is on, leaving a dead one behind
+		numberBy(city);
+		int count = 0;
+		for (int p = 0; p < size; p++) {
+			int move = moves.getAndSet(p, NO_MOVE);
+			if (move == NO_MOVE || !isAlive[p])	continue;
+
+			int row = rows[p] + (move - 1) / 3 - 1;
+			int column = columns[p] + (move - 1) % 3 - 1;
+			if (row < 0 || row >= city.numberOfRows() || column < 0 || column >= city.numberOfColumns() || (row == rows[p] && column == columns[p]))	continue;	// out of bounds
+			if (city.isAlive(row, column) || occupied.contains(key(row, column)))	continue;	// can't move onto a live Cell or another player
+
+			moveBuffer[count++] = key(row, column) << PLAYER_BITS | p;
+		}
+
+		Arrays.sort(moveBuffer, 0, count);	// so the moves onto each Cell are together, the first player's first
+		long lastCell = -1;
+		for (int m = 0; m < count; m++) {
+			long cell = moveBuffer[m] >>> PLAYER_BITS;
+			if (cell == lastCell)	continue;	// someone got there first
+			lastCell = cell;
+
+			int p = (int) (moveBuffer[m] & ((1 << PLAYER_BITS) - 1));	// (the Cell moved to was dead and nobody's, and the one left was someone's, so the moves made never get in each other's way)
+			int row = (int) (cell / numberOfColumns);
+			int column = (int) (cell % numberOfColumns);
+			city.setAlive(row, column, true);
+			city.setAlive(rows[p], columns[p], false);
+			occupied.remove(key(rows[p], columns[p]));
+			occupied.add(cell);
+			rows[p] = row;
+			columns[p] = column;
+		}
+	}
+
+	public void update(Universe city, double healing, double harm) {	// the pass after each generation (only on the simulation thread): the bots pick their moves, the moves are made, then each player gains healing health if its Cell would survive where it is and loses harm if not
+		for (int p = 0; p < size; p++)
+			if (isBot[p] && isAlive[p] && (nextRandom() & 1) == 0)	moves.compareAndSet(p, NO_MOVE, 1 + (int) ((nextRandom() >>> 1) % 9));	// half the time, one of the eight ways (or staying put), unless it was asked to move (eg. by a SpectatorServer's client)
+
+		resolveMoves(city);
+
+		Rule rule = city.getRule();
+		for (int p = 0; p < size; p++) {
+			if (!isAlive[p])	continue;
+			neighbours[p] = city.countAliveNeighbours(rows[p], columns[p]);
+			setHealth(p, health[p] + (rule.survives(neighbours[p]) ? healing : -harm));
+		}
+	}
+
+	public View view(Rule rule) {	// a copy of where the players are and how they're doing, to draw on another thread
+		return new View(this, rule);
+	}
+
+	/* Private methods */
+
+	private void place(Universe city, int player) {	// puts a player on a random Cell no other player is on (giving up after a while on a crowded city)
+		int row = 0;
+		int column = 0;
+		for (int attempt = 0; attempt < 1000; attempt++) {
+			row = (int) (Math.random() * city.numberOfRows());
+			column = (int) (Math.random() * city.numberOfColumns());
+			if (!occupied.contains(key(row, column)) && !city.isAlive(row, column))	break;
+		}
+		rows[player] = row;
+		columns[player] = column;
+		health[player] = MAXIMUM_HEALTH;
+		isAlive[player] = occupied.add(key(row, column));
+		moves.set(player, NO_MOVE);
+	}
+
+	private long key(int row, int column) {	// the number of a Cell, in the order of the rows
+		return (long) row * numberOfColumns + column;
+	}
+
+	private void numberBy(Universe city) {	// numbers the Cells by the city's columns, renumbering the ones the players are on if it was resized
+		if (city.numberOfColumns() == numberOfColumns)	return;
+		numberOfColumns = city.numberOfColumns();
+		occupied.clear();
+		for (int p = 0; p < size; p++)
+			if (isAlive[p])	occupied.add(key(rows[p], columns[p]));
+	}
+
+	private long nextRandom() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return seed;
+	}
+
+	public static final class View {	// where the players were after a pass, and how they were doing. It never changes, so it can be handed between threads
+
+		private final int size;
+		private final int[] rows;
+		private final int[] columns;
+		private final double[] health;
+		private final boolean[] isAlive;
+		private final int[] neighbours;
+		private final Rule rule;
+
+		private View(Players players, Rule rule) {
+			size = players.size;
+			rows = Arrays.copyOf(players.rows, size);
+			columns = Arrays.copyOf(players.columns, size);
+			health = Arrays.copyOf(players.health, size);
+			isAlive = Arrays.copyOf(players.isAlive, size);
+			neighbours = Arrays.copyOf(players.neighbours, size);
+			this.rule = rule;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int getRow(int player) {
+			return rows[player];
+		}
+
+		public int getColumn(int player) {
+			return columns[player];
+		}
+
+		public double getHealth(int player) {
+			return health[player];
+		}
+
+		public boolean isAlive(int player) {
+			return isAlive[player];
+		}
+
+		public Color colourOf(int player, boolean isMonochrome) {	// coloured by what the rule does to its Cell next generation, as a Cell would be
+			Cell cell = new Cell(1, 1);
+			cell.isAlive = isAlive[player];
+			cell.colourCell(rule, neighbours[player], isMonochrome);
+			return cell.color;
+		}
+
+		public void render(Graphics g, Viewport viewport, boolean isCurvy, boolean isMonochrome) {	// draws the live players the window shows, each shrinking with its health
+			int cellSize = viewport.getCellSize();
+			Cell cell = new Cell(1, 1);	// to colour each player with
+			for (int p = 0; p < size; p++) {
+				if (!isAlive[p] || rows[p] < viewport.firstRow() || rows[p] > viewport.lastRow() || columns[p] < viewport.firstColumn() || columns[p] > viewport.lastColumn())	continue;	// not on show
+
+				int x = (int) viewport.pixelX(columns[p]);
+				int y = (int) viewport.pixelY(rows[p]);
+				g.setColor(Color.white);
+				g.fillRect(x, y, cellSize, cellSize);
+
+				cell.isAlive = true;
+				cell.colourCell(rule, neighbours[p], isMonochrome);
+				g.setColor(cell.color);
+				int diameter = (int) (health[p] / MAXIMUM_HEALTH * cellSize);
+				int inset = (cellSize - diameter) / 2;
+				if (isCurvy)	g.fillOval(x + inset, y + inset, diameter, diameter);
+				else	g.fillRect(x + inset, y + inset, diameter, diameter);
+			}
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.convai;
+
+final class PopulationPyramid {	// the number of live Cells in every tile of a City, then in every square of four of those, and so on up to the whole City, kept up to date a tile at a time (like mipmaps of a texture)
+	// A node at level k covers 2^k by 2^k tiles, so changing a tile's count changes one node a level, and any rectangle is made up of a few nodes a level.
+
+	private final int[][] counts;	// the counts of each level, row after row (level 0 is the tiles, the last level a single node)
+	private final int[] numberOfRows;	// the nodes down and across each level
+	private final int[] numberOfColumns;
+
+	PopulationPyramid(int numberOfTileRows, int numberOfTileColumns) {	// a pyramid over that many tiles, all empty
+		int levels = 1;
+		for (int rows = numberOfTileRows, columns = numberOfTileColumns; rows > 1 || columns > 1; rows = (rows + 1) >> 1, columns = (columns + 1) >> 1)	levels++;
+
+		counts = new int[levels][];
+		numberOfRows = new int[levels];
+		numberOfColumns = new int[levels];
+		int rows = Math.max(1, numberOfTileRows);
+		int columns = Math.max(1, numberOfTileColumns);
+		for (int level = 0; level < levels; level++, rows = (rows + 1) >> 1, columns = (columns + 1) >> 1) {
+			numberOfRows[level] = rows;
+			numberOfColumns[level] = columns;
+			counts[level] = new int[rows * columns];
+		}
+	}
+
+	int numberOfLevels() {
+		return counts.length;
+	}
+
+	int numberOfRows(int level) {
+		return numberOfRows[level];
+	}
+
+	int numberOfColumns(int level) {
+		return numberOfColumns[level];
+	}
+
+	int count(int level, int row, int column) {	// the live Cells under a node (none if it's past the edge)
+		if (row < 0 || row >= numberOfRows[level] || column < 0 || column >= numberOfColumns[level])	return 0;
+		return counts[level][row * numberOfColumns[level] + column];
+	}
+
+	int total() {	// the live Cells in the whole City
+		return counts[counts.length - 1][0];
+	}
+
+	void set(int tileRow, int tileColumn, int count) {	// a tile's count has changed, so change the nodes above it by the same amount
+		add(tileRow, tileColumn, count - counts[0][tileRow * numberOfColumns[0] + tileColumn]);
+	}
+
+	void add(int tileRow, int tileColumn, int change) {
+		if (change == 0)	return;
+		for (int level = 0; level < counts.length; level++, tileRow >>= 1, tileColumn >>= 1)	counts[level][tileRow * numberOfColumns[level] + tileColumn] += change;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package com.convai;
+
+import java.io.*;	// for serialization
+import java.util.*;	// for the Arrays utility class
+
+public final class Rule implements Serializable {	// the rule a universe evolves by: how many live neighbours bring a Cell to life and keep one alive, and (for Generations rules) how many states a Cell goes through dying
+	// Compiled into bitwise selectors over the neighbour counts LifeKernel adds up, so any rule steps 64 Cells at a time just as Conway's does.
+	// An extended rule counts the neighbours in a bigger square (Moore) or diamond (von Neumann) neighbourhood, as Larger than Life does, and a City counts them from a SummedAreaTable instead.
+
+	static final long serialVersionUID = 1L;
+	public static final Rule CONWAY = parse("B3/S23");	// Conway's Game of Life
+	public static final Rule HIGHLIFE = parse("B36/S23");	// has a replicator
+	public static final Rule DAY_AND_NIGHT = parse("B3678/S34678");	// live and dead Cells behave the same
+	public static final Rule SEEDS = parse("B2/S");	// every Cell dies straight away
+	public static final Rule BRIANS_BRAIN = parse("B2/S/C3");	// a Generations rule: every Cell spends a generation dying
+	public static final Rule BUGS = parse("R5,C0,M1,S34..58,B34..45,NM");	// Larger than Life, with gliders of its own
+	public static final int MAXIMUM_RANGE = 16;	// the furthest a neighbourhood reaches (less than a City tile, so a change only ever reaches the tiles around it)
+
+	private static final int CONWAY_BIRTHS = 1 << 3;
+	private static final int CONWAY_SURVIVALS = 1 << 2 | 1 << 3;
+
+	private final int births;	// bit n set if a dead Cell with n live neighbours comes to life
+	private final int survivals;	// bit n set if a live Cell with n live neighbours stays alive
+	private final int numberOfStates;	// 2 for a Life-like rule, more for a Generations one (alive, dead and the dying states in between)
+	private final int range;	// how far the neighbourhood reaches (1 for the eight neighbours around a Cell)
+	private final boolean isVonNeumann;	// true if the neighbourhood is a diamond rather than a square
+	private final long[] extendedBirths;	// births and survivals for an extended rule, as bit sets (null otherwise)
+	private final long[] extendedSurvivals;
+	private final transient int lonely;	// bit n set if a Cell with n live neighbours has too few of them to survive
+	private final transient int fewestToSurvive;	// the fewest live neighbours that keep a Cell alive (past the most it can have, if none do)
+	private final transient boolean isConway;	// (LifeKernel has an adder of its own for Conway's rule)
+
+	public Rule(int births, int survivals, int numberOfStates) {	// a rule from sets of neighbour counts (bit n for n neighbours)
+		this(1, false, new long[] {births}, new long[] {survivals}, numberOfStates);
+	}
+
+	public Rule(int range, boolean isVonNeumann, int fewestToBeBorn, int mostToBeBorn, int fewestToSurvive, int mostToSurvive, int numberOfStates) {	// a Larger than Life rule, from the ranges of neighbour counts (not counting the Cell itself) that bring a Cell to life and keep one alive
+		this(range, isVonNeumann, between(fewestToBeBorn, mostToBeBorn), between(fewestToSurvive, mostToSurvive), numberOfStates);
+	}
+
+	private Rule(int range, boolean isVonNeumann, long[] births, long[] survivals, int numberOfStates) {
+		if (range < 1 || range > MAXIMUM_RANGE)	throw new IllegalArgumentException("can't have a range of " + range);
+		if (numberOfStates < 2 || numberOfStates > 256)	throw new IllegalArgumentException("can't have " + numberOfStates + " states");
+		this.range = range;
+		this.isVonNeumann = isVonNeumann;
+		this.numberOfStates = numberOfStates;
+		int numberOfNeighbours = numberOfNeighbours(range, isVonNeumann);
+		if (highestCount(births) > numberOfNeighbours || highestCount(survivals) > numberOfNeighbours)	throw new IllegalArgumentException("a Cell has at most " + numberOfNeighbours + " neighbours");
+
+		if (range == 1 && !isVonNeumann) {	// the usual eight neighbours
+			this.births = (int) births[0];
+			this.survivals = (int) survivals[0];
+			extendedBirths = null;
+			extendedSurvivals = null;
+		}
+		else {
+			this.births = 0;
+			this.survivals = 0;
+			extendedBirths = births.clone();
+			extendedSurvivals = survivals.clone();
+		}
+		fewestToSurvive = lowestCount(survivals, numberOfNeighbours + 1);
+		lonely = this.survivals == 0 ? 0x1FF : Integer.lowestOneBit(this.survivals) - 1;
+		isConway = this.births == CONWAY_BIRTHS && this.survivals == CONWAY_SURVIVALS && numberOfStates == 2 && !isExtended();
+	}
+
+	public static Rule parse(String rule) {	// reads a rulestring: B3/S23 (or S/B, as in 23/3), with the number of states for a Generations rule after it (B2/S/C3, or 23/3/3) and a V on the end for the four nearest neighbours (B2/S013V), or a Larger than Life one (R5,C0,M1,S34..58,B34..45,NM)
+		String trimmed = rule.trim().toUpperCase();
+		if (trimmed.startsWith("R"))	return parseLargerThanLife(trimmed, rule);
+		boolean isVonNeumann = trimmed.endsWith("V");
+		if (isVonNeumann)	trimmed = trimmed.substring(0, trimmed.length() - 1);
+		String[] parts = trimmed.split("/", -1);
+		if (parts.length < 2 || parts.length > 3)	throw new IllegalArgumentException("not a rule: " + rule);
+
+		int births = -1;
+		int survivals = -1;
+		int numberOfStates = 2;
+		for (int k = 0; k < parts.length; k++) {
+			String part = parts[k].trim();
+			char tag = part.isEmpty() ? ' ' : part.charAt(0);
+			if (tag == 'B' && births == -1)	births = counts(part.substring(1), rule);
+			else if (tag == 'S' && survivals == -1)	survivals = counts(part.substring(1), rule);
+			else if ((tag == 'C' || tag == 'G') && k == 2)	numberOfStates = states(part.substring(1), rule);
+			else if (k == 2)	numberOfStates = states(part, rule);
+			else if (k == 0 && survivals == -1)	survivals = counts(part, rule);	// S/B, the old way round
+			else if (k == 1 && births == -1)	births = counts(part, rule);
+			else	throw new IllegalArgumentException("not a rule: " + rule);
+		}
+		if (births == -1 || survivals == -1)	throw new IllegalArgumentException("not a rule: " + rule);
+
+		return new Rule(1, isVonNeumann, new long[] {births}, new long[] {survivals}, numberOfStates);
+	}
+
+	private static Rule parseLargerThanLife(String parts, String rule) {	// Rr,Cc,Mm,Smin..max,Bmin..max,Nn: the range, the number of states (0 or 2 for just alive or dead), whether the Cell itself counts, the counts to survive and be born (inclusive), and the neighbourhood (M for Moore, N for von Neumann)
+		int range = -1;
+		int numberOfStates = 2;
+		boolean countsItself = false;
+		boolean isVonNeumann = false;
+		int[] survivals = null;
+		int[] births = null;
+		for (String part : parts.split(",")) {
+			part = part.trim();
+			if (part.isEmpty())	throw new IllegalArgumentException("not a rule: " + rule);
+			String value = part.substring(1).trim();
+			switch (part.charAt(0)) {
+				case 'R':	range = states(value, rule);	break;
+				case 'C':	numberOfStates = Math.max(states(value, rule), 2);	break;
+				case 'M':	countsItself = states(value, rule) != 0;	break;
+				case 'S':	survivals = interval(value, rule);	break;
+				case 'B':	births = interval(value, rule);	break;
+				case 'N':
+					if (!value.equals("M") && !value.equals("N"))	throw new IllegalArgumentException("not a neighbourhood: " + rule);
+					isVonNeumann = value.equals("N");
+					break;
+				default:	throw new IllegalArgumentException("not a rule: " + rule);
+			}
+		}
+		if (range == -1 || survivals == null || births == null)	throw new IllegalArgumentException("not a rule: " + rule);
+
+		int itself = countsItself ? 1 : 0;	// (a live Cell counted itself, so it has one neighbour fewer than its count)
+		return new Rule(range, isVonNeumann, births[0], births[1], survivals[0] - itself, survivals[1] - itself, numberOfStates);
+	}
+
+	/* Getter Methods */
+
+	public boolean isBorn(int numberOfNeighbours) {	// true if a dead Cell with this many live neighbours comes to life
+		if (extendedBirths != null)	return contains(extendedBirths, numberOfNeighbours);
+		return (births & (1 << numberOfNeighbours)) != 0;
+	}
+
+	public boolean survives(int numberOfNeighbours) {	// true if a live Cell with this many live neighbours stays alive
+		if (extendedSurvivals != null)	return contains(extendedSurvivals, numberOfNeighbours);
+		return (survivals & (1 << numberOfNeighbours)) != 0;
+	}
+
+	public boolean isLonely(int numberOfNeighbours) {	// true if a live Cell with this many live neighbours dies of loneliness (rather than overcrowding)
+		return numberOfNeighbours < fewestToSurvive;
+	}
+
+	public int getRange() {
+		return range;
+	}
+
+	public boolean isVonNeumann() {
+		return isVonNeumann;
+	}
+
+	public boolean isExtended() {	// true if the neighbourhood isn't the eight Cells around a Cell, so the neighbours can't be added up 64 Cells at a time
+		return extendedBirths != null;
+	}
+
+	public int getNumberOfNeighbours() {	// the number of Cells in the neighbourhood, not counting the Cell itself
+		return numberOfNeighbours(range, isVonNeumann);
+	}
+
+	public int getNumberOfStates() {
+		return numberOfStates;
+	}
+
+	public boolean isGenerations() {	// true if Cells go through dying states before they're dead
+		return numberOfStates > 2;
+	}
+
+	public boolean isBornFromNothing() {	// true if Cells come to life with no neighbours at all, so empty space doesn't stay empty
+		return isBorn(0);
+	}
+
+	public boolean isConway() {
+		return isConway;
+	}
+
+	/* Public methods */
+
+	public boolean equals(Object other) {
+		if (!(other instanceof Rule))	return false;
+		Rule rule = (Rule) other;
+		return births == rule.births && survivals == rule.survivals && numberOfStates == rule.numberOfStates && range == rule.range && isVonNeumann == rule.isVonNeumann
+			&& Arrays.equals(extendedBirths, rule.extendedBirths) && Arrays.equals(extendedSurvivals, rule.extendedSurvivals);
+	}
+
+	public int hashCode() {
+		return (((births * 512 + survivals) * 257 + numberOfStates) * 31 + range * 2 + (isVonNeumann ? 1 : 0)) * 31 + Arrays.hashCode(extendedBirths) * 17 + Arrays.hashCode(extendedSurvivals);
+	}
+
+	public String toString() {	// the rulestring, as B3/S23 (with /C and the number of states for a Generations rule, and a V for the four nearest neighbours), or R5,C0,M0,S33..57,B34..45,NM for a Larger than Life one
+		int numberOfNeighbours = getNumberOfNeighbours();
+		if (range > 1) {
+			StringBuilder rule = new StringBuilder("R").append(range).append(",C").append(isGenerations() ? numberOfStates : 0).append(",M0");
+			rule.append(",S").append(interval(extendedSurvivals));
+			rule.append(",B").append(interval(extendedBirths));
+			return rule.append(isVonNeumann ? ",NN" : ",NM").toString();
+		}
+
+		StringBuilder rule = new StringBuilder("B");
+		for (int n = 0; n <= numberOfNeighbours; n++)
+			if (isBorn(n))	rule.append(n);
+		rule.append("/S");
+		for (int n = 0; n <= numberOfNeighbours; n++)
+			if (survives(n))	rule.append(n);
+		if (isGenerations())	rule.append("/C").append(numberOfStates);
+		if (isVonNeumann)	rule.append('V');
+		return rule.toString();
+	}
+
+	/* Package methods */
+
+	long next(long alive, long ones, long twos, long fours, long eights) {	// which of 64 Cells are alive next generation, from which are alive now and the bits of their neighbour counts (dying Cells count as dead, but aren't to be born). These only work for a rule that isn't extended
+		return (alive & select(survivals, ones, twos, fours, eights)) | (~alive & select(births, ones, twos, fours, eights));
+	}
+
+	long births(long ones, long twos, long fours, long eights) {	// which of 64 Cells have the neighbours to come to life
+		return select(births, ones, twos, fours, eights);
+	}
+
+	long survivals(long ones, long twos, long fours, long eights) {	// which of 64 Cells have the neighbours to stay alive
+		return select(survivals, ones, twos, fours, eights);
+	}
+
+	long lonely(long ones, long twos, long fours, long eights) {	// which of 64 Cells have too few neighbours to stay alive
+		return select(lonely, ones, twos, fours, eights);
+	}
+
+	/* Private methods */
+
+	private static long select(int counts, long ones, long twos, long fours, long eights) {	// the bits whose neighbour count is in a set of counts, by looking it up in the set's truth table with a tree of multiplexers (only 8 needs the eights bit, as it's the only count that sets it)
+		long zero = all(counts, 0);
+		long two = all(counts, 2);
+		long four = all(counts, 4);
+		long six = all(counts, 6);
+		long belowTwo = zero ^ (ones & (zero ^ all(counts, 1)));
+		long belowFour = two ^ (ones & (two ^ all(counts, 3)));
+		long belowSix = four ^ (ones & (four ^ all(counts, 5)));
+		long belowEight = six ^ (ones & (six ^ all(counts, 7)));
+		long belowFourAll = belowTwo ^ (twos & (belowTwo ^ belowFour));
+		long fourToEight = belowSix ^ (twos & (belowSix ^ belowEight));
+		long belowEightAll = belowFourAll ^ (fours & (belowFourAll ^ fourToEight));
+		return (belowEightAll & ~eights) | (eights & all(counts, 8));
+	}
+
+	private static long all(int counts, int n) {	// every bit set if n is in a set of counts, else none
+		return -((counts >>> n) & 1L);
+	}
+
+	private static int numberOfNeighbours(int range, boolean isVonNeumann) {	// the Cells within range of a Cell, not counting itself
+		return isVonNeumann ? 2 * range * (range + 1) : (2 * range + 1) * (2 * range + 1) - 1;
+	}
+
+	private static long[] between(int fewest, int most) {	// the set of counts from fewest to most
+		long[] counts = new long[Math.max(most, 0) / 64 + 1];
+		for (int n = Math.max(fewest, 0); n <= most; n++)	counts[n >>> 6] |= 1L << n;
+		return counts;
+	}
+
+	private static boolean contains(long[] counts, int n) {
+		return n >>> 6 < counts.length && (counts[n >>> 6] & (1L << n)) != 0;
+	}
+
+	private static int lowestCount(long[] counts, int none) {	// the lowest count in a set, or none if it's empty
+		for (int k = 0; k < counts.length; k++)
+			if (counts[k] != 0)	return k * 64 + Long.numberOfTrailingZeros(counts[k]);
+		return none;
+	}
+
+	private static int highestCount(long[] counts) {	// the highest count in a set, or -1 if it's empty
+		for (int k = counts.length - 1; k >= 0; k--)
+			if (counts[k] != 0)	return k * 64 + 63 - Long.numberOfLeadingZeros(counts[k]);
+		return -1;
+	}
+
+	private static String interval(long[] counts) {	// a set of counts as fewest..most (a Larger than Life rule's sets are always a single run, and an empty one is written backwards)
+		int fewest = lowestCount(counts, -1);
+		if (fewest == -1)	return "1..0";
+		return fewest + ".." + highestCount(counts);
+	}
+
+	private static int[] interval(String value, String rule) {	// fewest..most
+		int dots = value.indexOf("..");
+		if (dots == -1)	throw new IllegalArgumentException("not a rule: " + rule);
+		return new int[] {states(value.substring(0, dots), rule), states(value.substring(dots + 2), rule)};
+	}
+
+	private static int counts(String digits, String rule) {	// a set of neighbour counts from its digits
+		int counts = 0;
+		for (int k = 0; k < digits.length(); k++) {
+			char digit = digits.charAt(k);
+			if (digit < '0' || digit > '8')	throw new IllegalArgumentException("not a rule: " + rule);
+			counts |= 1 << (digit - '0');
+		}
+		return counts;
+	}
+
+	private static int states(String number, String rule) {
+		try {
+			return Integer.parseInt(number.trim());
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("not a rule: " + rule);
+		}
+	}
+
+	private Object readResolve() {	// works out the rest again
+		if (extendedBirths != null)	return new Rule(range, isVonNeumann, extendedBirths, extendedSurvivals, numberOfStates);
+		return new Rule(1, false, new long[] {births}, new long[] {survivals}, numberOfStates);
+	}
+
+}
\ No newline at end of file
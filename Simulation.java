@@ -0,0 +1,145 @@
+package com.convai;
+
+public class Simulation {	// a universe evolving one generation after another, with nothing to do with drawing it. GoL shows one on screen, GoLBatch runs one flat out
+
+	private Universe city;	// the universe being evolved
+	private final ParallelEngine engine;	// steps the city, spreading large ones across all the cores
+	private HashLife hashLife;	// jumps the city far ahead when fast-forwarding (made the first time it's needed)
+	private final CycleDetector cycleDetector = new CycleDetector();	// notices when the city starts repeating itself
+	private long generation = 0;	// the number of generations evolved
+	private long lastHash;	// the hash of the city after the last generation, to tell whether it has been changed by hand since
+	private History history;	// the recent generations, to rewind to (null to not keep them)
+	private Metrics metrics;	// measures each step (null to not measure them)
+
+	public Simulation(Universe city) {
+		this(city, new ParallelEngine());
+	}
+
+	public Simulation(Universe city, ParallelEngine engine) {
+		this.city = city;
+		this.engine = engine;
+	}
+
+	/* Getter Methods */
+
+	public Universe getCity() {
+		return city;
+	}
+
+	public ParallelEngine getEngine() {
+		return engine;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public int getPopulation() {	// the number of live Cells
+		return city.getNumberOfLiveCells();
+	}
+
+	public boolean isCycling() {	// true once the city has gone back to a pattern it was in before
+		return cycleDetector.isCycling();
+	}
+
+	public long getCycleStart() {	// the first generation of the cycle (-1 if none has been found)
+		return cycleDetector.getCycleStart();
+	}
+
+	public History getHistory() {
+		return history;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public long getPeriod() {	// the number of generations the cycle takes to come round (1 if the city is static, 0 if no cycle has been found)
+		return cycleDetector.getPeriod();
+	}
+
+	/* Setter Methods */
+
+	public void setCity(Universe city) {	// evolves another universe from now on, carrying on the generation count
+		this.city = city;
+		cycleDetector.reset();
+		if (history != null)	history.clear();	// (there's no going back to another universe)
+	}
+
+	public void setGeneration(long generation) {
+		this.generation = generation;
+		cycleDetector.reset();
+		if (history != null)	history.clear();
+	}
+
+	public void setHistory(History history) {	// keeps the generations from now on in a history, to rewind to (null to stop)
+		this.history = history;
+	}
+
+	public void setMetrics(Metrics metrics) {	// measures the steps from now on (null to stop)
+		this.metrics = metrics;
+	}
+
+	/* Public methods */
+
+	public boolean step() {	// moves the city on a generation. Returns true if the new generation is the first to repeat an earlier one (so once for each cycle found, however long it carries on cycling)
+		boolean isEdited = city.getHash() != lastHash;
+		if (isEdited) {	// it was changed by hand, so what came before doesn't count
+			cycleDetector.reset();
+			cycleDetector.record(generation, city.getHash());
+		}
+		if (history != null && (isEdited || history.getLatestGeneration() != generation))	history.record(city, generation);	// keep it as it is now, changes and all
+
+		Metrics metrics = this.metrics;
+		int population = metrics != null ? city.getNumberOfLiveCells() : 0;
+		long start = metrics != null ? metrics.startStep() : 0;
+		engine.step(city);
+		if (metrics != null)	metrics.endStep(start);
+		generation++;
+		lastHash = city.getHash();
+		if (history != null)	history.record(city, generation);
+		if (metrics != null)	metrics.counted(generation, population, city.getNumberOfLiveCells(), history != null ? history.getLatestChanges() : -1);
+		boolean wasCycling = cycleDetector.isCycling();
+		return cycleDetector.record(generation, lastHash) && !wasCycling;
+	}
+
+	public long run(long generations, boolean stopOnCycle) {	// steps the city on as fast as it can go, stopping early at a cycle if asked (one already found, it carries on past). Returns the number of generations stepped
+		for (long i = 0; i < generations; i++)
+			if (step() && stopOnCycle)	return i + 1;
+
+		return generations;
+	}
+
+	public void fastForward(long generations) {	// jumps an unbounded city ahead by a number of generations at once (any other is stepped a generation at a time, ending up just as stepping would)
+		Rule rule = city.getRule();
+		boolean isOpen = city instanceof SparseUniverse && ((SparseUniverse) city).isUnbounded() && !city.isPeriodic();
+		if (rule.isGenerations() || rule.isBornFromNothing() || rule.isExtended() || !isOpen) {	// HashLife can't follow these rules, and runs an endless plane, so it would carry on past the edges of a bounded or periodic city rather than stopping or wrapping there
+			run(generations, false);
+			return;
+		}
+
+		if (history != null && (city.getHash() != lastHash || history.getLatestGeneration() != generation))	history.record(city, generation);
+		if (hashLife == null || !hashLife.getRule().equals(rule))	hashLife = new HashLife(rule);
+		hashLife.readCity(city);
+		hashLife.advance(generations);
+		hashLife.writeCity(city);
+		generation += generations;
+		lastHash = city.getHash();	// (so the next step doesn't take the jump for an edit)
+		cycleDetector.reset();	// (the generations jumped over weren't seen, so nothing from before them can be matched)
+		cycleDetector.record(generation, lastHash);
+		if (history != null)	history.record(city, generation);	// (the generations jumped over can't be rewound to)
+	}
+
+	public boolean rewind(long generation) {	// takes the city back (or on) to a generation kept in the history. Returns false if it wasn't kept
+		if (history == null || !history.seek(city, generation))	return false;
+		this.generation = generation;
+		lastHash = city.getHash();
+		cycleDetector.reset();
+		return true;
+	}
+
+	public void forgetCycle() {	// forgets the generations so far, so a cycle already found doesn't count any more
+		cycleDetector.reset();
+	}
+
+}
\ No newline at end of file
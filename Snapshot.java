@@ -0,0 +1,264 @@
+package com.convai;
+
+public final class Snapshot {	// a copy of the part of a universe a Viewport shows, at one generation, which never changes once made, so it can be handed from the thread evolving the universe to the one drawing it
+	// Zoomed in, the Cells are kept from the start of the word holding the window's first column to its last column, along with the row above, the row below and the columns either side: wrapped round if periodic, empty if bounded, or the real ones off the edge of an endless universe. So every Cell on show has all its neighbours.
+	// Zoomed out, only the number of live Cells in each pixel's square is kept. Either way, only what's on show is copied, so a snapshot costs what the window shows rather than what the universe holds.
+
+	final Viewport viewport;	// the window it was taken for
+	final int fromRow;	// the universe row kept as row 0
+	final int fromColumn;	// the universe column kept as column 0 (always the start of a word)
+	final int numberOfRows;	// the rows kept (none when zoomed out)
+	final int numberOfColumns;	// the columns kept
+	final int wordsPerRow;	// the number of words holding a single row
+	final long[] words;	// rows -1 to numberOfRows, one after another, packed the way Universe.readRow packs them
+	final long[] westColumn;	// the Cells in column -1, bit row + 1 of the words for each row from -1 to numberOfRows
+	final long[] eastColumn;	// the Cells in column numberOfColumns, likewise
+	final long[] dying;	// under a Generations rule, the dying Cells of rows 0 to numberOfRows - 1, packed the same way (empty otherwise, or when zoomed out)
+	final int[] counts;	// under an extended rule, the live neighbours of each Cell of rows 0 to numberOfRows - 1 in the rule's neighbourhood, row after row, as they reach past the Cells kept (null otherwise, or when zoomed out)
+	final int[] density;	// zoomed out, the live Cells in the square each pixel of the window shows, row after row (null when zoomed in)
+	final int universeRows;	// the rows and columns of the universe
+	final int universeColumns;
+	final boolean isOpen;	// true if Cells live past the universe's rows and columns
+	final Rule rule;	// the rule the universe evolves by
+	private final long generation;
+	private final int population;
+	private final long hash;
+
+	public Snapshot(Universe city, long generation) {	// copies the whole of a universe, drawn at its own Cell size
+		this(city, generation, new Viewport(0, 0, city.numberOfColumns() * city.cellWidth(), city.numberOfRows() * city.cellWidth(), city.cellWidth(), 1));
+	}
+
+	public Snapshot(Universe city, long generation, Viewport viewport) {	// copies what a window shows of a universe as it is now (only call it from the thread changing the universe)
+		this.viewport = viewport;
+		this.generation = generation;
+		population = city.getNumberOfLiveCells();
+		hash = city.getHash();
+		rule = city.getRule();
+		universeRows = city.numberOfRows();
+		universeColumns = city.numberOfColumns();
+		boolean isPeriodic = city.isPeriodic();
+		isOpen = city instanceof SparseUniverse && ((SparseUniverse) city).isUnbounded() && !isPeriodic;
+
+		long firstRow = viewport.firstRow();
+		long lastRow = viewport.lastRow();
+		long firstColumn = viewport.firstColumn();
+		long lastColumn = viewport.lastColumn();
+		if (!isOpen) {	// nothing to see past the edges
+			firstRow = Math.max(firstRow, 0);
+			lastRow = Math.min(lastRow, universeRows - 1);
+			firstColumn = Math.max(firstColumn, 0);
+			lastColumn = Math.min(lastColumn, universeColumns - 1);
+		}
+		firstColumn &= ~63L;
+		fromRow = (int) Math.max(Integer.MIN_VALUE / 2, Math.min(firstRow, Integer.MAX_VALUE / 2));
+		fromColumn = (int) Math.max(Integer.MIN_VALUE / 2, Math.min(firstColumn, Integer.MAX_VALUE / 2)) & ~63;
+		int rows = (int) Math.max(0, Math.min(lastRow - fromRow + 1, Integer.MAX_VALUE / 2));
+		int columns = (int) Math.max(0, Math.min(lastColumn - fromColumn + 1, Integer.MAX_VALUE / 2));
+
+		if (viewport.isZoomedOut()) {
+			numberOfRows = 0;
+			numberOfColumns = 0;
+			wordsPerRow = 0;
+			words = new long[0];
+			westColumn = new long[1];
+			eastColumn = new long[1];
+			dying = new long[0];
+			counts = null;
+			density = new int[viewport.getWidth() * viewport.getHeight()];
+			int cellsPerPixel = viewport.getCellsPerPixel();
+			if (isOpen)	((SparseUniverse) city).forEachLiveCell(key -> countCell(SparseUniverse.row(key), SparseUniverse.column(key)));
+			else if (city instanceof City && cellsPerPixel >= City.TILE_COLUMNS && (cellsPerPixel & (cellsPerPixel - 1)) == 0)	countNodes(((City) city).population());	// whole tiles a pixel
+			else {
+				long[] row = new long[(columns + 63) >>> 6];
+				for (int i = fromRow; i < fromRow + rows; i++) {
+					city.readRow(i, fromColumn, row);
+					countRow(i, row);
+				}
+			}
+			return;
+		}
+
+		numberOfRows = rows;
+		numberOfColumns = columns;
+		wordsPerRow = (numberOfColumns + 63) >>> 6;
+		density = null;
+		words = new long[(numberOfRows + 2) * wordsPerRow];
+		westColumn = new long[(numberOfRows + 2 + 63) >>> 6];
+		eastColumn = new long[westColumn.length];
+		dying = new long[rule.isGenerations() ? numberOfRows * wordsPerRow : 0];
+		counts = rule.isExtended() && city instanceof City ? countNeighbours((City) city) : null;	// (only a City follows extended rules, and it's never open)
+		if (isOpen) {	// go through the live Cells, as there may be far fewer of them than Cells on show
+			((SparseUniverse) city).forEachLiveCell(key -> {
+				long i = (long) SparseUniverse.row(key) - fromRow;
+				long j = (long) SparseUniverse.column(key) - fromColumn;
+				if (i < -1 || i > numberOfRows || j < -1 || j > numberOfColumns)	return;
+				if (j == -1)	westColumn[(int) (i + 1) >>> 6] |= 1L << (i + 1);
+				else if (j == numberOfColumns)	eastColumn[(int) (i + 1) >>> 6] |= 1L << (i + 1);
+				else	words[(int) (i + 1) * wordsPerRow + ((int) j >>> 6)] |= 1L << j;
+			});
+			if (dying.length > 0)	((SparseUniverse) city).forEachDyingCell(key -> {
+				long i = (long) SparseUniverse.row(key) - fromRow;
+				long j = (long) SparseUniverse.column(key) - fromColumn;
+				if (i >= 0 && i < numberOfRows && j >= 0 && j < numberOfColumns)	dying[(int) i * wordsPerRow + ((int) j >>> 6)] |= 1L << j;
+			});
+			return;
+		}
+		if (numberOfRows == 0 || numberOfColumns == 0)	return;
+
+		long[] row = new long[wordsPerRow];
+		for (int i = -1; i <= numberOfRows; i++) {
+			int source = fromRow + i;
+			if (isPeriodic)	source = Math.floorMod(source, universeRows);
+			else if (source < 0 || source >= universeRows)	continue;	// off the edge, so empty
+
+			city.readRow(source, fromColumn, row);
+			row[wordsPerRow - 1] &= LifeKernel.lastWordMask(numberOfColumns);	// (the next Cells along may be in the last word)
+			System.arraycopy(row, 0, words, (i + 1) * wordsPerRow, wordsPerRow);
+
+			if (isAliveAt(city, source, fromColumn - 1))	westColumn[(i + 1) >>> 6] |= 1L << (i + 1);
+			if (isAliveAt(city, source, fromColumn + numberOfColumns))	eastColumn[(i + 1) >>> 6] |= 1L << (i + 1);
+			if (dying.length > 0 && i >= 0 && i < numberOfRows) {
+				city.readDyingRow(source, fromColumn, row);
+				row[wordsPerRow - 1] &= LifeKernel.lastWordMask(numberOfColumns);
+				System.arraycopy(row, 0, dying, i * wordsPerRow, wordsPerRow);
+			}
+		}
+	}
+
+	/* Getter Methods */
+
+	public Viewport getViewport() {
+		return viewport;
+	}
+
+	public int numberOfRows() {	// the rows kept
+		return numberOfRows;
+	}
+
+	public int numberOfColumns() {	// the columns kept
+		return numberOfColumns;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public int getPopulation() {	// the number of live Cells
+		return population;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public boolean isAlive(int row, int column) {	// returns true if the Cell in a particular row and column of the universe was alive (only the Cells on show and their neighbours are known, the rest count as dead)
+		long i = (long) row - fromRow;
+		long j = (long) column - fromColumn;
+		if (density != null || i < -1 || i > numberOfRows || j < -1 || j > numberOfColumns)	return false;
+		return isKeptAlive((int) i, (int) j);
+	}
+
+	public boolean isDying(int row, int column) {	// returns true if the Cell in a particular row and column of the universe was dying (only the Cells on show are known)
+		long i = (long) row - fromRow;
+		long j = (long) column - fromColumn;
+		if (dying.length == 0 || i < 0 || i >= numberOfRows || j < 0 || j >= numberOfColumns)	return false;
+		return (dying[(int) i * wordsPerRow + ((int) j >>> 6)] & (1L << j)) != 0;
+	}
+
+	/* Public methods */
+
+	public int countAliveNeighbours(int row, int column) {	// counts the number of live neighbours a Cell on show had (in the rule's neighbourhood)
+		if (counts != null) {	// (only the Cells kept were counted)
+			long keptRow = (long) row - fromRow;
+			long keptColumn = (long) column - fromColumn;
+			return keptRow < 0 || keptRow >= numberOfRows || keptColumn < 0 || keptColumn >= numberOfColumns ? 0 : counts[(int) keptRow * numberOfColumns + (int) keptColumn];
+		}
+
+		int count = 0;
+		for (int i = row - 1; i <= row + 1; i++)
+			for (int j = column - 1; j <= column + 1; j++)
+				if ((i != row || j != column) && isAlive(i, j))	count++;
+
+		return count;
+	}
+
+	/* Private methods */
+
+	private boolean isKeptAlive(int row, int column) {	// the same, for a row and column of the part kept (from -1 to the number of them)
+		if (column == -1)	return (westColumn[(row + 1) >>> 6] & (1L << (row + 1))) != 0;
+		if (column == numberOfColumns)	return (eastColumn[(row + 1) >>> 6] & (1L << (row + 1))) != 0;
+		return (words[(row + 1) * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	private int[] countNeighbours(City city) {	// the live neighbours of the Cells kept, in the rule's neighbourhood
+		int[] counts = new int[numberOfRows * numberOfColumns];
+		if (counts.length == 0)	return counts;
+
+		SummedAreaTable sums = city.neighbourSums(fromRow, fromRow + numberOfRows, fromColumn, fromColumn + numberOfColumns);
+		int[] row = new int[numberOfColumns];
+		for (int i = 0; i < numberOfRows; i++) {
+			sums.countRow(fromRow + i, row);
+			System.arraycopy(row, 0, counts, i * numberOfColumns, numberOfColumns);
+		}
+		return counts;
+	}
+
+	private boolean isAliveAt(Universe city, int row, int column) {	// a Cell of a bounded or periodic universe, wrapped round or empty off the edges
+		if (city.isPeriodic())	column = Math.floorMod(column, universeColumns);
+		else if (column < 0 || column >= universeColumns)	return false;
+		return city.isAlive(row, column);
+	}
+
+	private void countCell(int row, int column) {	// adds a live Cell to the count of the pixel showing it
+		long x = viewport.pixelX(column);
+		long y = viewport.pixelY(row);
+		if (x >= 0 && x < viewport.getWidth() && y >= 0 && y < viewport.getHeight())	density[(int) y * viewport.getWidth() + (int) x]++;
+	}
+
+	private void countNodes(PopulationPyramid pyramid) {	// adds up the nodes of the population pyramid under each pixel, rather than the Cells (for pixels a whole number of tiles across)
+		int cellsPerPixel = viewport.getCellsPerPixel();
+		int level = Math.min(Integer.numberOfTrailingZeros(cellsPerPixel / City.TILE_COLUMNS), pyramid.numberOfLevels() - 1);	// the level whose nodes are as wide as a pixel, or the top
+		int nodeRows = City.TILE_ROWS << level;	// the rows and columns under a node
+		int nodeColumns = City.TILE_COLUMNS << level;
+		int width = viewport.getWidth();
+		for (int y = (int) Math.max(0, viewport.pixelY(0)); y < Math.min(viewport.getHeight(), viewport.pixelY(universeRows - 1L) + 1); y++)
+			for (int x = (int) Math.max(0, viewport.pixelX(0)); x < Math.min(width, viewport.pixelX(universeColumns - 1L) + 1); x++) {
+				long nodeRow = viewport.rowAt(y) / nodeRows;
+				long nodeColumn = viewport.columnAt(x) / nodeColumns;
+				for (long i = nodeRow; i < nodeRow + cellsPerPixel / nodeRows && i < pyramid.numberOfRows(level); i++)
+					for (long j = nodeColumn; j < nodeColumn + cellsPerPixel / nodeColumns && j < pyramid.numberOfColumns(level); j++)	density[y * width + x] += pyramid.count(level, (int) i, (int) j);
+			}
+	}
+
+	private void countRow(int row, long[] words) {	// adds the live Cells of a row, read from fromColumn on, to the counts of the pixels showing them
+		long y = viewport.pixelY(row);
+		if (y < 0 || y >= viewport.getHeight())	return;
+
+		int cellsPerPixel = viewport.getCellsPerPixel();
+		int width = viewport.getWidth();
+		int start = (int) y * width;
+		int span = Math.min(cellsPerPixel, 64);	// the bits of a word each pixel shows
+		long mask = span == 64 ? -1L : (1L << span) - 1;
+		boolean isLinedUp = (cellsPerPixel & (cellsPerPixel - 1)) == 0;	// (a power of two, so no pixel shows parts of two words but the whole of both)
+		for (int w = 0; w < words.length; w++) {
+			long word = words[w];
+			if (word == 0)	continue;
+			int column = fromColumn + (w << 6);
+			if (!isLinedUp) {
+				for (long bits = word; bits != 0; bits &= bits - 1)	countCell(row, column + Long.numberOfTrailingZeros(bits));
+				continue;
+			}
+
+			long x = viewport.pixelX(column);
+			for (int b = 0; b < 64 && (word >>> b) != 0; b += span, x++) {
+				if (x < 0 || x >= width)	continue;
+				density[start + (int) x] += Long.bitCount((word >>> b) & mask);
+			}
+		}
+	}
+
+}
\ No newline at end of file
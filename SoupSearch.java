@@ -0,0 +1,584 @@
+package com.convai;
+
+import java.io.*;	// for the results file
+import java.util.*;	// for the tallies
+import java.util.concurrent.*;	// for the workers
+import java.util.concurrent.atomic.AtomicLong;	// for handing out the soups
+
+public class SoupSearch {	// runs random soups on many threads with no GUI until each settles, then names and counts the objects left behind (still lifes, oscillators and spaceships), the way apgsearch does
+	// usage: SoupSearch soups [output] [-threads n] [-seed n] [-soup 16] [-board 128] [-generations n] [-rule B3/S23]
+	// Each worker keeps one small bounded City to run its soups in, one after another, and tallies what it finds by itself; the tallies are only added up at the end, so the workers never wait on each other.
+	// The soups settle as if on an endless plane: every so often the spaceships heading away from everything else are taken off and counted (as apgsearch does), and a soup that spreads near the edges of the board anyway is run again on one twice as big, so what it leaves behind doesn't depend on the size of the board.
+	// Soup n is filled from a SplittableRandom seeded with the seed plus n, so the same seed finds the same objects however many threads there are.
+	// A cluster of live Cells is split into the objects it's made of by running its groups of touching Cells on their own, merging any that run differently apart than they do together.
+	// Each object is named by its apgcode: xs and its population for a still life, xp or xq and its period for an oscillator or a spaceship, then the extended Wechsler code of whichever phase and orientation gives the shortest (then earliest) code.
+
+	private static final int CHUNK = 64;	// the soups a worker takes at a time (and writes out together)
+	private static final String UNSETTLED = "unsettled";	// the tally of soups that didn't settle in time
+	private static final String UNKNOWN = "zz_UNKNOWN";	// the name of an object that doesn't behave the same on its own
+	private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";	// the characters of a Wechsler code
+	private static final int EDGE = 8;	// the Cells round the edges of the board that must stay dead, checked every EDGE generations (as nothing further in can reach the edges any sooner)
+	private static final int ESCAPE_INTERVAL = 16;	// the generations between taking off the spaceships that have escaped
+	private static final int ESCAPE_MARGIN = 16;	// how far past everything else a spaceship heading away must be to have escaped
+	private static final int MAXIMUM_SHIP = 64;	// the most Cells a spaceship taken off may have
+	private static final int SHIP_PERIOD = 16;	// and the longest period (a rarer one is left to reach the edges, and its soup given up on)
+	private static final int MAXIMUM_BOARD = 1024;	// the biggest board a soup is run again on before it's given up on as unsettled
+	private static final Ship NOT_A_SHIP = new Ship(null, 0, 0);
+
+	private long soups;	// the number of soups to run
+	private File output;	// where to write what each soup left behind, as it's found (null to not)
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = 0;	// the seed the soups' SplittableRandoms are worked out from
+	private int soupSize = 16;	// the rows and columns of each soup
+	private int boardSize = 128;	// the rows and columns of the bounded City it's run in first (big enough that few soups need running again on a bigger one)
+	private long maximumGenerations = 20000;	// the generations a soup may take to settle before it's given up on
+	private Rule rule = Rule.CONWAY;
+	private final AtomicLong nextSoup = new AtomicLong();	// the next soup to hand out
+
+	public static void main(String[] args) {
+		SoupSearch search = new SoupSearch();
+		try {
+			search.parse(args);
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println("usage: SoupSearch soups [output] [-threads n] [-seed n] [-soup 16] [-board 128] [-generations n] [-rule B3/S23]");
+			System.exit(2);
+		}
+
+		try {
+			search.run(System.out);
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/* Public methods */
+
+	public void parse(String[] args) {	// reads the command line
+		List<String> files = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-threads"))	threads = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-seed"))	seed = Long.parseLong(args[++i]);
+				else if (args[i].equals("-soup"))	soupSize = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-board"))	boardSize = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-generations"))	maximumGenerations = Long.parseLong(args[++i]);
+				else if (args[i].equals("-rule"))	rule = Rule.parse(args[++i]);
+				else if (args[i].startsWith("-"))	throw new IllegalArgumentException("unknown option " + args[i]);
+				else	files.add(args[i]);
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+			throw new IllegalArgumentException("an option is missing its number");
+		}
+
+		if (files.size() < 1 || files.size() > 2)	throw new IllegalArgumentException("need a number of soups and (optionally) an output file");
+		try {
+			soups = Long.parseLong(files.get(0));
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("not a number of soups: " + files.get(0));
+		}
+		if (soups < 0)	throw new IllegalArgumentException("can't run a negative number of soups");
+		if (files.size() == 2)	output = new File(files.get(1));
+		if (threads < 1 || soupSize < 1 || maximumGenerations < 1)	throw new IllegalArgumentException("threads, soup size and generations must all be at least 1");
+		if (boardSize < soupSize)	throw new IllegalArgumentException("the board must be at least as big as the soup");
+		if (rule.isGenerations() || rule.isBornFromNothing() || rule.isExtended())	throw new IllegalArgumentException("can't search soups of " + rule);
+	}
+
+	public void run(PrintStream out) throws IOException {	// runs the soups, writing what each left behind as it goes, and prints the tally of everything found
+		Writer writer = output == null ? null : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "soup search");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long start = System.nanoTime();
+		Map<String, Long> tally = new HashMap<String, Long>();
+		try {
+			List<Future<Map<String, Long>>> workers = new ArrayList<Future<Map<String, Long>>>();
+			for (int t = 0; t < threads; t++)	workers.add(executor.submit(new Worker(writer)));
+			for (Future<Map<String, Long>> worker : workers)
+				for (Map.Entry<String, Long> found : worker.get().entrySet())	tally.merge(found.getKey(), found.getValue(), Long::sum);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted");
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException)	throw (IOException) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		} finally {
+			executor.shutdownNow();
+			if (writer != null)	writer.close();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		double seconds = Math.max(elapsed, 1) / 1e9;
+		Long unsettled = tally.remove(UNSETTLED);
+		out.println("soups: " + soups);
+		out.println("unsettled: " + (unsettled == null ? 0 : unsettled));
+		out.println("time: " + String.format(Locale.ROOT, "%.3f", seconds) + " s");
+		out.println("speed: " + String.format(Locale.ROOT, "%.1f", soups / seconds) + " soups/s");
+
+		List<Map.Entry<String, Long>> found = new ArrayList<Map.Entry<String, Long>>(tally.entrySet());
+		found.sort((a, b) -> a.getValue().equals(b.getValue()) ? a.getKey().compareTo(b.getKey()) : Long.compare(b.getValue(), a.getValue()));	// the commonest first
+		for (Map.Entry<String, Long> object : found)	out.println(object.getValue() + " " + object.getKey());
+	}
+
+	/* Package-private methods */
+
+	String[] objects(long[] cells, int size, long period) {	// the apgcodes of the objects a cluster of Cells (keys of SparseUniverse, size of them) with a period is made of
+		List<long[]> parts = touching(cells, size);
+		List<long[]> together = run(cells, size, period);
+		while (parts.size() > 1) {
+			List<List<long[]>> apart = new ArrayList<List<long[]>>();
+			for (long[] part : parts)	apart.add(run(part, part.length, period));
+
+			int t = 1;	// the first generation they run differently apart
+			while (t <= period && Arrays.equals(union(apart, t), together.get(t)))	t++;
+			if (t > period)	break;
+			parts = merged(parts, apart, t, together.get(t));
+		}
+
+		String[] names = new String[parts.size()];
+		for (int p = 0; p < names.length; p++)	names[p] = name(parts.get(p), parts.get(p).length, period, null);
+		return names;
+	}
+
+	/* Private methods */
+
+	private String name(long[] cells, int size, long period, int[] step) {	// the apgcode of an object on its own (cells are keys of SparseUniverse, size of them), watching it for up to period generations (UNKNOWN if it doesn't come back in that time). If step isn't null, the rows and columns it moves in its period go in it
+		SparseUniverse universe = new SparseUniverse(1, 1, 1, 1, true);
+		universe.setRule(rule);
+		for (int c = 0; c < size; c++)	universe.setAlive(SparseUniverse.row(cells[c]), SparseUniverse.column(cells[c]), true);
+
+		List<long[]> phases = new ArrayList<long[]>();
+		phases.add(normalized(cells, size));
+		long first = corner(cells, size);
+		for (int t = 1; t <= period; t++) {
+			universe.step();
+			long[] phase = liveCells(universe);
+			if (phase.length == 0)	return UNKNOWN;	// (it dies out on its own, so it was kept going by something nearby)
+
+			long[] shape = normalized(phase, phase.length);
+			if (!Arrays.equals(shape, phases.get(0))) {
+				phases.add(shape);
+				continue;
+			}
+
+			String code = canonicalCode(phases);
+			long corner = corner(phase, phase.length);
+			if (step != null) {
+				step[0] = SparseUniverse.row(corner) - SparseUniverse.row(first);
+				step[1] = SparseUniverse.column(corner) - SparseUniverse.column(first);
+			}
+			if (corner != first)	return "xq" + t + "_" + code;	// it moved
+			return t == 1 ? "xs" + size + "_" + code : "xp" + t + "_" + code;
+		}
+		return UNKNOWN;
+	}
+
+	private List<long[]> run(long[] cells, int size, long period) {	// some cells and their next period generations on their own, each sorted
+		SparseUniverse universe = new SparseUniverse(1, 1, 1, 1, true);
+		universe.setRule(rule);
+		for (int c = 0; c < size; c++)	universe.setAlive(SparseUniverse.row(cells[c]), SparseUniverse.column(cells[c]), true);
+
+		List<long[]> generations = new ArrayList<long[]>();
+		long[] first = Arrays.copyOf(cells, size);
+		Arrays.sort(first);
+		generations.add(first);
+		for (int t = 1; t <= period; t++) {
+			universe.step();
+			long[] generation = liveCells(universe);
+			Arrays.sort(generation);
+			generations.add(generation);
+		}
+		return generations;
+	}
+
+	private static List<long[]> touching(long[] cells, int size) {	// splits some cells into groups of touching ones (side by side or corner to corner)
+		LongSet all = new LongSet(size);
+		for (int c = 0; c < size; c++)	all.add(cells[c]);
+
+		List<long[]> groups = new ArrayList<long[]>();
+		long[] group = new long[size];
+		for (int c = 0; c < size; c++) {
+			if (!all.remove(cells[c]))	continue;	// (already in a group)
+
+			int length = 0;
+			group[length++] = cells[c];
+			for (int head = 0; head < length; head++)
+				for (int di = -1; di <= 1; di++)
+					for (int dj = -1; dj <= 1; dj++) {
+						long neighbour = SparseUniverse.key(SparseUniverse.row(group[head]) + di, SparseUniverse.column(group[head]) + dj);
+						if (all.remove(neighbour))	group[length++] = neighbour;
+					}
+			groups.add(Arrays.copyOf(group, length));
+		}
+		return groups;
+	}
+
+	private static long[] union(List<List<long[]>> runs, int t) {	// the cells of generation t of some runs put together, sorted
+		int size = 0;
+		for (List<long[]> run : runs)	size += run.get(t).length;
+		long[] union = new long[size];
+		size = 0;
+		for (List<long[]> run : runs) {
+			System.arraycopy(run.get(t), 0, union, size, run.get(t).length);
+			size += run.get(t).length;
+		}
+		Arrays.sort(union);
+
+		int distinct = 0;
+		for (int c = 0; c < union.length; c++)
+			if (c == 0 || union[c] != union[c - 1])	union[distinct++] = union[c];
+		return Arrays.copyOf(union, distinct);
+	}
+
+	private static List<long[]> merged(List<long[]> parts, List<List<long[]>> apart, int t, long[] together) {	// the parts, with those that had a Cell next to one that came out wrong in generation t (so brought it about between them) merged into one
+		LongSet wrong = new LongSet();	// the cells alive either together or apart in generation t, but not both
+		for (long cell : together)	wrong.add(cell);
+		for (long cell : union(apart, t))
+			if (!wrong.remove(cell))	wrong.add(cell);
+
+		List<long[]> merged = new ArrayList<long[]>();
+		List<long[]> rest = new ArrayList<long[]>();
+		for (int p = 0; p < parts.size(); p++) {
+			boolean isNext = false;
+			for (long cell : apart.get(p).get(t - 1))
+				for (int di = -1; di <= 1 && !isNext; di++)
+					for (int dj = -1; dj <= 1 && !isNext; dj++)	isNext = wrong.contains(SparseUniverse.key(SparseUniverse.row(cell) + di, SparseUniverse.column(cell) + dj));
+			if (isNext)	merged.add(parts.get(p));
+			else	rest.add(parts.get(p));
+		}
+		if (merged.size() < 2) {	// (a Cell can only come out wrong between two parts or more, but just in case)
+			merged.addAll(rest);
+			rest.clear();
+		}
+
+		int size = 0;
+		for (long[] part : merged)	size += part.length;
+		long[] whole = new long[size];
+		size = 0;
+		for (long[] part : merged) {
+			System.arraycopy(part, 0, whole, size, part.length);
+			size += part.length;
+		}
+		rest.add(whole);
+		return rest;
+	}
+
+	private City newBoard(int side) {	// a bounded City to run soups on
+		City board = new City(1, 1, side, side);
+		board.setRule(rule);
+		return board;
+	}
+
+	private static int[] emptyBox() {	// a rectangle round nothing yet, as its top, left, bottom and right
+		return new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+	}
+
+	private static int[] box(long[] cells) {	// the rectangle round some cells
+		int[] box = emptyBox();
+		addToBox(box, cells, cells.length);
+		return box;
+	}
+
+	private static void addToBox(int[] box, long[] cells, int size) {	// widens a rectangle to take in some cells
+		for (int c = 0; c < size; c++) {
+			box[0] = Math.min(box[0], SparseUniverse.row(cells[c]));
+			box[1] = Math.min(box[1], SparseUniverse.column(cells[c]));
+			box[2] = Math.max(box[2], SparseUniverse.row(cells[c]));
+			box[3] = Math.max(box[3], SparseUniverse.column(cells[c]));
+		}
+	}
+
+	private static boolean isPast(int[] box, int[] others, int rowStep, int columnStep) {	// true if a rectangle is more than ESCAPE_MARGIN past others on a side it's heading towards (any side, if it isn't heading anywhere)
+		if (others[0] == Integer.MAX_VALUE)	return true;	// (there are no others)
+		boolean isAnyWay = rowStep == 0 && columnStep == 0;
+		return ((isAnyWay || rowStep < 0) && box[2] < others[0] - ESCAPE_MARGIN) || ((isAnyWay || rowStep > 0) && box[0] > others[2] + ESCAPE_MARGIN)
+			|| ((isAnyWay || columnStep < 0) && box[3] < others[1] - ESCAPE_MARGIN) || ((isAnyWay || columnStep > 0) && box[1] > others[3] + ESCAPE_MARGIN);
+	}
+
+	private static long[] liveCells(SparseUniverse universe) {
+		long[] cells = new long[universe.getNumberOfLiveCells()];
+		int[] size = {0};
+		universe.forEachLiveCell(cell -> cells[size[0]++] = cell);
+		return cells;
+	}
+
+	private static long corner(long[] cells, int size) {	// the top-left corner of the rectangle round some cells, as a key
+		int top = Integer.MAX_VALUE;
+		int left = Integer.MAX_VALUE;
+		for (int c = 0; c < size; c++) {
+			top = Math.min(top, SparseUniverse.row(cells[c]));
+			left = Math.min(left, SparseUniverse.column(cells[c]));
+		}
+		return SparseUniverse.key(top, left);
+	}
+
+	private static long[] normalized(long[] cells, int size) {	// some cells moved to the top-left corner, in order, so the same shape anywhere gives the same keys
+		long corner = corner(cells, size);
+		long[] shape = new long[size];
+		for (int c = 0; c < size; c++)	shape[c] = SparseUniverse.key(SparseUniverse.row(cells[c]) - SparseUniverse.row(corner), SparseUniverse.column(cells[c]) - SparseUniverse.column(corner));
+		Arrays.sort(shape);
+		return shape;
+	}
+
+	private static String canonicalCode(List<long[]> phases) {	// the shortest (then earliest) Wechsler code of any phase in any of the eight orientations
+		String best = null;
+		for (long[] phase : phases)
+			for (int orientation = 0; orientation < 8; orientation++) {
+				long[] turned = new long[phase.length];
+				for (int c = 0; c < phase.length; c++) {
+					int row = SparseUniverse.row(phase[c]);
+					int column = SparseUniverse.column(phase[c]);
+					if ((orientation & 1) != 0)	row = -row;	// flip it,
+					if ((orientation & 2) != 0)	column = -column;	// mirror it,
+					turned[c] = (orientation & 4) != 0 ? SparseUniverse.key(column, row) : SparseUniverse.key(row, column);	// and turn it on its side
+				}
+
+				String code = wechsler(normalized(turned, turned.length));
+				if (best == null || code.length() < best.length() || (code.length() == best.length() && code.compareTo(best) < 0))	best = code;
+			}
+		return best;
+	}
+
+	private static String wechsler(long[] shape) {	// the extended Wechsler code of a shape in the top-left corner: strips of five rows, separated by z, each a character for each column (its rows as bits, the top one lowest), with the runs of empty columns shortened (w for two, x for three, y and a character for four or more) and those at the end left off
+		int height = 0;
+		int width = 0;
+		for (long cell : shape) {
+			height = Math.max(height, SparseUniverse.row(cell) + 1);
+			width = Math.max(width, SparseUniverse.column(cell) + 1);
+		}
+
+		int strips = (height + 4) / 5;
+		int[] columns = new int[strips * width];
+		for (long cell : shape)	columns[SparseUniverse.row(cell) / 5 * width + SparseUniverse.column(cell)] |= 1 << (SparseUniverse.row(cell) % 5);
+
+		StringBuilder code = new StringBuilder();
+		for (int s = 0; s < strips; s++) {
+			if (s > 0)	code.append('z');
+			int zeros = 0;	// the empty columns not written yet
+			for (int c = 0; c < width; c++) {
+				int column = columns[s * width + c];
+				if (column == 0) {
+					zeros++;
+					continue;
+				}
+
+				for (; zeros >= 4; zeros -= Math.min(zeros, 39))	code.append('y').append(DIGITS.charAt(Math.min(zeros, 39) - 4));
+				if (zeros == 3)	code.append('x');
+				else if (zeros == 2)	code.append('w');
+				else if (zeros == 1)	code.append('0');
+				zeros = 0;
+				code.append(DIGITS.charAt(column));
+			}
+		}
+		return code.toString();
+	}
+
+	private class Worker implements Callable<Map<String, Long>> {	// runs soups until there are none left, tallying what they leave behind
+
+		private final Writer writer;	// (shared, so only written to a chunk at a time)
+		private final City board = newBoard(boardSize);	// the City soups are run on first
+		private City city;	// the one the current soup is running on (a bigger one, if it spread near the edges of the first)
+		private final CycleDetector cycleDetector = new CycleDetector();
+		private final Map<String, Long> tally = new HashMap<String, Long>();
+		private final Map<String, String[]> names = new HashMap<String, String[]>();	// the apgcodes of the objects in each cluster seen before, by its Wechsler code as it was seen
+		private final Map<String, Ship> ships = new HashMap<String, Ship>();	// what each small shape seen while the soups run is, by its Wechsler code as it was seen (NOT_A_SHIP for the still lifes and oscillators)
+		private final Map<String, Integer> found = new TreeMap<String, Integer>();	// what the current soup left behind
+		private final StringBuilder lines = new StringBuilder();	// what the current chunk of soups left behind, to be written out
+		private long generation;	// the generations the current soup has run for
+		private int wordsPerRow;
+		private long[] live = new long[0];	// the city, row after row
+		private long[] seen = new long[0];	// the live Cells already put in an object
+		private long[] cells = new long[64];	// the object being gathered, as keys of SparseUniverse (the ones before the head still to be looked round)
+
+		Worker(Writer writer) {
+			this.writer = writer;
+		}
+
+		public Map<String, Long> call() throws IOException {
+			for (long first = nextSoup.getAndAdd(CHUNK); first < soups; first = nextSoup.getAndAdd(CHUNK)) {
+				for (long soup = first; soup < Math.min(first + CHUNK, soups); soup++)	search(soup);
+
+				if (writer != null)
+					synchronized (writer) {
+						writer.write(lines.toString());
+						writer.flush();
+					}
+				lines.setLength(0);
+			}
+			return tally;
+		}
+
+		private void search(long soup) {	// runs a soup until it settles and counts what it left behind
+			boolean isClear = false;	// true once it has been run without getting near the edges
+			for (int side = boardSize; !isClear && side <= Math.max(boardSize, MAXIMUM_BOARD); side *= 2) {
+				city = side == boardSize ? board : newBoard(side);
+				isClear = settle(soup);
+			}
+
+			if (isClear && cycleDetector.isCycling())	census(cycleDetector.getPeriod());
+			else {
+				found.clear();
+				found.put(UNSETTLED, 1);
+			}
+
+			lines.append(soup).append('\t').append(generation);
+			for (Map.Entry<String, Integer> object : found.entrySet()) {
+				lines.append('\t').append(object.getKey());
+				if (object.getValue() > 1)	lines.append('*').append(object.getValue());
+				tally.merge(object.getKey(), (long) object.getValue(), Long::sum);
+			}
+			lines.append('\n');
+		}
+
+		private boolean settle(long soup) {	// runs a soup in the middle of the city until it cycles (or is given up on), taking off the spaceships that escape. Returns false if it got near the edges first
+			city.kill();
+			found.clear();
+			SplittableRandom random = new SplittableRandom(seed + soup);
+			int offset = (city.numberOfRows() - soupSize) / 2;
+			long bits = 0;
+			for (int b = 0; b < soupSize * soupSize; b++) {
+				if ((b & 63) == 0)	bits = random.nextLong();
+				if ((bits >>> (b & 63) & 1) != 0)	city.setAlive(offset + b / soupSize, offset + b % soupSize, true);
+			}
+
+			cycleDetector.reset();
+			cycleDetector.record(0, city.getHash());
+			for (generation = 0; generation < maximumGenerations && !cycleDetector.isCycling(); ) {
+				if (generation % EDGE == 0 && isNearEdge())	return false;
+				city.step();
+				generation++;
+				if (generation % ESCAPE_INTERVAL == 0)	takeOffEscaped();	// (every so many generations rather than whenever they near the edges, so the board doesn't change when)
+				cycleDetector.record(generation, city.getHash());
+			}
+			return true;
+		}
+
+		private boolean isNearEdge() {	// true if any live Cell is within EDGE of the edges of the city
+			int side = city.numberOfRows();
+			if (side <= 2 * EDGE)	return city.getNumberOfLiveCells() > 0;
+			return city.countLiveCells(EDGE, EDGE, side - EDGE, side - EDGE) < city.getNumberOfLiveCells();
+		}
+
+		private void takeOffEscaped() {	// takes off (and counts) the spaceships heading away from everything else that are far enough past it to never be caught up with
+			readCity();
+			List<long[]> objects = new ArrayList<long[]>();	// each object's Cells
+			List<Ship> kinds = new ArrayList<Ship>();	// and what it's known to be (null if it isn't yet)
+			int[] settled = emptyBox();	// the rectangle round the objects known not to be spaceships
+			for (int w = 0; w < live.length; w++)
+				for (long bits = live[w] & ~seen[w]; bits != 0; bits = live[w] & ~seen[w]) {
+					int size = gather(w / wordsPerRow, (w % wordsPerRow << 6) + Long.numberOfTrailingZeros(bits));
+					Ship kind = size <= MAXIMUM_SHIP ? ships.get(wechsler(normalized(cells, size))) : NOT_A_SHIP;
+					objects.add(Arrays.copyOf(cells, size));
+					kinds.add(kind);
+					if (kind == NOT_A_SHIP)	addToBox(settled, cells, size);
+				}
+
+			int[] rest = settled.clone();	// the rectangle round everything but the spaceships
+			for (int o = 0; o < objects.size(); o++) {
+				long[] object = objects.get(o);
+				if (kinds.get(o) == null && isPast(box(object), settled, 0, 0))	kinds.set(o, ship(object));	// (only watching those out on their own, as the rest can't have escaped)
+				if (kinds.get(o) == null || kinds.get(o) == NOT_A_SHIP)	addToBox(rest, object, object.length);
+			}
+
+			for (int o = 0; o < objects.size(); o++) {
+				Ship kind = kinds.get(o);
+				if (kind == null || kind == NOT_A_SHIP || !isPast(box(objects.get(o)), rest, kind.rowStep, kind.columnStep))	continue;
+
+				for (long cell : objects.get(o))	city.setAlive(SparseUniverse.row(cell), SparseUniverse.column(cell), false);
+				found.merge(kind.name, 1, Integer::sum);
+			}
+		}
+
+		private Ship ship(long[] object) {	// the spaceship an object is on its own (NOT_A_SHIP if it isn't one)
+			int[] step = new int[2];
+			String name = name(object, object.length, SHIP_PERIOD, step);
+			Ship ship = name.startsWith("xq") ? new Ship(name, step[0], step[1]) : NOT_A_SHIP;
+			if (name != UNKNOWN)	ships.put(wechsler(normalized(object, object.length)), ship);	// (not the shapes still settling, as there's no end to those)
+			return ship;
+		}
+
+		private void census(long period) {	// splits the settled soup into clusters (live Cells within two of each other, as further ones can't affect each other), splits those into objects and names each
+			readCity();
+			for (int w = 0; w < live.length; w++)
+				for (long bits = live[w] & ~seen[w]; bits != 0; bits = live[w] & ~seen[w]) {
+					int size = gather(w / wordsPerRow, (w % wordsPerRow << 6) + Long.numberOfTrailingZeros(bits));
+					String shape = wechsler(normalized(cells, size));
+					String[] objects = names.get(shape);
+					if (objects == null) {
+						objects = objects(cells, size, period);
+						names.put(shape, objects);
+					}
+					for (String name : objects)	found.merge(name, 1, Integer::sum);
+				}
+		}
+
+		private void readCity() {	// copies the city into live, none of it seen yet
+			int side = city.numberOfRows();
+			wordsPerRow = (side + 63) >>> 6;
+			if (live.length != side * wordsPerRow) {
+				live = new long[side * wordsPerRow];
+				seen = new long[side * wordsPerRow];
+			}
+			long[] row = new long[wordsPerRow];
+			for (int i = 0; i < side; i++) {
+				city.readRow(i, row);
+				System.arraycopy(row, 0, live, i * wordsPerRow, wordsPerRow);
+			}
+			Arrays.fill(seen, 0L);
+		}
+
+		private int gather(int i, int j) {	// puts the object with a live Cell in it into cells. Returns how many Cells it has
+			int side = city.numberOfRows();
+			int size = 0;
+			int head = 0;
+			see(i, j);
+			cells[size++] = SparseUniverse.key(i, j);
+			while (head < size) {
+				int row = SparseUniverse.row(cells[head]);
+				int column = SparseUniverse.column(cells[head]);
+				head++;
+				for (int ni = Math.max(row - 2, 0); ni <= Math.min(row + 2, side - 1); ni++)
+					for (int nj = Math.max(column - 2, 0); nj <= Math.min(column + 2, side - 1); nj++) {
+						if (!isLive(ni, nj) || isSeen(ni, nj))	continue;
+
+						see(ni, nj);
+						if (size == cells.length)	cells = Arrays.copyOf(cells, size * 2);
+						cells[size++] = SparseUniverse.key(ni, nj);
+					}
+			}
+			return size;
+		}
+
+		private boolean isLive(int i, int j) {
+			return (live[i * wordsPerRow + (j >>> 6)] & (1L << j)) != 0;
+		}
+
+		private boolean isSeen(int i, int j) {
+			return (seen[i * wordsPerRow + (j >>> 6)] & (1L << j)) != 0;
+		}
+
+		private void see(int i, int j) {
+			seen[i * wordsPerRow + (j >>> 6)] |= 1L << j;
+		}
+
+	}
+
+	private static class Ship {	// a spaceship, and the rows and columns it moves in its period
+
+		final String name;	// its apgcode
+		final int rowStep;
+		final int columnStep;
+
+		Ship(String name, int rowStep, int columnStep) {
+			this.name = name;
+			this.rowStep = rowStep;
+			this.columnStep = columnStep;
+		}
+
+	}
+
+}
\ No newline at end of file
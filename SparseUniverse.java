@@ -0,0 +1,355 @@
+package com.convai;
+
+import java.io.*;	// for serialization
+import java.util.concurrent.ThreadLocalRandom;	// for randomizing
+import java.util.function.LongConsumer;	// to go through the live Cells
+
+public class SparseUniverse implements Universe, Serializable {	// a universe that only keeps its live Cells, so that memory and stepping cost go with the population rather than the area
+
+	static final long serialVersionUID = 1L;
+	private final boolean isUnbounded;	// Cells live on an endless plane, of which only the rows and columns on show are drawn
+	private boolean isPeriodic = false;	// wraps the rows and columns on show to themselves to form a periodic space with no edges
+	private Rule rule = Rule.CONWAY;	// the rule the universe evolves by
+	private transient LongSet liveCells = new LongSet();	// the coordinates of the live Cells (see key)
+	private transient LongSet nextLiveCells = new LongSet();	// the next generation is gathered in here before the two are swapped
+	private transient LongSet[] dyingCells = new LongSet[0];	// under a Generations rule, the dying Cells, by the generations they've been dying for (less one)
+	private transient LongCounter neighbourCounts = new LongCounter();	// the number of live neighbours of every Cell that has any
+	private transient long hash;	// the Zobrist hash of the live Cells
+	private int numberOfRows;
+	private int numberOfColumns;
+	private int cellWidth;
+	private int cellHeight;
+
+	public SparseUniverse(int width, int height, int numberOfRows, int numberOfColumns, boolean isUnbounded) {	// constructs a universe showing a certain number of rows and columns of Cells with given dimensions, which is either all there is or a window on an endless plane
+		cellWidth = width;
+		cellHeight = height;
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		this.isUnbounded = isUnbounded;
+	}
+
+	/* Getter Methods */
+
+	public int cellWidth() {
+		return cellWidth;
+	}
+
+	public int cellHeight() {
+		return cellHeight;
+	}
+
+	public int numberOfRows() {
+		return numberOfRows;
+	}
+
+	public int numberOfColumns() {
+		return numberOfColumns;
+	}
+
+	public boolean isPeriodic() {
+		return isPeriodic;
+	}
+
+	public boolean isUnbounded() {	// true if the rows and columns on show are a window on an endless plane (when it isn't periodic)
+		return isUnbounded;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public boolean isAlive(int row, int column) {
+		return liveCells.contains(key(row, column));
+	}
+
+	public boolean isDying(int row, int column) {	// true if the Cell in a particular row and column is dying under a Generations rule
+		return isDying(key(row, column));
+	}
+
+	public int getNumberOfLiveCells() {
+		return liveCells.size();
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	/* Setter Methods */
+
+	public void setPeriodic(boolean isPeriodic) {	// making it periodic (or bounded) drops the Cells outside the rows and columns on show
+		this.isPeriodic = isPeriodic;
+		if (!isOpen())	dropCellsOutside();
+	}
+
+	public void setRule(Rule rule) {	// (Cells born from nothing would fill an endless plane, and an extended neighbourhood would have every live Cell count up hundreds of neighbours, so those rules can't be followed)
+		if (rule.isBornFromNothing())	throw new IllegalArgumentException("a sparse universe can't follow " + rule + ", as Cells are born with no live neighbours");
+		if (rule.isExtended())	throw new IllegalArgumentException("a sparse universe can't follow " + rule + ", as it only counts the eight nearest neighbours");
+		if (rule.getNumberOfStates() != this.rule.getNumberOfStates()) {	// the dying Cells mean something else now
+			hash ^= dyingHash();
+			dyingCells = new LongSet[rule.getNumberOfStates() - 2];
+			for (int a = 0; a < dyingCells.length; a++)	dyingCells[a] = new LongSet();
+		}
+		this.rule = rule;
+	}
+
+	public void setAlive(int row, int column, boolean isAlive) {
+		if (!isOpen() && (row < 0 || row >= numberOfRows || column < 0 || column >= numberOfColumns))	throw new IndexOutOfBoundsException("no cell at " + row + ", " + column);
+		if (isAlive ? liveCells.add(key(row, column)) : liveCells.remove(key(row, column)))	hash ^= Zobrist.key(row, column);
+		for (int a = 0; a < dyingCells.length; a++)	// an edited Cell isn't dying any more
+			if (dyingCells[a].remove(key(row, column)))	hash ^= dyingKey(key(row, column), a + 1);
+	}
+
+	/* Public methods */
+
+	public int countAliveNeighbours(int row, int column) {
+		int count = 0;
+		for (int i = row - 1; i <= row + 1; i++)
+			for (int j = column - 1; j <= column + 1; j++) {
+				if (i == row && j == column)	continue;	// not a neighbour of itself
+				long neighbour = neighbour(i, j);
+				if (neighbour != LongSet.EMPTY && liveCells.contains(neighbour))	count++;
+			}
+
+		return count;
+	}
+
+	public int countLiveCells(int fromRow, int fromColumn, int toRow, int toColumn) {	// goes through the live Cells rather than the rectangle, whichever is fewer
+		if ((long) (toRow - fromRow) * (toColumn - fromColumn) <= liveCells.size())	return Universe.super.countLiveCells(fromRow, fromColumn, toRow, toColumn);
+
+		int count = 0;
+		for (int k = 0; k < liveCells.capacity(); k++) {
+			long cell = liveCells.slot(k);
+			if (cell != LongSet.EMPTY && row(cell) >= fromRow && row(cell) < toRow && column(cell) >= fromColumn && column(cell) < toColumn)	count++;
+		}
+		return count;
+	}
+
+	public void forEachLiveCell(int fromRow, int fromColumn, int toRow, int toColumn, CellConsumer action) {	// the same, whichever is fewer, in no particular order (counting Cells past the ones on show, if it's open)
+		if ((long) (toRow - fromRow) * (toColumn - fromColumn) <= liveCells.size()) {
+			for (int i = fromRow; i < toRow; i++)
+				for (int j = fromColumn; j < toColumn; j++)
+					if (isAlive(i, j))	action.accept(i, j);
+			return;
+		}
+
+		for (int k = 0; k < liveCells.capacity(); k++) {
+			long cell = liveCells.slot(k);
+			if (cell != LongSet.EMPTY && row(cell) >= fromRow && row(cell) < toRow && column(cell) >= fromColumn && column(cell) < toColumn)	action.accept(row(cell), column(cell));
+		}
+	}
+
+	public void resize(int width, int height, int numberOfRows, int numberOfColumns) {
+		this.cellWidth = width;
+		this.cellHeight = height;
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		if (!isOpen())	dropCellsOutside();
+	}
+
+	public void kill() {
+		liveCells.clear();
+		for (LongSet cells : dyingCells)	cells.clear();
+		hash = 0;
+	}
+
+	public void randomize(double percentChanceOfLife) {
+		kill();
+		ThreadLocalRandom random = ThreadLocalRandom.current();	// (not Math.random, which every thread shares)
+		for (int i = 0; i < numberOfRows(); i++)
+			for (int j = 0; j < numberOfColumns(); j++)
+				if (random.nextDouble() < percentChanceOfLife * random.nextDouble() / 100.0) {
+					liveCells.add(key(i, j));
+					hash ^= Zobrist.key(i, j);
+				}
+	}
+
+	public boolean step() {	// counts up the neighbours of the live Cells only, as the rest can't come to life
+		neighbourCounts.clear();
+		for (int k = 0; k < liveCells.capacity(); k++) {
+			long cell = liveCells.slot(k);
+			if (cell == LongSet.EMPTY)	continue;
+
+			int row = row(cell);
+			int column = column(cell);
+			for (int i = row - 1; i <= row + 1; i++)
+				for (int j = column - 1; j <= column + 1; j++) {
+					if (i == row && j == column)	continue;
+					long neighbour = neighbour(i, j);
+					if (neighbour != LongSet.EMPTY)	neighbourCounts.increment(neighbour);
+				}
+		}
+
+		nextLiveCells.clear();
+		long nextHash = 0;
+		boolean changed = false;
+		for (int k = 0; k < neighbourCounts.capacity(); k++) {	// the births (dying Cells can't be born)
+			long cell = neighbourCounts.key(k);
+			if (cell == LongSet.EMPTY || !rule.isBorn(neighbourCounts.count(k)) || liveCells.contains(cell) || isDying(cell))	continue;
+
+			nextLiveCells.add(cell);
+			nextHash ^= Zobrist.key(row(cell), column(cell));
+			changed = true;
+		}
+		int numberBorn = nextLiveCells.size();
+		for (int k = 0; k < liveCells.capacity(); k++) {	// the survivors (a live Cell with no live neighbours wasn't counted)
+			long cell = liveCells.slot(k);
+			if (cell != LongSet.EMPTY && rule.survives(neighbourCounts.get(cell))) {
+				nextLiveCells.add(cell);
+				nextHash ^= Zobrist.key(row(cell), column(cell));
+			}
+		}
+		if (nextLiveCells.size() - numberBorn != liveCells.size())	changed = true;	// somebody died
+
+		if (dyingCells.length > 0) {	// the dying Cells get older, the oldest are dead, and the ones that just died start dying
+			LongSet justDied = dyingCells[dyingCells.length - 1];	// (the oldest ones' set is reused)
+			for (LongSet cells : dyingCells)
+				if (cells.size() > 0)	changed = true;
+			justDied.clear();
+			System.arraycopy(dyingCells, 0, dyingCells, 1, dyingCells.length - 1);
+			dyingCells[0] = justDied;
+			for (int k = 0; k < liveCells.capacity(); k++) {
+				long cell = liveCells.slot(k);
+				if (cell != LongSet.EMPTY && !nextLiveCells.contains(cell))	justDied.add(cell);
+			}
+		}
+
+		LongSet swap = liveCells;
+		liveCells = nextLiveCells;
+		nextLiveCells = swap;
+		hash = nextHash ^ dyingHash();
+		return changed;
+	}
+
+	void forEachDyingCell(LongConsumer action) {	// the same for the dying Cells
+		for (LongSet cells : dyingCells)
+			for (int k = 0; k < cells.capacity(); k++)
+				if (cells.slot(k) != LongSet.EMPTY)	action.accept(cells.slot(k));
+	}
+
+	public void readDyingRow(int row, int fromColumn, long[] words) {
+		java.util.Arrays.fill(words, 0L);
+		if (dyingCells.length == 0)	return;
+		for (int j = Math.max(0, fromColumn); j < numberOfColumns && j - fromColumn < words.length * 64L; j++)
+			if (isDying(key(row, j)))	words[(j - fromColumn) >>> 6] |= 1L << (j - fromColumn);
+	}
+
+	void forEachLiveCell(LongConsumer action) {	// hands the key of every live Cell (see row and column) to action, in no particular order
+		for (int k = 0; k < liveCells.capacity(); k++)
+			if (liveCells.slot(k) != LongSet.EMPTY)	action.accept(liveCells.slot(k));
+	}
+
+	/* Private methods */
+
+	private boolean isOpen() {	// true if Cells can live outside the rows and columns on show right now
+		return isUnbounded && !isPeriodic;
+	}
+
+	private long neighbour(int row, int column) {	// the key of a neighbouring position, wrapped round if periodic, or LongSet.EMPTY if it's off the edge
+		if (isPeriodic) {	// modify according to periodicity
+			if (row == -1)	row = numberOfRows - 1;
+			else if (row == numberOfRows)	row = 0;
+			if (column == -1)	column = numberOfColumns - 1;
+			else if (column == numberOfColumns)	column = 0;
+		}
+		else if (!isUnbounded && (row < 0 || row >= numberOfRows || column < 0 || column >= numberOfColumns))	return LongSet.EMPTY;
+
+		return key(row, column);
+	}
+
+	private boolean isDying(long cell) {
+		for (LongSet cells : dyingCells)
+			if (cells.contains(cell))	return true;
+		return false;
+	}
+
+	private long dyingHash() {	// the keys of the dying Cells, one for each bit of their age, the way City hashes its bit planes of ages
+		long hash = 0;
+		for (int a = 0; a < dyingCells.length; a++)
+			for (int k = 0; k < dyingCells[a].capacity(); k++)
+				if (dyingCells[a].slot(k) != LongSet.EMPTY)	hash ^= dyingKey(dyingCells[a].slot(k), a + 1);
+		return hash;
+	}
+
+	private static long dyingKey(long cell, int age) {
+		long key = 0;
+		for (int b = 0; age >>> b != 0; b++)
+			if (((age >>> b) & 1) != 0)	key ^= Zobrist.key(row(cell), column(cell), b + 1);
+		return key;
+	}
+
+	private void dropCellsOutside() {	// kills the Cells outside the rows and columns on show
+		nextLiveCells.clear();
+		for (int k = 0; k < liveCells.capacity(); k++) {
+			long cell = liveCells.slot(k);
+			if (cell == LongSet.EMPTY)	continue;
+			if (isOnShow(cell))	nextLiveCells.add(cell);
+			else	hash ^= Zobrist.key(row(cell), column(cell));
+		}
+
+		LongSet swap = liveCells;
+		liveCells = nextLiveCells;
+		nextLiveCells = swap;
+
+		for (int a = 0; a < dyingCells.length; a++) {
+			LongSet cells = new LongSet();
+			for (int k = 0; k < dyingCells[a].capacity(); k++) {
+				long cell = dyingCells[a].slot(k);
+				if (cell == LongSet.EMPTY)	continue;
+				if (isOnShow(cell))	cells.add(cell);
+				else	hash ^= dyingKey(cell, a + 1);
+			}
+			dyingCells[a] = cells;
+		}
+	}
+
+	private boolean isOnShow(long cell) {	// true if a Cell is in the rows and columns on show
+		return row(cell) >= 0 && row(cell) < numberOfRows && column(cell) >= 0 && column(cell) < numberOfColumns;
+	}
+
+	static long key(int row, int column) {	// packs a row and column into one long
+		return ((long) row << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	static int row(long key) {
+		return (int) (key >> 32);
+	}
+
+	static int column(long key) {
+		return (int) key;
+	}
+
+	private void writeObject(ObjectOutputStream os) throws IOException {	// writes the live Cells out as a count followed by their keys, then the dying Cells of each age the same way
+		os.defaultWriteObject();
+		writeCells(os, liveCells);
+		for (LongSet cells : dyingCells)	writeCells(os, cells);
+	}
+
+	private static void writeCells(ObjectOutputStream os, LongSet cells) throws IOException {
+		os.writeInt(cells.size());
+		for (int k = 0; k < cells.capacity(); k++)
+			if (cells.slot(k) != LongSet.EMPTY)	os.writeLong(cells.slot(k));
+	}
+
+	private static LongSet readCells(ObjectInputStream is) throws IOException {
+		int numberOfCells = is.readInt();
+		LongSet cells = new LongSet(numberOfCells);
+		for (int i = 0; i < numberOfCells; i++)	cells.add(is.readLong());
+		return cells;
+	}
+
+	private void readObject(ObjectInputStream is) throws IOException, ClassNotFoundException {
+		is.defaultReadObject();
+		boolean hasRule = rule != null;	// (older universes only knew Conway's, and saved no dying Cells)
+		if (!hasRule)	rule = Rule.CONWAY;
+		liveCells = readCells(is);
+		nextLiveCells = new LongSet();
+		neighbourCounts = new LongCounter();
+		dyingCells = new LongSet[rule.getNumberOfStates() - 2];
+		for (int a = 0; a < dyingCells.length; a++)	dyingCells[a] = hasRule ? readCells(is) : new LongSet();
+
+		for (int k = 0; k < liveCells.capacity(); k++)
+			if (liveCells.slot(k) != LongSet.EMPTY)	hash ^= Zobrist.key(row(liveCells.slot(k)), column(liveCells.slot(k)));
+		hash ^= dyingHash();
+	}
+
+}
\ No newline at end of file
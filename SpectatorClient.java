@@ -0,0 +1,122 @@
+package com.convai;
+
+import java.io.*;	// for closing
+import java.net.InetAddress;	// to connect on the loopback address
+import java.net.InetSocketAddress;
+import java.nio.*;	// for the buffers
+import java.nio.channels.SocketChannel;
+import java.util.*;	// for the Arrays utility class
+
+public class SpectatorClient implements Closeable {	// watches a SpectatorServer, keeping the generation it was last sent, and sends it moves for the players (what a bot or a remote window would build on)
+
+	private final SocketChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+	private ByteBuffer message = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer moves = ByteBuffer.allocate(1 + 6 * 1024).order(ByteOrder.LITTLE_ENDIAN);	// the moves not sent yet, after the kind of message
+	private long generation = -1;	// the generation last sent (-1 before the first)
+	private int numberOfRows;
+	private int numberOfColumns;
+	private int wordsPerRow;
+	private long[] words = new long[0];	// its Cells, row after row
+
+	public SpectatorClient(int port) throws IOException {	// connects to a server on a port of the loopback address
+		channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		channel.socket().setTcpNoDelay(true);
+		moves.put(SpectatorServer.MOVES);
+	}
+
+	/* Getter Methods */
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public int numberOfRows() {
+		return numberOfRows;
+	}
+
+	public int numberOfColumns() {
+		return numberOfColumns;
+	}
+
+	public boolean isAlive(int row, int column) {
+		return (words[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	public int getNumberOfLiveCells() {
+		int count = 0;
+		for (long word : words)	count += Long.bitCount(word);
+		return count;
+	}
+
+	/* Public methods */
+
+	public void next() throws IOException {	// waits for the next message from the server and brings the generation up to date with it
+		header.clear();
+		readFully(header);
+		int length = header.getInt(0);
+		if (length < 17)	throw new IOException("server sent a message of " + length + " bytes");
+		if (message.capacity() < length)	message = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		message.clear().limit(length);
+		readFully(message);
+		message.flip();
+
+		byte kind = message.get();
+		generation = message.getLong();
+		int rows = message.getInt();
+		int columns = message.getInt();
+		if (kind == SpectatorServer.KEYFRAME || rows != numberOfRows || columns != numberOfColumns) {	// start again from nothing
+			numberOfRows = rows;
+			numberOfColumns = columns;
+			wordsPerRow = (columns + 63) >>> 6;
+			if (words.length != rows * wordsPerRow)	words = new long[rows * wordsPerRow];
+			else	Arrays.fill(words, 0L);
+		}
+
+		long word = 0;	// the word after the last one changed
+		while (message.hasRemaining()) {	// the changes, packed the way History packs them
+			long gap = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = message.get();
+				gap |= (long) (b & 0x7F) << shift;
+				if (b >= 0)	break;
+			}
+			word += gap;
+			int mask = message.get();
+			long change = 0;
+			for (int b = 0; b < 8; b++)
+				if ((mask & (1 << b)) != 0)	change |= (message.get() & 0xFFL) << (b << 3);
+			words[(int) word++] ^= change;
+		}
+	}
+
+	public void move(int player, int changeInX, int changeInY) throws IOException {	// asks for a player to be moved, sending the moves asked for so far in one message when there's no room for more
+		if (moves.remaining() < 6)	sendMoves();
+		moves.putInt(player);
+		moves.put((byte) changeInX);
+		moves.put((byte) changeInY);
+	}
+
+	public void sendMoves() throws IOException {	// sends the moves asked for since the last time
+		if (moves.position() == 1)	return;
+
+		ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, moves.position());
+		moves.flip();
+		while (length.hasRemaining())	channel.write(length);
+		while (moves.hasRemaining())	channel.write(moves);
+		moves.clear();
+		moves.put(SpectatorServer.MOVES);
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/* Private methods */
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) == -1)	throw new EOFException("server hung up");
+	}
+
+}
\ No newline at end of file
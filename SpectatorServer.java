@@ -0,0 +1,252 @@
+package com.convai;
+
+import java.io.*;	// for closing
+import java.net.InetAddress;	// to listen on the loopback address only
+import java.net.InetSocketAddress;
+import java.nio.*;	// for the buffers
+import java.nio.channels.*;	// for the sockets and the selector
+import java.util.*;	// for the list of clients
+
+public class SpectatorServer implements Closeable {	// streams the generations of a universe to local clients over TCP, and takes moves for the players from them, on one thread with a selector so a slow client never holds up the simulation
+	// Every message either way is a little-endian int with the length of the rest, then a byte saying what it is.
+	// The server sends KEYFRAME and DELTA messages: the generation (a long), the rows and columns (ints), then the words of Cells that changed since the last message (or that are alive, for a keyframe), packed the way History packs them.
+	// A client that can't keep up isn't queued every generation: once it has taken the last message, it's sent the changes from that one to the latest, however many generations later.
+	// It's a selector rather than a thread for each client because a client's whole state is where it's got to in the stream, so one thread can serve them all, and a slow one costs no thread or queue of its own.
+	// Clients send MOVES messages: any number of moves, each a player's index (an int) and the columns and rows to move it by (a byte each, -1 to 1).
+
+	public static final byte KEYFRAME = 1;	// kinds of message from the server
+	public static final byte DELTA = 2;
+	public static final byte MOVES = 1;	// kinds of message from a client
+	private static final int HEADER_SIZE = 4 + 1 + 8 + 4 + 4;	// the length, kind, generation, rows and columns
+	private static final int MOVE_SIZE = 6;
+	private static final int MAXIMUM_MESSAGE = 1 << 20;	// the longest message a client may send
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final Thread thread;
+	private final Mover mover;	// makes the moves clients send
+	private final List<Client> clients = new ArrayList<Client>();	// (only touched on the server's thread)
+	private volatile int numberOfClients;
+	private volatile Frame latest;	// the latest generation published
+	private volatile boolean isOpen = true;
+	private volatile boolean isWaiting;	// true if a client has joined since the latest generation was published
+
+	public SpectatorServer(int port, Mover mover) throws IOException {	// listens on a port of the loopback address (0 for any free one), making the moves clients send with mover
+		this.mover = mover;
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		thread = new Thread(this::serve, "spectators");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/* Getter Methods */
+
+	public int getPort() {	// the port it's listening on
+		return server.socket().getLocalPort();
+	}
+
+	public int getNumberOfClients() {
+		return numberOfClients;
+	}
+
+	public boolean isWaiting() {	// true if a client has joined since the latest generation was published, so it should be published again even if nothing has changed
+		return isWaiting;
+	}
+
+	/* Public methods */
+
+	public void publish(Universe universe, long generation) {	// hands over a generation to be sent (on the simulation thread; it only copies the rows, and only if anyone's watching)
+		if (numberOfClients == 0)	return;
+
+		int wordsPerRow = (universe.numberOfColumns() + 63) >>> 6;
+		long[] words = new long[universe.numberOfRows() * wordsPerRow];
+		long[] row = new long[wordsPerRow];
+		for (int i = 0; i < universe.numberOfRows(); i++) {
+			universe.readRow(i, row);
+			System.arraycopy(row, 0, words, i * wordsPerRow, wordsPerRow);
+		}
+		latest = new Frame(generation, universe.numberOfRows(), universe.numberOfColumns(), words);
+		isWaiting = false;
+		selector.wakeup();
+	}
+
+	public void close() throws IOException {	// stops listening and drops every client
+		isOpen = false;
+		selector.wakeup();
+		try {
+			thread.join(1000);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* Private methods */
+
+	private void serve() {	// the server's thread: accepts clients, reads their moves and sends each the latest generation whenever it's ready for it
+		try {
+			while (isOpen) {
+				selector.select();
+				for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())	continue;
+					if (key.isAcceptable())	accept();
+					else {
+						Client client = (Client) key.attachment();
+						try {
+							if (key.isReadable())	read(client);
+							if (key.isValid() && key.isWritable())	write(client);
+						} catch (IOException ex) {	// it's gone
+							drop(client);
+						}
+					}
+				}
+
+				Frame frame = latest;
+				for (Client client : new ArrayList<Client>(clients))
+					try {
+						if (frame != null && client.sent != frame && !client.out.hasRemaining()) {	// ready for the next one
+							send(client, frame);
+							write(client);
+						}
+					} catch (IOException ex) {
+						drop(client);
+					}
+			}
+		} catch (IOException | ClosedSelectorException ex) {
+			ex.printStackTrace();
+		} finally {
+			for (Client client : new ArrayList<Client>(clients))	drop(client);
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null)	return;
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Client client = new Client(channel);
+		client.key = channel.register(selector, SelectionKey.OP_READ, client);
+		clients.add(client);
+		numberOfClients = clients.size();
+		isWaiting = true;
+	}
+
+	private void drop(Client client) {
+		clients.remove(client);
+		numberOfClients = clients.size();
+		client.key.cancel();
+		try {
+			client.channel.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private void read(Client client) throws IOException {	// takes in what the client has sent, making the moves of each whole message
+		if (client.channel.read(client.in) == -1)	throw new EOFException("client hung up");
+
+		client.in.flip();
+		while (client.in.remaining() >= 4) {
+			int length = client.in.getInt(client.in.position());
+			if (length < 1 || length > MAXIMUM_MESSAGE)	throw new IOException("client sent a message of " + length + " bytes");
+			if (client.in.remaining() < 4 + length) {	// wait for the rest, making room for it
+				if (client.in.capacity() < 4 + length)	client.in = ByteBuffer.allocate(4 + length).order(ByteOrder.LITTLE_ENDIAN).put(client.in);
+				else	client.in.compact();
+				return;
+			}
+
+			client.in.getInt();
+			int end = client.in.position() + length;
+			if (client.in.get() == MOVES)
+				while (client.in.position() + MOVE_SIZE <= end) {
+					int player = client.in.getInt();
+					int changeInX = client.in.get();
+					int changeInY = client.in.get();
+					try {
+						mover.move(player, changeInX, changeInY);
+					} catch (RuntimeException ex) {}	// (not a player, or not a move)
+				}
+			client.in.position(end);	// skipping anything not understood
+		}
+		client.in.compact();
+	}
+
+	private void write(Client client) throws IOException {	// sends as much as the client will take without waiting, and asks to be told when it'll take more if that isn't everything
+		client.channel.write(client.out);
+		client.key.interestOps(client.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	private void send(Client client, Frame frame) {	// puts the changes from the frame the client was last sent to this one in its buffer
+		Frame from = client.sent;
+		boolean isKeyframe = from == null || from.numberOfRows != frame.numberOfRows || from.numberOfColumns != frame.numberOfColumns;
+		int length = HEADER_SIZE;
+		long gapStart = 0;
+		for (int w = 0; w < frame.words.length; w++) {
+			long change = isKeyframe ? frame.words[w] : frame.words[w] ^ from.words[w];
+			if (change == 0)	continue;
+
+			if (length + 19 > client.encoded.length)	client.encoded = Arrays.copyOf(client.encoded, client.encoded.length * 2);
+			length = History.putChange(client.encoded, length, w - gapStart, change);
+			gapStart = w + 1;
+		}
+
+		ByteBuffer header = ByteBuffer.wrap(client.encoded).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(length - 4);
+		header.put(isKeyframe ? KEYFRAME : DELTA);
+		header.putLong(frame.generation);
+		header.putInt(frame.numberOfRows);
+		header.putInt(frame.numberOfColumns);
+		client.out = ByteBuffer.wrap(client.encoded, 0, length);
+		client.sent = frame;
+	}
+
+	public interface Mover {	// something that moves players, such as Players
+
+		void move(int player, int changeInX, int changeInY);
+
+	}
+
+	private static class Frame {	// a generation as it was published. It never changes, so clients can share it
+
+		final long generation;
+		final int numberOfRows;
+		final int numberOfColumns;
+		final long[] words;	// row after row, packed the way Universe.readRow packs them
+
+		Frame(long generation, int numberOfRows, int numberOfColumns, long[] words) {
+			this.generation = generation;
+			this.numberOfRows = numberOfRows;
+			this.numberOfColumns = numberOfColumns;
+			this.words = words;
+		}
+
+	}
+
+	private static class Client {	// a connection, and how far it has got
+
+		final SocketChannel channel;
+		SelectionKey key;
+		Frame sent;	// the last frame sent (null before the first)
+		ByteBuffer in = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);	// what it has sent that hasn't been acted on yet
+		ByteBuffer out = ByteBuffer.allocate(0);	// what's still to be sent to it
+		byte[] encoded = new byte[4096];	// the message being sent
+
+		Client(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+	}
+
+}
\ No newline at end of file
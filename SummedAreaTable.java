@@ -0,0 +1,92 @@
+package com.convai;
+
+final class SummedAreaTable {	// running sums of the live Cells of a window of a packed universe and the Cells within range of it (wrapped round if periodic, dead past the edges if not), from which the live neighbours of any Cell in the window are counted with a handful of lookups, however far the neighbourhood reaches
+	// A square (Moore) neighbourhood is a rectangle of the summed-area table. A diamond (von Neumann) one is counted from the table a row at a time for the first Cell of a row, then slid along it, adding the Cells along its two leading edges and taking away the ones along its two trailing edges, which are diagonal lines read off running sums along the diagonals.
+
+	private final int range;
+	private final boolean isVonNeumann;
+	private final int pad;	// the Cells around the window that are summed too
+	private final int top;	// the universe row and column at the top left of the padded window
+	private final int left;
+	private final int height;	// the rows and columns of the padded window
+	private final int width;
+	private final int[] area;	// the live Cells above and to the left of each corner of the padded window, (height + 1) rows of (width + 1)
+	private final int[] diagonal;	// the live Cells from each Cell of the padded window up and to the left along its diagonal, itself included (only for a diamond)
+	private final int[] antiDiagonal;	// the same up and to the right
+
+	SummedAreaTable(long[] words, int wordsPerRow, int numberOfRows, int numberOfColumns, boolean isPeriodic, int fromRow, int toRow, int fromColumn, int toColumn, int range, boolean isVonNeumann) {	// sums rows fromRow to toRow and columns fromColumn to toColumn (not including the last ones) of the words, packed the way City packs them
+		this.range = range;
+		this.isVonNeumann = isVonNeumann;
+		pad = range + 2;	// (a sliding diamond's leading edge reaches one past the range, and the diagonal sums look one further)
+		top = fromRow - pad;
+		left = fromColumn - pad;
+		height = toRow - fromRow + 2 * pad;
+		width = toColumn - fromColumn + 2 * pad;
+		area = new int[(height + 1) * (width + 1)];
+		diagonal = isVonNeumann ? new int[height * width] : null;
+		antiDiagonal = isVonNeumann ? new int[height * width] : null;
+
+		int[] columns = new int[width];	// the universe column each column of the padded window shows, or -1 past the edge
+		for (int x = 0; x < width; x++)	columns[x] = source(left + x, numberOfColumns, isPeriodic);
+
+		int[] cells = new int[width];
+		for (int y = 0; y < height; y++) {
+			int row = source(top + y, numberOfRows, isPeriodic);
+			for (int x = 0; x < width; x++)	cells[x] = row == -1 || columns[x] == -1 ? 0 : (int) (words[row * wordsPerRow + (columns[x] >>> 6)] >>> columns[x]) & 1;
+
+			int sum = 0;	// along the row so far
+			for (int x = 0; x < width; x++) {
+				sum += cells[x];
+				area[(y + 1) * (width + 1) + x + 1] = area[y * (width + 1) + x + 1] + sum;
+			}
+			if (isVonNeumann)
+				for (int x = 0; x < width; x++) {
+					diagonal[y * width + x] = cells[x] + (y > 0 && x > 0 ? diagonal[(y - 1) * width + x - 1] : 0);
+					antiDiagonal[y * width + x] = cells[x] + (y > 0 && x < width - 1 ? antiDiagonal[(y - 1) * width + x + 1] : 0);
+				}
+		}
+	}
+
+	void countRow(int row, int[] counts) {	// the live neighbours of each Cell of a row of the window, not counting the Cell itself, into counts (from the window's first column on)
+		int y = row - top;
+		int numberOfColumns = width - 2 * pad;
+		if (!isVonNeumann) {
+			for (int k = 0, x = pad; k < numberOfColumns; k++, x++)	counts[k] = rectangle(y - range, x - range, y + range + 1, x + range + 1) - rectangle(y, x, y + 1, x + 1);
+			return;
+		}
+		if (numberOfColumns == 0)	return;
+
+		int x = pad;
+		int count = 0;	// the live Cells in the diamond around x, a row of it at a time
+		for (int d = -range; d <= range; d++) {
+			int reach = range - Math.abs(d);
+			count += rectangle(y + d, x - reach, y + d + 1, x + reach + 1);
+		}
+		counts[0] = count - rectangle(y, x, y + 1, x + 1);
+		for (int k = 1; k < numberOfColumns; k++, x++) {	// slide it along one
+			count += diagonal(y - range, x + 1, y, x + 1 + range) + antiDiagonal(y, x + 1 + range, y + range, x + 1) - rectangle(y, x + 1 + range, y + 1, x + 2 + range);	// its leading edges (which share their point)
+			count -= antiDiagonal(y - range, x, y, x - range) + diagonal(y, x - range, y + range, x) - rectangle(y, x - range, y + 1, x - range + 1);	// and its trailing ones
+			counts[k] = count - rectangle(y, x + 1, y + 1, x + 2);
+		}
+	}
+
+	/* Private methods */
+
+	private static int source(int index, int size, boolean isPeriodic) {	// the row or column of the universe a row or column of the padded window shows, or -1 if it's past the edge
+		if (isPeriodic && size > 0)	return Math.floorMod(index, size);
+		return index >= 0 && index < size ? index : -1;
+	}
+
+	private int rectangle(int fromY, int fromX, int toY, int toX) {	// the live Cells in rows fromY to toY and columns fromX to toX of the padded window (not including the last ones)
+		return area[toY * (width + 1) + toX] - area[fromY * (width + 1) + toX] - area[toY * (width + 1) + fromX] + area[fromY * (width + 1) + fromX];
+	}
+
+	private int diagonal(int fromY, int fromX, int toY, int toX) {	// the live Cells along a diagonal going down and to the right, from one end to the other
+		return diagonal[toY * width + toX] - (fromY > 0 && fromX > 0 ? diagonal[(fromY - 1) * width + fromX - 1] : 0);
+	}
+
+	private int antiDiagonal(int fromY, int fromX, int toY, int toX) {	// the same going down and to the left
+		return antiDiagonal[toY * width + toX] - (fromY > 0 && fromX < width - 1 ? antiDiagonal[(fromY - 1) * width + fromX + 1] : 0);
+	}
+
+}
\ No newline at end of file
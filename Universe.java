@@ -0,0 +1,106 @@
+package com.convai;
+
+import java.awt.*;	// for coloring
+
+public interface Universe {	// a space in which Cells live and die, one generation after another. A City keeps every Cell, a SparseUniverse only the live ones
+
+	int cellWidth();	// the pixel width of a Cell
+
+	int cellHeight();	// the pixel height of a Cell
+
+	int numberOfRows();	// the rows on show (an unbounded universe carries on past them)
+
+	int numberOfColumns();	// the columns on show
+
+	boolean isPeriodic();	// true if the universe wraps round to itself, with no edges
+
+	void setPeriodic(boolean isPeriodic);
+
+	Rule getRule();	// the rule the universe evolves by
+
+	void setRule(Rule rule);
+
+	boolean isAlive(int row, int column);	// returns true if the Cell in a particular row and column is alive
+
+	void setAlive(int row, int column, boolean isAlive);	// gives life to (or kills) the Cell in a particular row and column
+
+	default void readRow(int row, long[] words) {	// copies a row into words, packed 64 Cells to a word (bit j % 64 of word j / 64 holds column j)
+		java.util.Arrays.fill(words, 0, (numberOfColumns() + 63) >>> 6, 0L);
+		for (int j = 0; j < numberOfColumns(); j++)
+			if (isAlive(row, j))	words[j >>> 6] |= 1L << j;
+	}
+
+	default void readRow(int row, int fromColumn, long[] words) {	// copies part of a row into words, packed the same way from column fromColumn on, for as many Cells as the words hold (none past the columns on show)
+		java.util.Arrays.fill(words, 0L);
+		for (int j = Math.max(0, fromColumn); j < numberOfColumns() && j - fromColumn < words.length * 64L; j++)
+			if (isAlive(row, j))	words[(j - fromColumn) >>> 6] |= 1L << (j - fromColumn);
+	}
+
+	default void readDyingRow(int row, int fromColumn, long[] words) {	// copies which Cells of part of a row are dying (under a Generations rule), packed the way readRow packs them
+		java.util.Arrays.fill(words, 0L);
+	}
+
+	default void writeRow(int row, long[] words) {	// sets a row from words packed the way readRow packs them
+		for (int j = 0; j < numberOfColumns(); j++)	setAlive(row, j, (words[j >>> 6] & (1L << j)) != 0);
+	}
+
+	int countAliveNeighbours(int row, int column);	// counts the number of live neighbours a Cell in a particular row and column has
+
+	int getNumberOfLiveCells();	// returns the number of cells that are alive
+
+	default int countLiveCells(int fromRow, int fromColumn, int toRow, int toColumn) {	// counts the cells alive in rows fromRow to toRow and columns fromColumn to toColumn (not including the last ones)
+		int count = 0;
+		for (int i = fromRow; i < toRow; i++)
+			for (int j = fromColumn; j < toColumn; j++)
+				if (isAlive(i, j))	count++;
+
+		return count;
+	}
+
+	default void forEachLiveCell(int fromRow, int fromColumn, int toRow, int toColumn, CellConsumer action) {	// hands the row and column of each live cell in rows fromRow to toRow and columns fromColumn to toColumn (not including the last ones, nor any past the ones on show) to action, going through the packed rows a word at a time rather than asking after every Cell
+		fromRow = Math.max(fromRow, 0);
+		fromColumn = Math.max(fromColumn, 0);
+		toRow = Math.min(toRow, numberOfRows());
+		toColumn = Math.min(toColumn, numberOfColumns());
+		if (fromRow >= toRow || fromColumn >= toColumn)	return;
+
+		long[] words = new long[(toColumn - fromColumn + 63) >>> 6];
+		long lastWordMask = LifeKernel.lastWordMask(toColumn - fromColumn);
+		for (int i = fromRow; i < toRow; i++) {
+			readRow(i, fromColumn, words);
+			words[words.length - 1] &= lastWordMask;
+			for (int w = 0; w < words.length; w++)
+				for (long bits = words[w]; bits != 0; bits &= bits - 1)	action.accept(i, fromColumn + (w << 6) + Long.numberOfTrailingZeros(bits));
+		}
+	}
+
+	long getHash();	// a hash of where the live cells are, kept up to date as they change (so the same pattern always has the same hash)
+
+	void kill();	// kills all residents
+
+	void randomize(double percentChanceOfLife);	// randomly gives life to the cells on show based on the percent chance parameter
+
+	boolean step();	// moves the universe on to its next generation in place. Returns false if nothing changed (the pattern is static)
+
+	default void render(Graphics g, boolean isCurvy, boolean isMonochrome) {	// draws the cells on show
+		Cell currentCell = new Cell(cellWidth(), cellHeight());	// a single Cell to colour and draw each position with
+		for (int i = 0; i < numberOfRows(); i++)	// fill all the live cells
+			for (int j = 0; j < numberOfColumns(); j++) {
+				currentCell.isAlive = isAlive(i, j);
+				int numberOfNeighbours = countAliveNeighbours(i, j);
+
+				currentCell.colourCell(getRule(), numberOfNeighbours, isMonochrome);
+
+				if (! (!currentCell.isAlive && !getRule().isBorn(numberOfNeighbours))) {		// fill the cells
+					currentCell.render(this, g, isCurvy, i, j);
+				}
+			}
+	}
+
+	interface CellConsumer {	// something done with the row and column of a Cell
+
+		void accept(int row, int column);
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.convai;
+
+public final class Viewport {	// the camera a window looks at a universe through: where it is and how far it's zoomed in or out. It never changes once made (panning or zooming makes a new one), so it can be handed between threads
+	// Zoomed in, each Cell is a square cellSize pixels across; zoomed out, each pixel is a square cellsPerPixel Cells across. Either way x and y are pixels on the whole plane drawn at that zoom, Cell 0, 0 starting at 0, 0.
+
+	public static final int MAXIMUM_CELL_SIZE = 256;	// the furthest in it zooms
+	public static final int MAXIMUM_CELLS_PER_PIXEL = 1 << 16;	// the furthest out it zooms
+
+	private final long x;	// the pixel at the window's top left
+	private final long y;
+	private final int width;	// the window's size in pixels
+	private final int height;
+	private final int cellSize;	// 1 when zoomed out
+	private final int cellsPerPixel;	// 1 when zoomed in
+
+	public Viewport(long x, long y, int width, int height, int cellSize, int cellsPerPixel) {
+		if (cellSize < 1 || cellsPerPixel < 1 || (cellSize > 1 && cellsPerPixel > 1))	throw new IllegalArgumentException("can't show " + cellSize + " pixels a cell and " + cellsPerPixel + " cells a pixel");
+		this.x = x;
+		this.y = y;
+		this.width = Math.max(1, width);
+		this.height = Math.max(1, height);
+		this.cellSize = cellSize;
+		this.cellsPerPixel = cellsPerPixel;
+	}
+
+	public static Viewport centredOn(double row, double column, int width, int height, int cellSize) {	// a window of a given size over a point, zoomed in to cellSize pixels a Cell
+		return new Viewport((long) Math.floor(column * cellSize) - width / 2, (long) Math.floor(row * cellSize) - height / 2, width, height, cellSize, 1);
+	}
+
+	/* Getter Methods */
+
+	public long getX() {
+		return x;
+	}
+
+	public long getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	public int getCellsPerPixel() {
+		return cellsPerPixel;
+	}
+
+	public boolean isZoomedOut() {	// true if a pixel shows more than one Cell
+		return cellsPerPixel > 1;
+	}
+
+	public long rowAt(int pixelY) {	// the row of the Cell at a pixel of the window (the top one of the square a pixel shows, when zoomed out)
+		return isZoomedOut() ? (y + pixelY) * cellsPerPixel : Math.floorDiv(y + pixelY, (long) cellSize);
+	}
+
+	public long columnAt(int pixelX) {	// the column of the Cell at a pixel of the window
+		return isZoomedOut() ? (x + pixelX) * cellsPerPixel : Math.floorDiv(x + pixelX, (long) cellSize);
+	}
+
+	public long firstRow() {	// the first row the window shows any of
+		return rowAt(0);
+	}
+
+	public long lastRow() {	// the last row the window shows any of
+		return isZoomedOut() ? rowAt(height - 1) + cellsPerPixel - 1 : rowAt(height - 1);
+	}
+
+	public long firstColumn() {
+		return columnAt(0);
+	}
+
+	public long lastColumn() {
+		return isZoomedOut() ? columnAt(width - 1) + cellsPerPixel - 1 : columnAt(width - 1);
+	}
+
+	public long pixelY(long row) {	// the window pixel at which a row starts (it may be off the window)
+		return isZoomedOut() ? Math.floorDiv(row, (long) cellsPerPixel) - y : row * cellSize - y;
+	}
+
+	public long pixelX(long column) {	// the window pixel at which a column starts
+		return isZoomedOut() ? Math.floorDiv(column, (long) cellsPerPixel) - x : column * cellSize - x;
+	}
+
+	/* Public methods */
+
+	public Viewport panBy(long dx, long dy) {	// moves the window by some pixels (right and down for positive amounts)
+		return new Viewport(x + dx, y + dy, width, height, cellSize, cellsPerPixel);
+	}
+
+	public Viewport resize(int width, int height) {	// a window of another size, keeping the same top left
+		return new Viewport(x, y, width, height, cellSize, cellsPerPixel);
+	}
+
+	public Viewport zoomIn(int pixelX, int pixelY) {	// a step closer, keeping the Cell at a pixel of the window under it
+		if (isZoomedOut())	return zoomTo(1, cellsPerPixel / 2, pixelX, pixelY);
+		return zoomTo(Math.min(MAXIMUM_CELL_SIZE, Math.max(cellSize + 1, cellSize * 5 / 4)), 1, pixelX, pixelY);
+	}
+
+	public Viewport zoomOut(int pixelX, int pixelY) {	// a step further away, keeping the Cell at a pixel of the window under it
+		if (cellSize > 1)	return zoomTo(Math.max(1, Math.min(cellSize - 1, cellSize * 4 / 5)), 1, pixelX, pixelY);
+		return zoomTo(1, Math.min(MAXIMUM_CELLS_PER_PIXEL, cellsPerPixel * 2), pixelX, pixelY);
+	}
+
+	public Viewport keepOver(int numberOfRows, int numberOfColumns) {	// keeps the window over a universe with edges, centring the universe if it's smaller than the window
+		long planeWidth = isZoomedOut() ? (numberOfColumns + cellsPerPixel - 1) / cellsPerPixel : (long) numberOfColumns * cellSize;
+		long planeHeight = isZoomedOut() ? (numberOfRows + cellsPerPixel - 1) / cellsPerPixel : (long) numberOfRows * cellSize;
+		return new Viewport(keepOver(x, width, planeWidth), keepOver(y, height, planeHeight), width, height, cellSize, cellsPerPixel);
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof Viewport))	return false;
+		Viewport viewport = (Viewport) other;
+		return x == viewport.x && y == viewport.y && width == viewport.width && height == viewport.height && cellSize == viewport.cellSize && cellsPerPixel == viewport.cellsPerPixel;
+	}
+
+	public int hashCode() {
+		return (int) (31 * (31 * (31 * x + y) + width) + height) * 31 * 31 + cellSize * 31 + cellsPerPixel;
+	}
+
+	public String toString() {
+		return (isZoomedOut() ? "1:" + cellsPerPixel : cellSize + ":1") + " at " + x + ", " + y;
+	}
+
+	/* Private methods */
+
+	private Viewport zoomTo(int cellSize, int cellsPerPixel, int pixelX, int pixelY) {
+		double row = isZoomedOut() ? (y + pixelY + 0.5) * this.cellsPerPixel : (y + pixelY + 0.5) / this.cellSize;	// the middle of the pixel to keep still, in Cells
+		double column = isZoomedOut() ? (x + pixelX + 0.5) * this.cellsPerPixel : (x + pixelX + 0.5) / this.cellSize;
+		double scale = cellsPerPixel > 1 ? 1.0 / cellsPerPixel : cellSize;	// pixels a Cell at the new zoom
+		return new Viewport((long) Math.floor(column * scale) - pixelX, (long) Math.floor(row * scale) - pixelY, width, height, cellSize, cellsPerPixel);
+	}
+
+	private static long keepOver(long start, int length, long planeLength) {
+		if (planeLength <= length)	return -(length - planeLength) / 2;
+		return Math.max(0, Math.min(start, planeLength - length));
+	}
+
+}
\ No newline at end of file
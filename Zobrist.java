@@ -0,0 +1,41 @@
+package com.convai;
+
+final class Zobrist {	// the random keys that are XORed together to hash a pattern, one for each position, so a hash can be kept up to date by XORing in just the Cells that flip
+
+	private Zobrist() {}
+
+	static long key(int row, int column) {	// the key of a position, worked out on the spot (with splitmix64's mixer) rather than looked up in a table as big as the universe
+		long z = (((long) row << 32) | (column & 0xFFFFFFFFL)) + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	static long key(int row, int column, int plane) {	// the key of a bit plane of a position (plane 0 is whether it's alive, the rest the bits of a dying Cell's age), remixed so each plane's keys differ
+		long key = key(row, column);
+		if (plane == 0)	return key;
+		long z = key + plane * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	static long ofWord(long bits, int row, int firstColumn) {	// the keys of the set bits of a word of a row, XORed together
+		long hash = 0;
+		while (bits != 0) {
+			hash ^= key(row, firstColumn + Long.numberOfTrailingZeros(bits));
+			bits &= bits - 1;
+		}
+		return hash;
+	}
+
+	static long ofWord(long bits, int row, int firstColumn, int plane) {	// the same for a bit plane
+		long hash = 0;
+		while (bits != 0) {
+			hash ^= key(row, firstColumn + Long.numberOfTrailingZeros(bits), plane);
+			bits &= bits - 1;
+		}
+		return hash;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.convai;
+
+import org.openjdk.jmh.annotations.*;	// for the benchmark annotations
+import java.util.*;	// for the Random
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellLookupBenchmark {	// finds where Cells from City.cells() are, one at a time
+
+	@Param({"64", "256", "1024"})
+	public int size;	// the number of rows and columns
+
+	private City city;
+	private Cell[] cells = new Cell[1024];	// Cells from all over the City, looked up in turn
+	private int next;
+
+	@Setup(Level.Trial)
+	public void pickCells() {
+		city = new City(1, 1, size, size);
+		city.randomize(30);
+		Cell[][] view = city.cells();
+		Random random = new Random(42);
+		for (int i = 0; i < cells.length; i++)	cells[i] = view[random.nextInt(size)][random.nextInt(size)];
+	}
+
+	@Benchmark
+	public int getRowAndColumn() {
+		Cell cell = cells[next++ & (cells.length - 1)];
+		return city.getRow(cell) + city.getColumn(cell);
+	}
+
+	@Benchmark
+	public Cell[][] cells() {	// brings the whole view up to date
+		return city.cells();
+	}
+
+}
\ No newline at end of file
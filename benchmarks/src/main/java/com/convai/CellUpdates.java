@@ -0,0 +1,16 @@
+package com.convai;
+
+import org.openjdk.jmh.annotations.*;	// for the benchmark annotations
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CellUpdates {	// counts the Cells a benchmark works out, which JMH reports alongside its score as cellUpdates per second
+
+	public long cellUpdates;
+
+	@Setup(Level.Iteration)
+	public void clear() {
+		cellUpdates = 0;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.convai;
+
+import org.openjdk.jmh.annotations.*;	// for the benchmark annotations
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourBenchmark {	// counts the live neighbours of every Cell one at a time, the way Universe.render and the players do
+
+	@Param({"256", "1024"})
+	public int size;	// the number of rows and columns
+
+	@Param({"false", "true"})
+	public boolean isPeriodic;
+
+	private City city;
+
+	@Setup(Level.Trial)
+	public void makeSoup() {
+		city = new City(1, 1, size, size);
+		city.setPeriodic(isPeriodic);
+		city.randomize(30);
+	}
+
+	@Benchmark
+	public int countAliveNeighbours(CellUpdates updates) {
+		int total = 0;
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				total += city.countAliveNeighbours(i, j);
+
+		updates.cellUpdates += city.getNumberOfCells();
+		return total;
+	}
+
+	@Benchmark
+	public int neighbours(CellUpdates updates) {	// the old way, with a Cell object for each neighbour
+		int total = 0;
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				total += city.neighbours(i, j).length;
+
+		updates.cellUpdates += city.getNumberOfCells();
+		return total;
+	}
+
+}
\ No newline at end of file
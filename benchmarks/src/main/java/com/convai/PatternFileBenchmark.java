@@ -0,0 +1,67 @@
+package com.convai;
+
+import org.openjdk.jmh.annotations.*;	// for the benchmark annotations
+import java.io.*;	// for the files
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternFileBenchmark {	// saves and loads a City, as a .gol file (what GoL.savePattern and loadPattern do) and as RLE
+
+	@Param({"256", "1024", "4096"})
+	public int size;	// the number of rows and columns
+
+	@Param({"0", "1"})
+	public byte compression;	// PatternFile.RAW or PatternFile.DEFLATED
+
+	private City city;
+	private File golFile;
+	private File rleFile;
+
+	@Setup(Level.Trial)
+	public void makeFiles() throws IOException {
+		city = new City(1, 1, size, size);
+		city.randomize(30);
+		golFile = File.createTempFile("bench", ".gol");
+		rleFile = File.createTempFile("bench", ".rle");
+		golFile.deleteOnExit();
+		rleFile.deleteOnExit();
+		save();
+		saveRle();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		golFile.delete();
+		rleFile.delete();
+	}
+
+	@Benchmark
+	public void save() throws IOException {
+		PatternFile pattern = new PatternFile(size, size, 1, 1, 1, city);
+		pattern.compression = compression;
+		pattern.write(golFile);
+	}
+
+	@Benchmark
+	public Universe load() throws IOException {
+		return PatternFile.read(golFile).universe;
+	}
+
+	@Benchmark
+	public void saveRle() throws IOException {
+		LifeFormats.write(rleFile, city);
+	}
+
+	@Benchmark
+	public Universe loadRle() throws IOException {
+		City loaded = new City(1, 1, size, size);
+		LifeFormats.read(rleFile, loaded);
+		return loaded;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.convai;
+
+import org.openjdk.jmh.annotations.*;	// for the benchmark annotations
+import java.awt.*;	// for the graphics
+import java.awt.image.BufferedImage;	// to draw offscreen
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {	// draws a City into an offscreen image, the way the game draws a frame
+
+	@Param({"128", "512"})
+	public int size;	// the number of rows and columns
+
+	@Param({"2", "8"})
+	public int cellSize;	// the pixel width and height of a Cell
+
+	@Param({"false", "true"})
+	public boolean isCurvy;
+
+	private City city;
+	private BufferedImage image;
+	private Graphics2D g2d;
+	private PixelRenderer renderer;
+
+	@Setup(Level.Iteration)
+	public void makeSoup() {
+		city = new City(cellSize, cellSize, size, size);
+		city.randomize(30);
+		image = new BufferedImage(size * cellSize, size * cellSize, BufferedImage.TYPE_INT_RGB);
+		g2d = image.createGraphics();
+		g2d.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
+		renderer = new PixelRenderer();
+	}
+
+	@TearDown(Level.Iteration)
+	public void dispose() {
+		g2d.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage render(CellUpdates updates) {	// every Cell, through Universe.render (a fillRect or fillOval each)
+		g2d.setColor(Color.white);
+		g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+		city.render(g2d, isCurvy, false);
+		updates.cellUpdates += city.getNumberOfCells();
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage renderPixels(CellUpdates updates) {	// every Cell, straight into the pixels of an image
+		renderer.invalidate();
+		updates.cellUpdates += city.getNumberOfCells();
+		return renderer.render(new Snapshot(city, 0), isCurvy, false, false);
+	}
+
+	@Benchmark
+	public BufferedImage stepAndRenderPixels(CellUpdates updates) {	// a generation on, snapshotted, then only the tiles that changed, the way a frame is drawn while the game runs
+		city.step();
+		updates.cellUpdates += city.getNumberOfCells();
+		return renderer.render(new Snapshot(city, 0), isCurvy, false, false);
+	}
+
+}
\ No newline at end of file
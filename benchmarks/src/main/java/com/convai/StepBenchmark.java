@@ -0,0 +1,65 @@
+package com.convai;
+
+import org.openjdk.jmh.annotations.*;	// for the benchmark annotations
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {	// steps random soups of different sizes and densities. Each iteration starts from a fresh soup, as one left to run settles down and gets cheaper to step
+
+	@Param({"256", "1024", "4096"})
+	public int size;	// the number of rows and columns
+
+	@Param({"10", "30", "50"})
+	public double density;	// the percentage of Cells alive at the start
+
+	@Param({"false", "true"})
+	public boolean isPeriodic;
+
+	@Param({"B3/S23", "B36/S23", "B2/S/C3"})
+	public String rule;	// Conway's, a Life-like rule and a Generations one
+
+	private City city;
+	private ParallelEngine engine;
+
+	@Setup(Level.Trial)
+	public void makeEngine() {
+		engine = new ParallelEngine();
+	}
+
+	@Setup(Level.Iteration)
+	public void makeSoup() {
+		city = new City(1, 1, size, size);
+		city.setPeriodic(isPeriodic);
+		city.setRule(Rule.parse(rule));
+		ThreadLocalRandom random = ThreadLocalRandom.current();	// (not randomize, which only brings about half as many to life as it's asked for)
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				if (random.nextDouble() < density / 100)	city.setAlive(i, j, true);
+	}
+
+	@Benchmark
+	public boolean step(CellUpdates updates) {	// in place, on this thread
+		updates.cellUpdates += city.getNumberOfCells();
+		return city.step();
+	}
+
+	@Benchmark
+	public boolean stepParallel(CellUpdates updates) {	// in place, in bands across the common pool (the way the game steps)
+		updates.cellUpdates += city.getNumberOfCells();
+		return engine.step(city);
+	}
+
+	@Benchmark
+	public City nextGeneration(CellUpdates updates) {	// into a new City each time
+		updates.cellUpdates += city.getNumberOfCells();
+		city = city.nextGeneration();
+		return city;
+	}
+
+}
\ No newline at end of file